@@ -0,0 +1,724 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.binary;
+
+import ca.nrc.cadc.caom2.Algorithm;
+import ca.nrc.cadc.caom2.Artifact;
+import ca.nrc.cadc.caom2.CalibrationLevel;
+import ca.nrc.cadc.caom2.CaomEntity;
+import ca.nrc.cadc.caom2.Chunk;
+import ca.nrc.cadc.caom2.CompositeObservation;
+import ca.nrc.cadc.caom2.DataProductType;
+import ca.nrc.cadc.caom2.DataQuality;
+import ca.nrc.cadc.caom2.Energy;
+import ca.nrc.cadc.caom2.EnergyBand;
+import ca.nrc.cadc.caom2.EnergyTransition;
+import ca.nrc.cadc.caom2.Environment;
+import ca.nrc.cadc.caom2.Instrument;
+import ca.nrc.cadc.caom2.Metrics;
+import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.ObservationIntentType;
+import ca.nrc.cadc.caom2.ObservationURI;
+import ca.nrc.cadc.caom2.Part;
+import ca.nrc.cadc.caom2.Plane;
+import ca.nrc.cadc.caom2.Polarization;
+import ca.nrc.cadc.caom2.PolarizationState;
+import ca.nrc.cadc.caom2.Position;
+import ca.nrc.cadc.caom2.ProductType;
+import ca.nrc.cadc.caom2.Proposal;
+import ca.nrc.cadc.caom2.Provenance;
+import ca.nrc.cadc.caom2.Quality;
+import ca.nrc.cadc.caom2.ReleaseType;
+import ca.nrc.cadc.caom2.Requirements;
+import ca.nrc.cadc.caom2.SimpleObservation;
+import ca.nrc.cadc.caom2.Status;
+import ca.nrc.cadc.caom2.Target;
+import ca.nrc.cadc.caom2.TargetPosition;
+import ca.nrc.cadc.caom2.TargetType;
+import ca.nrc.cadc.caom2.Telescope;
+import ca.nrc.cadc.caom2.Time;
+import ca.nrc.cadc.caom2.types.Circle;
+import ca.nrc.cadc.caom2.types.Interval;
+import ca.nrc.cadc.caom2.types.MultiPolygon;
+import ca.nrc.cadc.caom2.types.Point;
+import ca.nrc.cadc.caom2.types.Polygon;
+import ca.nrc.cadc.caom2.types.SegmentType;
+import ca.nrc.cadc.caom2.types.Shape;
+import ca.nrc.cadc.caom2.types.SubInterval;
+import ca.nrc.cadc.caom2.types.Vertex;
+import ca.nrc.cadc.caom2.util.CaomUtil;
+import ca.nrc.cadc.caom2.wcs.Axis;
+import ca.nrc.cadc.caom2.wcs.Coord2D;
+import ca.nrc.cadc.caom2.wcs.CoordAxis1D;
+import ca.nrc.cadc.caom2.wcs.CoordAxis2D;
+import ca.nrc.cadc.caom2.wcs.CoordBounds1D;
+import ca.nrc.cadc.caom2.wcs.CoordError;
+import ca.nrc.cadc.caom2.wcs.CoordFunction1D;
+import ca.nrc.cadc.caom2.wcs.CoordFunction2D;
+import ca.nrc.cadc.caom2.wcs.CoordRange1D;
+import ca.nrc.cadc.caom2.wcs.CoordRange2D;
+import ca.nrc.cadc.caom2.wcs.Dimension2D;
+import ca.nrc.cadc.caom2.wcs.ObservableAxis;
+import ca.nrc.cadc.caom2.wcs.PolarizationWCS;
+import ca.nrc.cadc.caom2.wcs.RefCoord;
+import ca.nrc.cadc.caom2.wcs.Slice;
+import ca.nrc.cadc.caom2.wcs.SpatialWCS;
+import ca.nrc.cadc.caom2.wcs.SpectralWCS;
+import ca.nrc.cadc.caom2.wcs.TemporalWCS;
+import ca.nrc.cadc.caom2.xml.ObservationParsingException;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Read observations written by BinaryObservationWriter. The reader only accepts
+ * documents with the same format version as the writer.
+ *
+ * @author agent
+ */
+public class BinaryObservationReader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public BinaryObservationReader() {
+    }
+
+    /**
+     * Check if a document is in the binary format.
+     *
+     * @param prefix the first bytes of the document (at least 4)
+     * @return true if the document starts with the binary format MAGIC bytes
+     */
+    public static boolean isBinary(byte[] prefix) {
+        if (prefix == null || prefix.length < BinaryObservationWriter.MAGIC.length) {
+            return false;
+        }
+        byte[] head = Arrays.copyOf(prefix, BinaryObservationWriter.MAGIC.length);
+        return Arrays.equals(BinaryObservationWriter.MAGIC, head);
+    }
+
+    /**
+     * Read an observation. The stream is buffered (it may be read past the end of
+     * the document) and is not closed.
+     *
+     * @param in source stream
+     * @return the observation
+     * @throws IOException failure to read, including a truncated document
+     * @throws ObservationParsingException not a binary document or unsupported version
+     */
+    public Observation read(InputStream in) throws IOException, ObservationParsingException {
+        DataInputStream din = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+        byte[] magic = new byte[BinaryObservationWriter.MAGIC.length];
+        din.readFully(magic);
+        if (!Arrays.equals(BinaryObservationWriter.MAGIC, magic)) {
+            throw new ObservationParsingException("not a binary observation document");
+        }
+        int version = din.readUnsignedByte();
+        if (version != BinaryObservationWriter.VERSION) {
+            throw new ObservationParsingException("unsupported binary observation version: " + version
+                + " expected: " + BinaryObservationWriter.VERSION);
+        }
+        return readObservation(din);
+    }
+
+    private Observation readObservation(DataInputStream in) throws IOException, ObservationParsingException {
+        byte type = in.readByte();
+        String collection = readString(in);
+        String observationID = readString(in);
+
+        Observation o;
+        if (type == BinaryObservationWriter.SIMPLE) {
+            o = new SimpleObservation(collection, observationID);
+        } else if (type == BinaryObservationWriter.COMPOSITE) {
+            o = new CompositeObservation(collection, observationID, new Algorithm(readString(in)));
+        } else {
+            throw new ObservationParsingException("invalid observation type: " + type);
+        }
+
+        o.type = readString(in);
+        String intent = readString(in);
+        if (intent != null) {
+            o.intent = ObservationIntentType.toValue(intent);
+        }
+        o.sequenceNumber = readInteger(in);
+        o.metaRelease = readDate(in);
+
+        if (in.readBoolean()) {
+            o.proposal = new Proposal(readString(in));
+            o.proposal.pi = readString(in);
+            o.proposal.project = readString(in);
+            o.proposal.title = readString(in);
+            readKeywords(in, o.proposal.getKeywords());
+        }
+
+        if (in.readBoolean()) {
+            o.target = new Target(readString(in));
+            String tt = readString(in);
+            if (tt != null) {
+                o.target.type = TargetType.toValue(tt);
+            }
+            o.target.standard = readBoolean(in);
+            o.target.redshift = readDouble(in);
+            o.target.moving = readBoolean(in);
+            readKeywords(in, o.target.getKeywords());
+        }
+
+        if (in.readBoolean()) {
+            String coordsys = readString(in);
+            Double equinox = readDouble(in);
+            o.targetPosition = new TargetPosition(coordsys, readPoint(in));
+            o.targetPosition.equinox = equinox;
+        }
+
+        String rflag = readString(in);
+        if (rflag != null) {
+            o.requirements = new Requirements(Status.toValue(rflag));
+        }
+
+        if (in.readBoolean()) {
+            o.telescope = new Telescope(readString(in));
+            o.telescope.geoLocationX = readDouble(in);
+            o.telescope.geoLocationY = readDouble(in);
+            o.telescope.geoLocationZ = readDouble(in);
+            readKeywords(in, o.telescope.getKeywords());
+        }
+
+        if (in.readBoolean()) {
+            o.instrument = new Instrument(readString(in));
+            readKeywords(in, o.instrument.getKeywords());
+        }
+
+        if (in.readBoolean()) {
+            Environment e = new Environment();
+            e.seeing = readDouble(in);
+            e.humidity = readDouble(in);
+            e.elevation = readDouble(in);
+            e.tau = readDouble(in);
+            e.wavelengthTau = readDouble(in);
+            e.ambientTemp = readDouble(in);
+            e.photometric = readBoolean(in);
+            o.environment = e;
+        }
+
+        if (o instanceof CompositeObservation) {
+            CompositeObservation comp = (CompositeObservation) o;
+            int num = readCount(in);
+            for (int i = 0; i < num; i++) {
+                comp.getMembers().add(new ObservationURI(readString(in), readString(in)));
+            }
+        }
+
+        readEntity(in, o);
+        int num = readCount(in);
+        for (int i = 0; i < num; i++) {
+            o.getPlanes().add(readPlane(in));
+        }
+        return o;
+    }
+
+    private Plane readPlane(DataInputStream in) throws IOException, ObservationParsingException {
+        Plane p = new Plane(readString(in));
+        p.creatorID = readURI(in);
+        p.metaRelease = readDate(in);
+        p.dataRelease = readDate(in);
+        String dpt = readString(in);
+        if (dpt != null) {
+            p.dataProductType = DataProductType.toValue(dpt);
+        }
+        Integer cl = readInteger(in);
+        if (cl != null) {
+            p.calibrationLevel = CalibrationLevel.toValue(cl);
+        }
+
+        if (in.readBoolean()) {
+            p.provenance = new Provenance(readString(in));
+            p.provenance.reference = readURI(in);
+            p.provenance.version = readString(in);
+            p.provenance.project = readString(in);
+            p.provenance.producer = readString(in);
+            p.provenance.runID = readString(in);
+            p.provenance.lastExecuted = readDate(in);
+            CaomUtil.decodePlaneURIs(readString(in), p.provenance.getInputs());
+            readKeywords(in, p.provenance.getKeywords());
+        }
+
+        if (in.readBoolean()) {
+            Metrics m = new Metrics();
+            m.sourceNumberDensity = readDouble(in);
+            m.background = readDouble(in);
+            m.backgroundStddev = readDouble(in);
+            m.fluxDensityLimit = readDouble(in);
+            m.magLimit = readDouble(in);
+            p.metrics = m;
+        }
+
+        String qflag = readString(in);
+        if (qflag != null) {
+            p.quality = new DataQuality(Quality.toValue(qflag));
+        }
+
+        if (in.readBoolean()) {
+            Position pos = new Position();
+            pos.bounds = readShape(in);
+            if (in.readBoolean()) {
+                long naxis1 = in.readLong();
+                long naxis2 = in.readLong();
+                pos.dimension = new Dimension2D(naxis1, naxis2);
+            }
+            pos.resolution = readDouble(in);
+            pos.sampleSize = readDouble(in);
+            pos.timeDependent = readBoolean(in);
+            p.position = pos;
+        }
+
+        if (in.readBoolean()) {
+            Energy nrg = new Energy();
+            String emBand = readString(in);
+            if (emBand != null) {
+                nrg.emBand = EnergyBand.toValue(emBand);
+            }
+            nrg.bounds = readInterval(in);
+            nrg.dimension = readLong(in);
+            nrg.resolvingPower = readDouble(in);
+            nrg.sampleSize = readDouble(in);
+            nrg.bandpassName = readString(in);
+            nrg.transition = readTransition(in);
+            nrg.restwav = readDouble(in);
+            p.energy = nrg;
+        }
+
+        if (in.readBoolean()) {
+            Time tim = new Time();
+            tim.bounds = readInterval(in);
+            tim.dimension = readLong(in);
+            tim.resolution = readDouble(in);
+            tim.sampleSize = readDouble(in);
+            tim.exposure = readDouble(in);
+            p.time = tim;
+        }
+
+        if (in.readBoolean()) {
+            Polarization pol = new Polarization();
+            String states = readString(in);
+            if (states != null) {
+                pol.states = new ArrayList<PolarizationState>();
+                CaomUtil.decodeStates(states, pol.states);
+            }
+            pol.dimension = readLong(in);
+            p.polarization = pol;
+        }
+
+        readEntity(in, p);
+        int num = readCount(in);
+        for (int i = 0; i < num; i++) {
+            p.getArtifacts().add(readArtifact(in));
+        }
+        return p;
+    }
+
+    private Artifact readArtifact(DataInputStream in) throws IOException, ObservationParsingException {
+        URI uri = readURI(in);
+        ProductType ptype = ProductType.toValue(readString(in));
+        ReleaseType rtype = ReleaseType.toValue(readString(in));
+        Artifact a = new Artifact(uri, ptype, rtype);
+        a.contentType = readString(in);
+        a.contentLength = readLong(in);
+        a.contentChecksum = readURI(in);
+
+        readEntity(in, a);
+        int num = readCount(in);
+        for (int i = 0; i < num; i++) {
+            a.getParts().add(readPart(in));
+        }
+        return a;
+    }
+
+    private Part readPart(DataInputStream in) throws IOException, ObservationParsingException {
+        Part p = new Part(readString(in));
+        String pt = readString(in);
+        if (pt != null) {
+            p.productType = ProductType.toValue(pt);
+        }
+
+        readEntity(in, p);
+        int num = readCount(in);
+        for (int i = 0; i < num; i++) {
+            p.getChunks().add(readChunk(in));
+        }
+        return p;
+    }
+
+    private Chunk readChunk(DataInputStream in) throws IOException, ObservationParsingException {
+        Chunk c = new Chunk();
+        c.naxis = readInteger(in);
+        c.positionAxis1 = readInteger(in);
+        c.positionAxis2 = readInteger(in);
+        c.energyAxis = readInteger(in);
+        c.timeAxis = readInteger(in);
+        c.polarizationAxis = readInteger(in);
+        c.observableAxis = readInteger(in);
+
+        if (in.readBoolean()) {
+            Axis axis1 = readAxis(in);
+            Axis axis2 = readAxis(in);
+            CoordAxis2D axis = new CoordAxis2D(axis1, axis2);
+            axis.error1 = readError(in);
+            axis.error2 = readError(in);
+            axis.range = readRange2D(in);
+            String bounds = readString(in);
+            if (bounds != null) {
+                axis.bounds = CaomUtil.decodeCoordBounds2D(bounds);
+            }
+            axis.function = readFunction2D(in);
+            c.position = new SpatialWCS(axis);
+            c.position.coordsys = readString(in);
+            c.position.equinox = readDouble(in);
+            c.position.resolution = readDouble(in);
+        }
+
+        if (in.readBoolean()) {
+            CoordAxis1D axis = readCoordAxis1D(in);
+            c.energy = new SpectralWCS(axis, readString(in));
+            c.energy.ssysobs = readString(in);
+            c.energy.ssyssrc = readString(in);
+            c.energy.restfrq = readDouble(in);
+            c.energy.restwav = readDouble(in);
+            c.energy.velosys = readDouble(in);
+            c.energy.zsource = readDouble(in);
+            c.energy.velang = readDouble(in);
+            c.energy.bandpassName = readString(in);
+            c.energy.resolvingPower = readDouble(in);
+            c.energy.transition = readTransition(in);
+        }
+
+        if (in.readBoolean()) {
+            c.time = new TemporalWCS(readCoordAxis1D(in));
+            c.time.timesys = readString(in);
+            c.time.trefpos = readString(in);
+            c.time.mjdref = readDouble(in);
+            c.time.exposure = readDouble(in);
+            c.time.resolution = readDouble(in);
+        }
+
+        if (in.readBoolean()) {
+            c.polarization = new PolarizationWCS(readCoordAxis1D(in));
+        }
+
+        if (in.readBoolean()) {
+            c.observable = new ObservableAxis(readSlice(in));
+            if (in.readBoolean()) {
+                c.observable.independent = readSlice(in);
+            }
+        }
+
+        readEntity(in, c);
+        return c;
+    }
+
+    private void readEntity(DataInputStream in, CaomEntity e) throws IOException {
+        long msb = in.readLong();
+        long lsb = in.readLong();
+        CaomUtil.assignID(e, new UUID(msb, lsb));
+        Date lastModified = readDate(in);
+        Date maxLastModified = readDate(in);
+        if (lastModified != null) {
+            CaomUtil.assignLastModified(e, lastModified, "lastModified");
+        }
+        if (maxLastModified != null) {
+            CaomUtil.assignLastModified(e, maxLastModified, "maxLastModified");
+        }
+        URI metaChecksum = readURI(in);
+        URI accMetaChecksum = readURI(in);
+        if (metaChecksum != null) {
+            CaomUtil.assignMetaChecksum(e, metaChecksum, "metaChecksum");
+        }
+        if (accMetaChecksum != null) {
+            CaomUtil.assignMetaChecksum(e, accMetaChecksum, "accMetaChecksum");
+        }
+    }
+
+    private Shape readShape(DataInputStream in) throws IOException, ObservationParsingException {
+        byte type = in.readByte();
+        if (type == BinaryObservationWriter.NO_SHAPE) {
+            return null;
+        }
+        if (type == BinaryObservationWriter.CIRCLE) {
+            Point center = readPoint(in);
+            return new Circle(center, in.readDouble());
+        }
+        if (type == BinaryObservationWriter.POLYGON) {
+            int num = readCount(in);
+            List<Point> points = new ArrayList<Point>(num);
+            for (int i = 0; i < num; i++) {
+                points.add(readPoint(in));
+            }
+            MultiPolygon mp = null;
+            int nv = in.readInt();
+            if (nv >= 0) {
+                mp = new MultiPolygon();
+                for (int i = 0; i < nv; i++) {
+                    double cval1 = in.readDouble();
+                    double cval2 = in.readDouble();
+                    SegmentType t = SegmentType.toValue(in.readInt());
+                    mp.getVertices().add(new Vertex(cval1, cval2, t));
+                }
+            }
+            return new Polygon(points, mp);
+        }
+        throw new ObservationParsingException("invalid shape type: " + type);
+    }
+
+    private Point readPoint(DataInputStream in) throws IOException {
+        double cval1 = in.readDouble();
+        double cval2 = in.readDouble();
+        return new Point(cval1, cval2);
+    }
+
+    private Interval readInterval(DataInputStream in) throws IOException, ObservationParsingException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        double lower = in.readDouble();
+        double upper = in.readDouble();
+        Interval ret = new Interval(lower, upper);
+        int num = readCount(in);
+        for (int i = 0; i < num; i++) {
+            double sl = in.readDouble();
+            double su = in.readDouble();
+            ret.getSamples().add(new SubInterval(sl, su));
+        }
+        return ret;
+    }
+
+    private EnergyTransition readTransition(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String species = readString(in);
+        return new EnergyTransition(species, readString(in));
+    }
+
+    private Axis readAxis(DataInputStream in) throws IOException {
+        String ctype = readString(in);
+        return new Axis(ctype, readString(in));
+    }
+
+    private CoordAxis1D readCoordAxis1D(DataInputStream in) throws IOException {
+        CoordAxis1D axis = new CoordAxis1D(readAxis(in));
+        axis.error = readError(in);
+        axis.range = readRange1D(in);
+        int num = in.readInt();
+        if (num >= 0) {
+            axis.bounds = new CoordBounds1D();
+            for (int i = 0; i < num; i++) {
+                axis.bounds.getSamples().add(readRange1D(in));
+            }
+        }
+        if (in.readBoolean()) {
+            Long naxis = readLong(in);
+            Double delta = readDouble(in);
+            axis.function = new CoordFunction1D(naxis, delta, readRefCoord(in));
+        }
+        return axis;
+    }
+
+    private CoordError readError(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        Double syser = readDouble(in);
+        return new CoordError(syser, readDouble(in));
+    }
+
+    private CoordRange1D readRange1D(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        RefCoord start = readRefCoord(in);
+        return new CoordRange1D(start, readRefCoord(in));
+    }
+
+    private CoordRange2D readRange2D(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        Coord2D start = readCoord2D(in);
+        return new CoordRange2D(start, readCoord2D(in));
+    }
+
+    private CoordFunction2D readFunction2D(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        long naxis1 = in.readLong();
+        long naxis2 = in.readLong();
+        Coord2D ref = readCoord2D(in);
+        Double cd11 = readDouble(in);
+        Double cd12 = readDouble(in);
+        Double cd21 = readDouble(in);
+        Double cd22 = readDouble(in);
+        return new CoordFunction2D(new Dimension2D(naxis1, naxis2), ref, cd11, cd12, cd21, cd22);
+    }
+
+    private Coord2D readCoord2D(DataInputStream in) throws IOException {
+        RefCoord coord1 = readRefCoord(in);
+        return new Coord2D(coord1, readRefCoord(in));
+    }
+
+    private RefCoord readRefCoord(DataInputStream in) throws IOException {
+        double pix = in.readDouble();
+        double val = in.readDouble();
+        return new RefCoord(pix, val);
+    }
+
+    private Slice readSlice(DataInputStream in) throws IOException {
+        Axis axis = readAxis(in);
+        return new Slice(axis, readLong(in));
+    }
+
+    private void readKeywords(DataInputStream in, Set<String> keywords) throws IOException, ObservationParsingException {
+        int num = readCount(in);
+        for (int i = 0; i < num; i++) {
+            keywords.add(readString(in));
+        }
+    }
+
+    private int readCount(DataInputStream in) throws IOException, ObservationParsingException {
+        int num = in.readInt();
+        if (num < 0) {
+            throw new ObservationParsingException("invalid count: " + num);
+        }
+        return num;
+    }
+
+    // nullable values: length -1 or presence flag
+
+    private String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, "UTF-8");
+    }
+
+    private URI readURI(DataInputStream in) throws IOException {
+        String s = readString(in);
+        if (s == null) {
+            return null;
+        }
+        return URI.create(s);
+    }
+
+    private Date readDate(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new Date(in.readLong());
+    }
+
+    private Double readDouble(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return in.readDouble();
+    }
+
+    private Long readLong(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return in.readLong();
+    }
+
+    private Integer readInteger(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return in.readInt();
+    }
+
+    private Boolean readBoolean(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return in.readBoolean();
+    }
+}
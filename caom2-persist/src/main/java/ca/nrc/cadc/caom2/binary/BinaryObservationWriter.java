@@ -0,0 +1,654 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.binary;
+
+import ca.nrc.cadc.caom2.Artifact;
+import ca.nrc.cadc.caom2.CaomEntity;
+import ca.nrc.cadc.caom2.Chunk;
+import ca.nrc.cadc.caom2.CompositeObservation;
+import ca.nrc.cadc.caom2.Energy;
+import ca.nrc.cadc.caom2.EnergyTransition;
+import ca.nrc.cadc.caom2.Environment;
+import ca.nrc.cadc.caom2.Metrics;
+import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.ObservationURI;
+import ca.nrc.cadc.caom2.Part;
+import ca.nrc.cadc.caom2.Plane;
+import ca.nrc.cadc.caom2.Polarization;
+import ca.nrc.cadc.caom2.Position;
+import ca.nrc.cadc.caom2.Provenance;
+import ca.nrc.cadc.caom2.Time;
+import ca.nrc.cadc.caom2.types.Circle;
+import ca.nrc.cadc.caom2.types.Interval;
+import ca.nrc.cadc.caom2.types.MultiPolygon;
+import ca.nrc.cadc.caom2.types.Point;
+import ca.nrc.cadc.caom2.types.Polygon;
+import ca.nrc.cadc.caom2.types.Shape;
+import ca.nrc.cadc.caom2.types.SubInterval;
+import ca.nrc.cadc.caom2.types.Vertex;
+import ca.nrc.cadc.caom2.util.CaomUtil;
+import ca.nrc.cadc.caom2.wcs.Axis;
+import ca.nrc.cadc.caom2.wcs.Coord2D;
+import ca.nrc.cadc.caom2.wcs.CoordAxis1D;
+import ca.nrc.cadc.caom2.wcs.CoordAxis2D;
+import ca.nrc.cadc.caom2.wcs.CoordBounds1D;
+import ca.nrc.cadc.caom2.wcs.CoordError;
+import ca.nrc.cadc.caom2.wcs.CoordFunction1D;
+import ca.nrc.cadc.caom2.wcs.CoordFunction2D;
+import ca.nrc.cadc.caom2.wcs.CoordRange1D;
+import ca.nrc.cadc.caom2.wcs.CoordRange2D;
+import ca.nrc.cadc.caom2.wcs.RefCoord;
+import ca.nrc.cadc.caom2.wcs.Slice;
+import ca.nrc.cadc.caom2.wcs.SpatialWCS;
+import ca.nrc.cadc.caom2.wcs.SpectralWCS;
+import ca.nrc.cadc.caom2.wcs.TemporalWCS;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Write observations in the compact binary CAOM format. The document starts with
+ * the MAGIC bytes and the format VERSION, followed by the observation fields in a
+ * fixed order with a presence flag for optional values and a count before each
+ * collection of child entities. The document has the same content as the CAOM-2.3
+ * XML document, including the entity metadata (id, lastModified, maxLastModified,
+ * metaChecksum, accMetaChecksum), but is much smaller and cheaper to write and parse.
+ * Readers reject documents with a different format version.
+ *
+ * @author agent
+ */
+public class BinaryObservationWriter {
+
+    /**
+     * Content type of a single binary observation document.
+     */
+    public static final String CONTENT_TYPE = "application/x-caom-binary";
+
+    /**
+     * Format version written by this class.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Identifier of the document format (content type and version).
+     */
+    public static final String FORMAT = CONTENT_TYPE + ";version=" + VERSION;
+
+    static final byte[] MAGIC = new byte[] { 'C', 'A', 'O', 'M' };
+
+    static final byte SIMPLE = 'S';
+    static final byte COMPOSITE = 'C';
+
+    static final byte NO_SHAPE = 0;
+    static final byte CIRCLE = 1;
+    static final byte POLYGON = 2;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public BinaryObservationWriter() {
+    }
+
+    /**
+     * Write an observation. The stream is flushed but not closed.
+     *
+     * @param obs the observation
+     * @param out destination stream
+     * @throws IOException failure to write
+     */
+    public void write(Observation obs, OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        dout.write(MAGIC);
+        dout.writeByte(VERSION);
+        writeObservation(obs, dout);
+        dout.flush();
+    }
+
+    private void writeObservation(Observation o, DataOutputStream out) throws IOException {
+        CompositeObservation comp = null;
+        if (o instanceof CompositeObservation) {
+            comp = (CompositeObservation) o;
+            out.writeByte(COMPOSITE);
+        } else {
+            out.writeByte(SIMPLE);
+        }
+        writeString(o.getURI().getCollection(), out);
+        writeString(o.getURI().getObservationID(), out);
+        if (comp != null) {
+            writeString(comp.getAlgorithm().getName(), out);
+        }
+
+        writeString(o.type, out);
+        writeString(o.intent == null ? null : o.intent.getValue(), out);
+        writeInteger(o.sequenceNumber, out);
+        writeDate(o.metaRelease, out);
+
+        out.writeBoolean(o.proposal != null);
+        if (o.proposal != null) {
+            writeString(o.proposal.getID(), out);
+            writeString(o.proposal.pi, out);
+            writeString(o.proposal.project, out);
+            writeString(o.proposal.title, out);
+            writeKeywords(o.proposal.getKeywords(), out);
+        }
+
+        out.writeBoolean(o.target != null);
+        if (o.target != null) {
+            writeString(o.target.getName(), out);
+            writeString(o.target.type == null ? null : o.target.type.getValue(), out);
+            writeBoolean(o.target.standard, out);
+            writeDouble(o.target.redshift, out);
+            writeBoolean(o.target.moving, out);
+            writeKeywords(o.target.getKeywords(), out);
+        }
+
+        out.writeBoolean(o.targetPosition != null);
+        if (o.targetPosition != null) {
+            writeString(o.targetPosition.getCoordsys(), out);
+            writeDouble(o.targetPosition.equinox, out);
+            writePoint(o.targetPosition.getCoordinates(), out);
+        }
+
+        writeString(o.requirements == null ? null : o.requirements.getFlag().getValue(), out);
+
+        out.writeBoolean(o.telescope != null);
+        if (o.telescope != null) {
+            writeString(o.telescope.getName(), out);
+            writeDouble(o.telescope.geoLocationX, out);
+            writeDouble(o.telescope.geoLocationY, out);
+            writeDouble(o.telescope.geoLocationZ, out);
+            writeKeywords(o.telescope.getKeywords(), out);
+        }
+
+        out.writeBoolean(o.instrument != null);
+        if (o.instrument != null) {
+            writeString(o.instrument.getName(), out);
+            writeKeywords(o.instrument.getKeywords(), out);
+        }
+
+        Environment e = o.environment;
+        out.writeBoolean(e != null);
+        if (e != null) {
+            writeDouble(e.seeing, out);
+            writeDouble(e.humidity, out);
+            writeDouble(e.elevation, out);
+            writeDouble(e.tau, out);
+            writeDouble(e.wavelengthTau, out);
+            writeDouble(e.ambientTemp, out);
+            writeBoolean(e.photometric, out);
+        }
+
+        if (comp != null) {
+            out.writeInt(comp.getMembers().size());
+            for (ObservationURI m : comp.getMembers()) {
+                writeString(m.getCollection(), out);
+                writeString(m.getObservationID(), out);
+            }
+        }
+
+        writeEntity(o, out);
+        out.writeInt(o.getPlanes().size());
+        for (Plane p : o.getPlanes()) {
+            writePlane(p, out);
+        }
+    }
+
+    private void writePlane(Plane p, DataOutputStream out) throws IOException {
+        writeString(p.getProductID(), out);
+        writeURI(p.creatorID, out);
+        writeDate(p.metaRelease, out);
+        writeDate(p.dataRelease, out);
+        writeString(p.dataProductType == null ? null : p.dataProductType.getValue(), out);
+        writeInteger(p.calibrationLevel == null ? null : p.calibrationLevel.getValue(), out);
+
+        Provenance prov = p.provenance;
+        out.writeBoolean(prov != null);
+        if (prov != null) {
+            writeString(prov.getName(), out);
+            writeURI(prov.reference, out);
+            writeString(prov.version, out);
+            writeString(prov.project, out);
+            writeString(prov.producer, out);
+            writeString(prov.runID, out);
+            writeDate(prov.lastExecuted, out);
+            writeString(CaomUtil.encodePlaneURIs(prov.getInputs()), out);
+            writeKeywords(prov.getKeywords(), out);
+        }
+
+        Metrics m = p.metrics;
+        out.writeBoolean(m != null);
+        if (m != null) {
+            writeDouble(m.sourceNumberDensity, out);
+            writeDouble(m.background, out);
+            writeDouble(m.backgroundStddev, out);
+            writeDouble(m.fluxDensityLimit, out);
+            writeDouble(m.magLimit, out);
+        }
+
+        writeString(p.quality == null ? null : p.quality.getFlag().getValue(), out);
+
+        Position pos = p.position;
+        out.writeBoolean(pos != null);
+        if (pos != null) {
+            writeShape(pos.bounds, out);
+            out.writeBoolean(pos.dimension != null);
+            if (pos.dimension != null) {
+                out.writeLong(pos.dimension.naxis1);
+                out.writeLong(pos.dimension.naxis2);
+            }
+            writeDouble(pos.resolution, out);
+            writeDouble(pos.sampleSize, out);
+            writeBoolean(pos.timeDependent, out);
+        }
+
+        Energy nrg = p.energy;
+        out.writeBoolean(nrg != null);
+        if (nrg != null) {
+            writeString(nrg.emBand == null ? null : nrg.emBand.getValue(), out);
+            writeInterval(nrg.bounds, out);
+            writeLong(nrg.dimension, out);
+            writeDouble(nrg.resolvingPower, out);
+            writeDouble(nrg.sampleSize, out);
+            writeString(nrg.bandpassName, out);
+            writeTransition(nrg.transition, out);
+            writeDouble(nrg.restwav, out);
+        }
+
+        Time tim = p.time;
+        out.writeBoolean(tim != null);
+        if (tim != null) {
+            writeInterval(tim.bounds, out);
+            writeLong(tim.dimension, out);
+            writeDouble(tim.resolution, out);
+            writeDouble(tim.sampleSize, out);
+            writeDouble(tim.exposure, out);
+        }
+
+        Polarization pol = p.polarization;
+        out.writeBoolean(pol != null);
+        if (pol != null) {
+            writeString(pol.states == null ? null : CaomUtil.encodeStates(pol.states), out);
+            writeLong(pol.dimension, out);
+        }
+
+        writeEntity(p, out);
+        out.writeInt(p.getArtifacts().size());
+        for (Artifact a : p.getArtifacts()) {
+            writeArtifact(a, out);
+        }
+    }
+
+    private void writeArtifact(Artifact a, DataOutputStream out) throws IOException {
+        writeURI(a.getURI(), out);
+        writeString(a.getProductType().getValue(), out);
+        writeString(a.getReleaseType().getValue(), out);
+        writeString(a.contentType, out);
+        writeLong(a.contentLength, out);
+        writeURI(a.contentChecksum, out);
+
+        writeEntity(a, out);
+        out.writeInt(a.getParts().size());
+        for (Part p : a.getParts()) {
+            writePart(p, out);
+        }
+    }
+
+    private void writePart(Part p, DataOutputStream out) throws IOException {
+        writeString(p.getName(), out);
+        writeString(p.productType == null ? null : p.productType.getValue(), out);
+
+        writeEntity(p, out);
+        out.writeInt(p.getChunks().size());
+        for (Chunk c : p.getChunks()) {
+            writeChunk(c, out);
+        }
+    }
+
+    private void writeChunk(Chunk c, DataOutputStream out) throws IOException {
+        writeInteger(c.naxis, out);
+        writeInteger(c.positionAxis1, out);
+        writeInteger(c.positionAxis2, out);
+        writeInteger(c.energyAxis, out);
+        writeInteger(c.timeAxis, out);
+        writeInteger(c.polarizationAxis, out);
+        writeInteger(c.observableAxis, out);
+
+        SpatialWCS pos = c.position;
+        out.writeBoolean(pos != null);
+        if (pos != null) {
+            CoordAxis2D axis = pos.getAxis();
+            writeAxis(axis.getAxis1(), out);
+            writeAxis(axis.getAxis2(), out);
+            writeError(axis.error1, out);
+            writeError(axis.error2, out);
+            writeRange(axis.range, out);
+            writeString(axis.bounds == null ? null : CaomUtil.encodeCoordBounds2D(axis.bounds), out);
+            writeFunction(axis.function, out);
+            writeString(pos.coordsys, out);
+            writeDouble(pos.equinox, out);
+            writeDouble(pos.resolution, out);
+        }
+
+        SpectralWCS nrg = c.energy;
+        out.writeBoolean(nrg != null);
+        if (nrg != null) {
+            writeAxis(nrg.getAxis(), out);
+            writeString(nrg.getSpecsys(), out);
+            writeString(nrg.ssysobs, out);
+            writeString(nrg.ssyssrc, out);
+            writeDouble(nrg.restfrq, out);
+            writeDouble(nrg.restwav, out);
+            writeDouble(nrg.velosys, out);
+            writeDouble(nrg.zsource, out);
+            writeDouble(nrg.velang, out);
+            writeString(nrg.bandpassName, out);
+            writeDouble(nrg.resolvingPower, out);
+            writeTransition(nrg.transition, out);
+        }
+
+        TemporalWCS tim = c.time;
+        out.writeBoolean(tim != null);
+        if (tim != null) {
+            writeAxis(tim.getAxis(), out);
+            writeString(tim.timesys, out);
+            writeString(tim.trefpos, out);
+            writeDouble(tim.mjdref, out);
+            writeDouble(tim.exposure, out);
+            writeDouble(tim.resolution, out);
+        }
+
+        out.writeBoolean(c.polarization != null);
+        if (c.polarization != null) {
+            writeAxis(c.polarization.getAxis(), out);
+        }
+
+        out.writeBoolean(c.observable != null);
+        if (c.observable != null) {
+            writeSlice(c.observable.getDependent(), out);
+            out.writeBoolean(c.observable.independent != null);
+            if (c.observable.independent != null) {
+                writeSlice(c.observable.independent, out);
+            }
+        }
+
+        writeEntity(c, out);
+    }
+
+    private void writeEntity(CaomEntity e, DataOutputStream out) throws IOException {
+        UUID id = e.getID();
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+        writeDate(e.getLastModified(), out);
+        writeDate(e.getMaxLastModified(), out);
+        writeURI(e.getMetaChecksum(), out);
+        writeURI(e.getAccMetaChecksum(), out);
+    }
+
+    private void writeShape(Shape s, DataOutputStream out) throws IOException {
+        if (s instanceof Circle) {
+            Circle circ = (Circle) s;
+            out.writeByte(CIRCLE);
+            writePoint(circ.getCenter(), out);
+            out.writeDouble(circ.getRadius());
+        } else if (s instanceof Polygon) {
+            Polygon poly = (Polygon) s;
+            out.writeByte(POLYGON);
+            out.writeInt(poly.getPoints().size());
+            for (Point pt : poly.getPoints()) {
+                writePoint(pt, out);
+            }
+            MultiPolygon mp = poly.getSamples();
+            if (mp == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(mp.getVertices().size());
+                for (Vertex v : mp.getVertices()) {
+                    out.writeDouble(v.cval1);
+                    out.writeDouble(v.cval2);
+                    out.writeInt(v.getType().getValue());
+                }
+            }
+        } else if (s == null) {
+            out.writeByte(NO_SHAPE);
+        } else {
+            throw new UnsupportedOperationException("cannot write: " + s.getClass().getName());
+        }
+    }
+
+    private void writePoint(Point p, DataOutputStream out) throws IOException {
+        out.writeDouble(p.cval1);
+        out.writeDouble(p.cval2);
+    }
+
+    private void writeInterval(Interval i, DataOutputStream out) throws IOException {
+        out.writeBoolean(i != null);
+        if (i != null) {
+            out.writeDouble(i.getLower());
+            out.writeDouble(i.getUpper());
+            List<SubInterval> samples = i.getSamples();
+            out.writeInt(samples.size());
+            for (SubInterval si : samples) {
+                out.writeDouble(si.getLower());
+                out.writeDouble(si.getUpper());
+            }
+        }
+    }
+
+    private void writeTransition(EnergyTransition t, DataOutputStream out) throws IOException {
+        out.writeBoolean(t != null);
+        if (t != null) {
+            writeString(t.getSpecies(), out);
+            writeString(t.getTransition(), out);
+        }
+    }
+
+    private void writeAxis(Axis a, DataOutputStream out) throws IOException {
+        writeString(a.getCtype(), out);
+        writeString(a.getCunit(), out);
+    }
+
+    private void writeAxis(CoordAxis1D axis, DataOutputStream out) throws IOException {
+        writeAxis(axis.getAxis(), out);
+        writeError(axis.error, out);
+        writeRange(axis.range, out);
+        CoordBounds1D bounds = axis.bounds;
+        if (bounds == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bounds.getSamples().size());
+            for (CoordRange1D r : bounds.getSamples()) {
+                writeRange(r, out);
+            }
+        }
+        CoordFunction1D f = axis.function;
+        out.writeBoolean(f != null);
+        if (f != null) {
+            writeLong(f.getNaxis(), out);
+            writeDouble(f.getDelta(), out);
+            writeRefCoord(f.getRefCoord(), out);
+        }
+    }
+
+    private void writeError(CoordError e, DataOutputStream out) throws IOException {
+        out.writeBoolean(e != null);
+        if (e != null) {
+            writeDouble(e.syser, out);
+            writeDouble(e.rnder, out);
+        }
+    }
+
+    private void writeRange(CoordRange1D r, DataOutputStream out) throws IOException {
+        out.writeBoolean(r != null);
+        if (r != null) {
+            writeRefCoord(r.getStart(), out);
+            writeRefCoord(r.getEnd(), out);
+        }
+    }
+
+    private void writeRange(CoordRange2D r, DataOutputStream out) throws IOException {
+        out.writeBoolean(r != null);
+        if (r != null) {
+            writeCoord(r.getStart(), out);
+            writeCoord(r.getEnd(), out);
+        }
+    }
+
+    private void writeFunction(CoordFunction2D f, DataOutputStream out) throws IOException {
+        out.writeBoolean(f != null);
+        if (f != null) {
+            out.writeLong(f.getDimension().naxis1);
+            out.writeLong(f.getDimension().naxis2);
+            writeCoord(f.getRefCoord(), out);
+            writeDouble(f.getCd11(), out);
+            writeDouble(f.getCd12(), out);
+            writeDouble(f.getCd21(), out);
+            writeDouble(f.getCd22(), out);
+        }
+    }
+
+    private void writeCoord(Coord2D c, DataOutputStream out) throws IOException {
+        writeRefCoord(c.getCoord1(), out);
+        writeRefCoord(c.getCoord2(), out);
+    }
+
+    private void writeRefCoord(RefCoord c, DataOutputStream out) throws IOException {
+        out.writeDouble(c.pix);
+        out.writeDouble(c.val);
+    }
+
+    private void writeSlice(Slice s, DataOutputStream out) throws IOException {
+        writeAxis(s.getAxis(), out);
+        writeLong(s.getBin(), out);
+    }
+
+    private void writeKeywords(Set<String> keywords, DataOutputStream out) throws IOException {
+        out.writeInt(keywords.size());
+        for (String k : keywords) {
+            writeString(k, out);
+        }
+    }
+
+    // nullable values: length -1 or presence flag
+
+    private void writeString(String s, DataOutputStream out) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] b = s.getBytes("UTF-8");
+            out.writeInt(b.length);
+            out.write(b);
+        }
+    }
+
+    private void writeURI(URI u, DataOutputStream out) throws IOException {
+        writeString(u == null ? null : u.toASCIIString(), out);
+    }
+
+    private void writeDate(Date d, DataOutputStream out) throws IOException {
+        out.writeBoolean(d != null);
+        if (d != null) {
+            out.writeLong(d.getTime());
+        }
+    }
+
+    private void writeDouble(Double d, DataOutputStream out) throws IOException {
+        out.writeBoolean(d != null);
+        if (d != null) {
+            out.writeDouble(d);
+        }
+    }
+
+    private void writeLong(Long l, DataOutputStream out) throws IOException {
+        out.writeBoolean(l != null);
+        if (l != null) {
+            out.writeLong(l);
+        }
+    }
+
+    private void writeInteger(Integer i, DataOutputStream out) throws IOException {
+        out.writeBoolean(i != null);
+        if (i != null) {
+            out.writeInt(i);
+        }
+    }
+
+    private void writeBoolean(Boolean b, DataOutputStream out) throws IOException {
+        out.writeBoolean(b != null);
+        if (b != null) {
+            out.writeBoolean(b);
+        }
+    }
+}
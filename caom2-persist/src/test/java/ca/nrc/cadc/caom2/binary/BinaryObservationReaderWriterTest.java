@@ -0,0 +1,436 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.binary;
+
+import ca.nrc.cadc.caom2.Algorithm;
+import ca.nrc.cadc.caom2.Artifact;
+import ca.nrc.cadc.caom2.CalibrationLevel;
+import ca.nrc.cadc.caom2.Chunk;
+import ca.nrc.cadc.caom2.CompositeObservation;
+import ca.nrc.cadc.caom2.DataProductType;
+import ca.nrc.cadc.caom2.DataQuality;
+import ca.nrc.cadc.caom2.Energy;
+import ca.nrc.cadc.caom2.EnergyBand;
+import ca.nrc.cadc.caom2.EnergyTransition;
+import ca.nrc.cadc.caom2.Environment;
+import ca.nrc.cadc.caom2.Instrument;
+import ca.nrc.cadc.caom2.Metrics;
+import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.ObservationIntentType;
+import ca.nrc.cadc.caom2.ObservationURI;
+import ca.nrc.cadc.caom2.Part;
+import ca.nrc.cadc.caom2.Plane;
+import ca.nrc.cadc.caom2.PlaneURI;
+import ca.nrc.cadc.caom2.Polarization;
+import ca.nrc.cadc.caom2.PolarizationState;
+import ca.nrc.cadc.caom2.Position;
+import ca.nrc.cadc.caom2.ProductType;
+import ca.nrc.cadc.caom2.Proposal;
+import ca.nrc.cadc.caom2.Provenance;
+import ca.nrc.cadc.caom2.Quality;
+import ca.nrc.cadc.caom2.ReleaseType;
+import ca.nrc.cadc.caom2.Requirements;
+import ca.nrc.cadc.caom2.SimpleObservation;
+import ca.nrc.cadc.caom2.Status;
+import ca.nrc.cadc.caom2.Target;
+import ca.nrc.cadc.caom2.TargetPosition;
+import ca.nrc.cadc.caom2.TargetType;
+import ca.nrc.cadc.caom2.Telescope;
+import ca.nrc.cadc.caom2.Time;
+import ca.nrc.cadc.caom2.types.Circle;
+import ca.nrc.cadc.caom2.types.Interval;
+import ca.nrc.cadc.caom2.types.MultiPolygon;
+import ca.nrc.cadc.caom2.types.Point;
+import ca.nrc.cadc.caom2.types.Polygon;
+import ca.nrc.cadc.caom2.types.SegmentType;
+import ca.nrc.cadc.caom2.types.SubInterval;
+import ca.nrc.cadc.caom2.types.Vertex;
+import ca.nrc.cadc.caom2.util.CaomUtil;
+import ca.nrc.cadc.caom2.wcs.Axis;
+import ca.nrc.cadc.caom2.wcs.Coord2D;
+import ca.nrc.cadc.caom2.wcs.CoordAxis1D;
+import ca.nrc.cadc.caom2.wcs.CoordAxis2D;
+import ca.nrc.cadc.caom2.wcs.CoordBounds1D;
+import ca.nrc.cadc.caom2.wcs.CoordError;
+import ca.nrc.cadc.caom2.wcs.CoordFunction1D;
+import ca.nrc.cadc.caom2.wcs.CoordFunction2D;
+import ca.nrc.cadc.caom2.wcs.CoordRange1D;
+import ca.nrc.cadc.caom2.wcs.CoordRange2D;
+import ca.nrc.cadc.caom2.wcs.Dimension2D;
+import ca.nrc.cadc.caom2.wcs.ObservableAxis;
+import ca.nrc.cadc.caom2.wcs.PolarizationWCS;
+import ca.nrc.cadc.caom2.wcs.RefCoord;
+import ca.nrc.cadc.caom2.wcs.Slice;
+import ca.nrc.cadc.caom2.wcs.SpatialWCS;
+import ca.nrc.cadc.caom2.wcs.SpectralWCS;
+import ca.nrc.cadc.caom2.wcs.TemporalWCS;
+import ca.nrc.cadc.caom2.xml.ObservationParsingException;
+import ca.nrc.cadc.caom2.xml.ObservationWriter;
+import ca.nrc.cadc.util.Log4jInit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class BinaryObservationReaderWriterTest {
+    private static final Logger log = Logger.getLogger(BinaryObservationReaderWriterTest.class);
+
+    static {
+        Log4jInit.setLevel("ca.nrc.cadc.caom2", Level.INFO);
+    }
+
+    private static final Date TEST_DATE = new Date(1500000000000L);
+
+    @Test
+    public void testRoundTripSimple() {
+        try {
+            Observation obs = new SimpleObservation("FOO", "bar");
+            assignChecksums(obs);
+
+            Observation actual = roundTrip(obs);
+            Assert.assertTrue(actual instanceof SimpleObservation);
+            assertSame(obs, actual);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testRoundTripFull() {
+        try {
+            Observation obs = getFullObservation();
+            assignChecksums(obs);
+
+            Observation actual = roundTrip(obs);
+            Assert.assertTrue(actual instanceof CompositeObservation);
+            Assert.assertEquals(3, ((CompositeObservation) actual).getMembers().size());
+            Assert.assertEquals(2, actual.getPlanes().size());
+            assertSame(obs, actual);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testIsBinary() {
+        try {
+            Observation obs = new SimpleObservation("FOO", "bar");
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            new BinaryObservationWriter().write(obs, bos);
+            Assert.assertTrue(BinaryObservationReader.isBinary(bos.toByteArray()));
+
+            bos.reset();
+            new ObservationWriter().write(obs, bos);
+            Assert.assertFalse(BinaryObservationReader.isBinary(bos.toByteArray()));
+            Assert.assertFalse(BinaryObservationReader.isBinary(new byte[] { 'C', 'A' }));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testRejectVersion() {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            new BinaryObservationWriter().write(new SimpleObservation("FOO", "bar"), bos);
+            byte[] doc = bos.toByteArray();
+            doc[BinaryObservationWriter.MAGIC.length] = (byte) (BinaryObservationWriter.VERSION + 1);
+            try {
+                new BinaryObservationReader().read(new ByteArrayInputStream(doc));
+                Assert.fail("expected ObservationParsingException");
+            } catch (ObservationParsingException expected) {
+                log.debug("caught expected: " + expected);
+            }
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    private Observation roundTrip(Observation obs) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new BinaryObservationWriter().write(obs, bos);
+        byte[] doc = bos.toByteArray();
+
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        new ObservationWriter().write(obs, xml);
+        log.info("binary: " + doc.length + " bytes xml: " + xml.size() + " bytes");
+
+        return new BinaryObservationReader().read(new ByteArrayInputStream(doc));
+    }
+
+    // every field is in the XML document and the checksums
+    private void assertSame(Observation expected, Observation actual) throws Exception {
+        Assert.assertEquals(expected.getURI(), actual.getURI());
+        Assert.assertEquals(expected.getID(), actual.getID());
+        Assert.assertEquals(expected.getLastModified(), actual.getLastModified());
+        Assert.assertEquals(expected.getMaxLastModified(), actual.getMaxLastModified());
+        Assert.assertEquals(expected.getMetaChecksum(), actual.getMetaChecksum());
+        Assert.assertEquals(expected.getAccMetaChecksum(), actual.getAccMetaChecksum());
+
+        URI acc = actual.computeAccMetaChecksum(MessageDigest.getInstance("MD5"));
+        Assert.assertEquals(expected.getAccMetaChecksum(), acc);
+
+        ByteArrayOutputStream exml = new ByteArrayOutputStream();
+        new ObservationWriter().write(expected, exml);
+        ByteArrayOutputStream axml = new ByteArrayOutputStream();
+        new ObservationWriter().write(actual, axml);
+        Assert.assertEquals(exml.toString("UTF-8"), axml.toString("UTF-8"));
+    }
+
+    private void assignChecksums(Observation obs) throws Exception {
+        CaomUtil.assignLastModified(obs, TEST_DATE, "lastModified");
+        CaomUtil.assignLastModified(obs, TEST_DATE, "maxLastModified");
+        CaomUtil.assignMetaChecksum(obs, obs.computeMetaChecksum(MessageDigest.getInstance("MD5")), "metaChecksum");
+        URI acc = obs.computeAccMetaChecksum(MessageDigest.getInstance("MD5"));
+        CaomUtil.assignMetaChecksum(obs, acc, "accMetaChecksum");
+    }
+
+    private Observation getFullObservation() throws Exception {
+        CompositeObservation o = new CompositeObservation("FOO", "bar", new Algorithm("doit"));
+        o.getMembers().add(new ObservationURI("FOO", "simple1"));
+        o.getMembers().add(new ObservationURI("FOO", "simple2"));
+        o.getMembers().add(new ObservationURI("FOO", "simple3"));
+
+        o.intent = ObservationIntentType.SCIENCE;
+        o.type = "object";
+        o.sequenceNumber = 123;
+        o.metaRelease = TEST_DATE;
+
+        o.proposal = new Proposal("MyFirstProposal");
+        o.proposal.getKeywords().add("abc");
+        o.proposal.getKeywords().add("x=1");
+        o.proposal.pi = "little old me";
+        o.proposal.title = "My Little Pony";
+        o.proposal.project = "Project 51";
+
+        o.target = new Target("Pony 51");
+        o.target.type = TargetType.OBJECT;
+        o.target.standard = Boolean.TRUE;
+        o.target.redshift = 0.0;
+        o.target.moving = Boolean.FALSE;
+
+        o.targetPosition = new TargetPosition("FK5", new Point(1.0, 2.0));
+        o.targetPosition.equinox = 2000.0;
+
+        o.requirements = new Requirements(Status.FAIL);
+
+        o.telescope = new Telescope("BothEyes");
+        o.telescope.getKeywords().add("été");
+        o.telescope.geoLocationX = 100.0;
+        o.telescope.geoLocationY = 200.0;
+        o.telescope.geoLocationZ = 300.0;
+
+        o.instrument = new Instrument("test-instrument");
+
+        o.environment = new Environment();
+        o.environment.seeing = 0.08;
+        o.environment.photometric = Boolean.TRUE;
+
+        o.getPlanes().add(getPlane("thing1", true));
+        o.getPlanes().add(getPlane("thing2", false));
+        return o;
+    }
+
+    private Plane getPlane(String productID, boolean poly) throws Exception {
+        Plane p = new Plane(productID);
+        p.creatorID = URI.create("ivo://example.com/TEST?" + productID);
+        p.calibrationLevel = CalibrationLevel.CALIBRATED;
+        p.dataProductType = DataProductType.IMAGE;
+        p.metaRelease = TEST_DATE;
+        p.dataRelease = TEST_DATE;
+
+        p.provenance = new Provenance("doit");
+        p.provenance.lastExecuted = TEST_DATE;
+        p.provenance.producer = "MyProducer";
+        p.provenance.reference = URI.create("http://www.example.com/MyProject/doit");
+        p.provenance.version = "0.1alpha4";
+        p.provenance.getInputs().add(new PlaneURI(new ObservationURI("FOO", "in"), "in1"));
+        p.provenance.getInputs().add(new PlaneURI(new ObservationURI("FOO", "in"), "in2"));
+
+        p.metrics = new Metrics();
+        p.metrics.sourceNumberDensity = 100.0;
+        p.metrics.background = 2.7;
+
+        p.quality = new DataQuality(Quality.JUNK);
+
+        p.position = new Position();
+        if (poly) {
+            MultiPolygon mp = new MultiPolygon();
+            mp.getVertices().add(new Vertex(2.0, 2.0, SegmentType.MOVE));
+            mp.getVertices().add(new Vertex(1.0, 4.0, SegmentType.LINE));
+            mp.getVertices().add(new Vertex(3.0, 3.0, SegmentType.LINE));
+            mp.getVertices().add(new Vertex(0.0, 0.0, SegmentType.CLOSE));
+            List<Point> points = new ArrayList<Point>();
+            for (Vertex v : mp.getVertices()) {
+                if (!SegmentType.CLOSE.equals(v.getType())) {
+                    points.add(new Point(v.cval1, v.cval2));
+                }
+            }
+            p.position.bounds = new Polygon(points, mp);
+        } else {
+            p.position.bounds = new Circle(new Point(0.0, 89.0), 2.0);
+        }
+        p.position.dimension = new Dimension2D(1024, 2048);
+        p.position.resolution = 0.05;
+        p.position.timeDependent = false;
+
+        p.energy = new Energy();
+        p.energy.bandpassName = "V";
+        p.energy.bounds = new Interval(400e-6, 900e-6);
+        p.energy.bounds.getSamples().add(new SubInterval(400e-6, 500e-6));
+        p.energy.bounds.getSamples().add(new SubInterval(800e-6, 900e-6));
+        p.energy.dimension = 2L;
+        p.energy.emBand = EnergyBand.OPTICAL;
+        p.energy.transition = new EnergyTransition("H", "alpha");
+
+        p.time = new Time();
+        p.time.bounds = new Interval(50000.25, 50000.75);
+        p.time.exposure = 666.0;
+
+        p.polarization = new Polarization();
+        p.polarization.dimension = 2L;
+        p.polarization.states = new ArrayList<PolarizationState>();
+        p.polarization.states.add(PolarizationState.I);
+        p.polarization.states.add(PolarizationState.Q);
+
+        Artifact a = new Artifact(URI.create("ad:FOO/" + productID), ProductType.SCIENCE, ReleaseType.DATA);
+        a.contentType = "application/fits";
+        a.contentLength = 12345L;
+        a.contentChecksum = URI.create("md5:fb696fe6e2fbb98dee340bd1e8811dcb");
+        p.getArtifacts().add(a);
+
+        Part part = new Part("0");
+        part.productType = ProductType.SCIENCE;
+        a.getParts().add(part);
+        part.getChunks().add(getChunk());
+        part.getChunks().add(new Chunk());
+        return p;
+    }
+
+    private Chunk getChunk() {
+        Chunk c = new Chunk();
+        c.naxis = 4;
+        c.positionAxis1 = 1;
+        c.positionAxis2 = 2;
+        c.energyAxis = 3;
+        c.polarizationAxis = 4;
+
+        c.position = new SpatialWCS(new CoordAxis2D(new Axis("RA---TAN", "deg"), new Axis("DEC--TAN", "deg")));
+        c.position.coordsys = "FK5";
+        c.position.equinox = 2000.0;
+        c.position.getAxis().error1 = new CoordError(1.0, 2.0);
+        Coord2D ref = new Coord2D(new RefCoord(512.0, 10.0), new RefCoord(1024.0, 20.0));
+        c.position.getAxis().function = new CoordFunction2D(new Dimension2D(1024, 2048), ref, 1.0e-3, 0.0, 0.0, 1.0e-3);
+        Coord2D c1 = new Coord2D(new RefCoord(0.5, 10.0), new RefCoord(0.5, 20.0));
+        Coord2D c2 = new Coord2D(new RefCoord(1024.5, 20.0), new RefCoord(2048.5, 22.0));
+        c.position.getAxis().range = new CoordRange2D(c1, c2);
+
+        c.energy = new SpectralWCS(new CoordAxis1D(new Axis("WAVE", "m")), "TOPOCENT");
+        c.energy.restwav = 1.0e-6;
+        c.energy.resolvingPower = 50000.0;
+        RefCoord e1 = new RefCoord(0.5, 300.0e-9);
+        RefCoord e2 = new RefCoord(1024.0, 450.0e-9);
+        RefCoord e3 = new RefCoord(2048.5, 600.0e-9);
+        c.energy.getAxis().range = new CoordRange1D(e1, e3);
+        c.energy.getAxis().bounds = new CoordBounds1D();
+        c.energy.getAxis().bounds.getSamples().add(new CoordRange1D(e1, e2));
+        c.energy.getAxis().bounds.getSamples().add(new CoordRange1D(e2, e3));
+        c.energy.getAxis().function = new CoordFunction1D(2048L, (e3.val - e1.val) / 2048.0, e1);
+
+        c.time = new TemporalWCS(new CoordAxis1D(new Axis("TIME", "d")));
+        c.time.timesys = "UTC";
+        c.time.mjdref = 50000.0;
+        c.time.exposure = 4320.0;
+
+        c.polarization = new PolarizationWCS(new CoordAxis1D(new Axis("STOKES", null)));
+        c.polarization.getAxis().function = new CoordFunction1D(2L, 1.0, new RefCoord(1.0, 1.0));
+
+        c.observable = new ObservableAxis(new Slice(new Axis("flux", "J"), 3L));
+        c.observable.independent = new Slice(new Axis("WAV", "um"), 4L);
+        return c;
+    }
+}
@@ -72,6 +72,7 @@ package ca.nrc.cadc.caom2.repo;
 import ca.nrc.cadc.ac.GroupURI;
 
 import ca.nrc.cadc.caom2.persistence.PostgreSQLGenerator;
+import ca.nrc.cadc.caom2.persistence.PostgreSQLIntArrayGenerator;
 import ca.nrc.cadc.caom2.persistence.SQLGenerator;
 import ca.nrc.cadc.caom2.persistence.SybaseSQLGenerator;
 import ca.nrc.cadc.caom2.version.InitDatabase;
@@ -85,6 +86,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
 
@@ -97,12 +100,48 @@ import org.apache.log4j.Logger;
 public class CaomRepoConfig {
     private static final Logger log = Logger.getLogger(CaomRepoConfig.class);
 
+    // config files are loaded once and shared: path -> config
+    private static final ConcurrentMap<String, CaomRepoConfig> CONFIGS = new ConcurrentHashMap<String, CaomRepoConfig>();
+
+    // databases that have been initialised: dataSourceName + database + schema
+    private static final ConcurrentMap<String, Boolean> INITIALISED = new ConcurrentHashMap<String, Boolean>();
+
     private List<CaomRepoConfig.Item> config;
+    private long lastModified;
+    private long length;
 
     public CaomRepoConfig(File config) throws IOException {
+        this.lastModified = config.lastModified();
+        this.length = config.length();
         this.config = loadConfig(config);
     }
 
+    /**
+     * Get the shared configuration from the specified file. The file is only read
+     * again if it was modified since the last call.
+     *
+     * @param config configuration file
+     * @return configuration
+     * @throws IOException failure to read the file
+     */
+    public static CaomRepoConfig getInstance(File config) throws IOException {
+        String key = config.getAbsolutePath();
+        CaomRepoConfig ret = CONFIGS.get(key);
+        if (ret == null || ret.lastModified != config.lastModified() || ret.length != config.length()) {
+            CaomRepoConfig prev = ret;
+            ret = new CaomRepoConfig(config);
+            CONFIGS.put(key, ret);
+            if (prev != null) {
+                log.info("reloaded modified config: " + key);
+                // groups may have changed
+                for (Item i : prev.config) {
+                    GroupMembershipCache.getInstance().invalidate(i.collection);
+                }
+            }
+        }
+        return ret;
+    }
+
     public Item getConfig(String collection) {
         Iterator<Item> i = config.iterator();
         while (i.hasNext()) {
@@ -157,8 +196,36 @@ public class CaomRepoConfig {
         }
     }
 
+    // init each database once per process and generator: the first call (or retry
+    // after failure) checks the ModelVersion and creates/upgrades tables; a collection
+    // that switches to another generator may need a migration
     private void initDB(CaomRepoConfig.Item i) {
-        if (PostgreSQLGenerator.class.equals(i.getSqlGenerator())) {
+        String key = i.getDataSourceName() + " " + i.getDatabase() + " " + i.getSchema()
+            + " " + i.getSqlGenerator().getName();
+        if (INITIALISED.containsKey(key)) {
+            return;
+        }
+        synchronized (INITIALISED) {
+            if (INITIALISED.containsKey(key)) {
+                return;
+            }
+            doInitDB(i);
+            INITIALISED.put(key, Boolean.TRUE);
+            log.debug("initDB: " + key);
+        }
+    }
+
+    private void doInitDB(CaomRepoConfig.Item i) {
+        if (PostgreSQLIntArrayGenerator.class.equals(i.getSqlGenerator())) {
+            try {
+                DataSource ds = DBUtil.findJNDIDataSource(i.getDataSourceName());
+                InitDatabase init = new InitDatabase(ds, i.getDatabase(), i.getSchema());
+                init.doInitIntArrayGroups();
+            } catch (NamingException ex) {
+                throw new RuntimeException("CONFIG ERROR: failed to init or recognise database",
+                        ex);
+            }
+        } else if (PostgreSQLGenerator.class.equals(i.getSqlGenerator())) {
             try {
                 DataSource ds = DBUtil.findJNDIDataSource(i.getDataSourceName());
                 InitDatabase init = new InitDatabase(ds, i.getDatabase(), i.getSchema());
@@ -209,6 +276,7 @@ public class CaomRepoConfig {
 
         private boolean computeMetadata;
         private boolean computeMetadataValidation;
+        private boolean trustClientChecksum;
 
         Item(Class sqlGenerator, String collection, String dataSourceName, String database,
                 String schema, String obsTableName, GroupURI readOnlyGroup,
@@ -228,7 +296,7 @@ public class CaomRepoConfig {
             return "RepoConfig.Item[" + collection + "," + dataSourceName + "," + database + ","
                     + schema + "," + obsTableName + "," + readOnlyGroup + "," + readWriteGroup + ","
                     + sqlGenerator.getSimpleName() + "," + computeMetadata + ","
-                    + computeMetadataValidation + "]";
+                    + computeMetadataValidation + "," + trustClientChecksum + "]";
         }
 
         public Class getSqlGenerator() {
@@ -243,6 +311,14 @@ public class CaomRepoConfig {
             return computeMetadataValidation;
         }
 
+        /**
+         * @return true if the accMetaChecksum of submitted observations is used
+         *     without verification to detect unchanged observations
+         */
+        public boolean getTrustClientChecksum() {
+            return trustClientChecksum;
+        }
+
         public String getTestTable() {
             return database + "." + schema + "." + obsTableName;
         }
@@ -335,6 +411,7 @@ public class CaomRepoConfig {
             // default values for backwards compat to existing config
             boolean computeMetadata = false;
             boolean computeMetadataValidation = true;
+            boolean trustClientChecksum = false;
             if (parts.length >= 8) {
                 String options = parts[7];
                 log.debug(collection + " options: " + options);
@@ -346,6 +423,8 @@ public class CaomRepoConfig {
                             computeMetadata = Boolean.parseBoolean(kv[1]);
                         } else if ("computeMetadataValidation".equals(kv[0])) {
                             computeMetadataValidation = Boolean.parseBoolean(kv[1]);
+                        } else if ("trustClientChecksum".equals(kv[0])) {
+                            trustClientChecksum = Boolean.parseBoolean(kv[1]);
                         }
 
                         // else: ignore
@@ -360,6 +439,7 @@ public class CaomRepoConfig {
                     schema, obsTable, ro, rw);
             rci.computeMetadata = computeMetadata;
             rci.computeMetadataValidation = computeMetadataValidation;
+            rci.trustClientChecksum = trustClientChecksum;
             log.debug(collection + ": loaded " + rci);
             return rci;
         } else {
@@ -0,0 +1,145 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+
+package ca.nrc.cadc.caom2.repo;
+
+import ca.nrc.cadc.caom2.persistence.PlaneMetadataComputer;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Plane metadata computation pool shared by all requests. Computation is CPU bound
+ * (WCSLib via JNI) so requests share one bounded pool (size from the
+ * ca.nrc.cadc.caom2.repo.ComputePool.threads system property, default: available
+ * processors). The pool threads are released when the web application is stopped:
+ * this class is a listener found by annotation scanning (servlet 3.0). A web.xml
+ * with metadata-complete="true" must configure it explicitly:
+ * <pre>
+ * &lt;listener&gt;
+ *     &lt;listener-class&gt;ca.nrc.cadc.caom2.repo.ComputePool&lt;/listener-class&gt;
+ * &lt;/listener&gt;
+ * </pre>
+ *
+ * @author agent
+ */
+@WebListener
+public class ComputePool implements ServletContextListener {
+    private static final Logger log = Logger.getLogger(ComputePool.class);
+
+    public static final String THREADS_KEY = ComputePool.class.getName() + ".threads";
+
+    private static PlaneMetadataComputer instance;
+
+    public ComputePool() {
+    }
+
+    /**
+     * @return the computer shared by the repo service
+     */
+    public static synchronized PlaneMetadataComputer getInstance() {
+        if (instance == null) {
+            instance = new PlaneMetadataComputer(getThreads());
+        }
+        return instance;
+    }
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        // created on first use
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        synchronized (ComputePool.class) {
+            if (instance != null) {
+                log.info("shutdown: plane metadata compute pool");
+                instance.shutdown();
+                instance = null;
+            }
+        }
+    }
+
+    private static int getThreads() {
+        int ret = Runtime.getRuntime().availableProcessors();
+        String val = System.getProperty(THREADS_KEY);
+        if (val != null) {
+            try {
+                ret = Integer.parseInt(val);
+            } catch (NumberFormatException ex) {
+                log.warn("invalid " + THREADS_KEY + ": " + val + " -- using " + ret);
+            }
+        }
+        return Math.max(1, ret);
+    }
+}
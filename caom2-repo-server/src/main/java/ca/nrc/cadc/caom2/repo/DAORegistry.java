@@ -0,0 +1,151 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.repo;
+
+import ca.nrc.cadc.caom2.persistence.AbstractDAO;
+import ca.nrc.cadc.caom2.persistence.DataSourceWrapper;
+import ca.nrc.cadc.caom2.persistence.ObservationDAO;
+import ca.nrc.cadc.caom2.persistence.SQLGenerator;
+import ca.nrc.cadc.db.DBUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Per-collection registry of the DataSource and SQLGenerator used by the repo service.
+ * Both are thread-safe and created once per collection (and again if the collection
+ * configuration changes), so creating the per-request ObservationDAO does not do a
+ * JNDI lookup or build the generator table and column maps. DAOs hold the transaction
+ * state of a request so they are not shared.
+ *
+ * @author agent
+ */
+public final class DAORegistry {
+    private static final Logger log = Logger.getLogger(DAORegistry.class);
+
+    private static final ConcurrentMap<String, Entry> ENTRIES = new ConcurrentHashMap<String, Entry>();
+
+    private DAORegistry() {
+    }
+
+    /**
+     * Get an ObservationDAO for the specified collection configuration.
+     *
+     * @param item collection configuration
+     * @return new DAO using the shared DataSource and SQLGenerator
+     */
+    public static ObservationDAO getObservationDAO(CaomRepoConfig.Item item) {
+        Entry e = getEntry(item);
+
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put("dataSource", e.dataSource);
+        props.put("database", item.getDatabase());
+        props.put("schema", item.getSchema());
+        props.put(SQLGenerator.class.getName(), e.generator);
+        ObservationDAO ret = new ObservationDAO();
+        ret.setConfig(props);
+        return ret;
+    }
+
+    private static Entry getEntry(CaomRepoConfig.Item item) {
+        Entry ret = ENTRIES.get(item.getCollection());
+        if (ret == null || ret.item != item) {
+            // new collection or reloaded config
+            try {
+                DataSource ds = DBUtil.findJNDIDataSource(item.getDataSourceName());
+                ret = new Entry(item, new DataSourceWrapper(item.getDatabase(), ds),
+                    AbstractDAO.createSQLGenerator(item.getSqlGenerator(), item.getDatabase(), item.getSchema()));
+            } catch (NamingException ex) {
+                throw new IllegalArgumentException("cannot find JNDI DataSource: " + item.getDataSourceName(), ex);
+            }
+            ENTRIES.put(item.getCollection(), ret);
+            log.debug("created: " + item);
+        }
+        return ret;
+    }
+
+    private static class Entry {
+        final CaomRepoConfig.Item item;
+        final DataSource dataSource;
+        final SQLGenerator generator;
+
+        Entry(CaomRepoConfig.Item item, DataSource dataSource, SQLGenerator generator) {
+            this.item = item;
+            this.dataSource = dataSource;
+            this.generator = generator;
+        }
+    }
+}
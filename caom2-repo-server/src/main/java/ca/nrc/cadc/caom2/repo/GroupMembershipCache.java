@@ -0,0 +1,222 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.repo;
+
+import ca.nrc.cadc.ac.GroupURI;
+
+import java.security.Principal;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.security.auth.Subject;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Bounded cache of group membership decisions: (collection, caller, group) to
+ * member or not member. Positive and negative decisions expire separately and the
+ * least recently used entries are dropped when the cache is full.
+ *
+ * @author agent
+ */
+public class GroupMembershipCache {
+    private static final Logger log = Logger.getLogger(GroupMembershipCache.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    public static final long DEFAULT_MEMBER_TTL = 5 * 60 * 1000L;
+    public static final long DEFAULT_NOT_MEMBER_TTL = 60 * 1000L;
+
+    private final int maxEntries;
+    private final long memberTTL;
+    private final long notMemberTTL;
+
+    private final Map<String, Decision> decisions;
+
+    private static final GroupMembershipCache INSTANCE = new GroupMembershipCache();
+
+    /**
+     * @return the cache shared by the repo service
+     */
+    public static GroupMembershipCache getInstance() {
+        return INSTANCE;
+    }
+
+    public GroupMembershipCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MEMBER_TTL, DEFAULT_NOT_MEMBER_TTL);
+    }
+
+    /**
+     * @param maxEntries maximum number of decisions kept
+     * @param memberTTL lifetime of a positive decision in milliseconds
+     * @param notMemberTTL lifetime of a negative decision in milliseconds
+     */
+    public GroupMembershipCache(final int maxEntries, long memberTTL, long notMemberTTL) {
+        this.maxEntries = maxEntries;
+        this.memberTTL = memberTTL;
+        this.notMemberTTL = notMemberTTL;
+        this.decisions = new LinkedHashMap<String, Decision>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Decision> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get a cached decision.
+     *
+     * @param collection collection the decision applies to
+     * @param caller caller identity from getCallerKey
+     * @param group the group
+     * @return TRUE or FALSE, or null if not cached or expired
+     */
+    public Boolean get(String collection, String caller, GroupURI group) {
+        String key = getKey(collection, caller, group);
+        synchronized (decisions) {
+            Decision d = decisions.get(key);
+            if (d == null) {
+                return null;
+            }
+            if (d.expires < System.currentTimeMillis()) {
+                decisions.remove(key);
+                return null;
+            }
+            return d.member;
+        }
+    }
+
+    public void put(String collection, String caller, GroupURI group, boolean member) {
+        long ttl = member ? memberTTL : notMemberTTL;
+        Decision d = new Decision(member, System.currentTimeMillis() + ttl);
+        synchronized (decisions) {
+            decisions.put(getKey(collection, caller, group), d);
+        }
+    }
+
+    /**
+     * Drop all decisions for a collection, e.g. after the groups for the
+     * collection were changed.
+     *
+     * @param collection the collection
+     */
+    public void invalidate(String collection) {
+        String prefix = collection + "\n";
+        int n = 0;
+        synchronized (decisions) {
+            Iterator<String> iter = decisions.keySet().iterator();
+            while (iter.hasNext()) {
+                if (iter.next().startsWith(prefix)) {
+                    iter.remove();
+                    n++;
+                }
+            }
+        }
+        log.debug("invalidate: " + collection + " " + n + " decisions");
+    }
+
+    public int size() {
+        synchronized (decisions) {
+            return decisions.size();
+        }
+    }
+
+    /**
+     * Get a key for the identity of the caller: all principals of the subject.
+     *
+     * @param s caller
+     * @return caller key or null for anonymous callers
+     */
+    public static String getCallerKey(Subject s) {
+        if (s == null || s.getPrincipals().isEmpty()) {
+            return null;
+        }
+        Set<String> names = new TreeSet<String>();
+        for (Principal p : s.getPrincipals()) {
+            names.add(p.getClass().getSimpleName() + "=" + p.getName());
+        }
+        return names.toString();
+    }
+
+    private static String getKey(String collection, String caller, GroupURI group) {
+        return collection + "\n" + caller + "\n" + group.getURI();
+    }
+
+    private static class Decision {
+        final boolean member;
+        final long expires;
+
+        Decision(boolean member, long expires) {
+            this.member = member;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+
+package ca.nrc.cadc.caom2.repo;
+
+import ca.nrc.cadc.caom2.ObservationURI;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Bounded in-memory cache of rendered observation documents keyed by observation
+ * URI and document format. Each document is stored with the accMetaChecksum of the
+ * observation it was rendered from and is only returned for the same checksum, so
+ * modified observations are never served from the cache and nothing needs to be
+ * invalidated when an observation is updated. The least recently used documents
+ * are dropped when the total size exceeds the limit.
+ *
+ * @author agent
+ */
+public class ObservationDocumentCache {
+    private static final Logger log = Logger.getLogger(ObservationDocumentCache.class);
+
+    public static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024L;
+
+    private final long maxBytes;
+    private final long maxDocumentBytes;
+    private long curBytes = 0L;
+
+    private final Map<String, Document> documents = new LinkedHashMap<String, Document>(1024, 0.75f, true);
+
+    private static final ObservationDocumentCache INSTANCE = new ObservationDocumentCache();
+
+    /**
+     * @return the cache shared by the repo service
+     */
+    public static ObservationDocumentCache getInstance() {
+        return INSTANCE;
+    }
+
+    public ObservationDocumentCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes maximum total size of the cached documents
+     */
+    public ObservationDocumentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        // a few large documents should not flush the whole cache
+        this.maxDocumentBytes = maxBytes / 16;
+    }
+
+    /**
+     * Get a cached document.
+     *
+     * @param uri observation
+     * @param format document format
+     * @param accMetaChecksum current accMetaChecksum of the observation
+     * @return the document or null if not cached or rendered from a different state
+     */
+    public byte[] get(ObservationURI uri, String format, URI accMetaChecksum) {
+        if (accMetaChecksum == null) {
+            return null;
+        }
+        String key = getKey(uri, format);
+        synchronized (documents) {
+            Document d = documents.get(key);
+            if (d == null) {
+                return null;
+            }
+            if (!accMetaChecksum.equals(d.accMetaChecksum)) {
+                remove(key);
+                return null;
+            }
+            return d.content;
+        }
+    }
+
+    /**
+     * Add a document. The content must not be modified after this call.
+     *
+     * @param uri observation
+     * @param format document format
+     * @param accMetaChecksum accMetaChecksum of the observation the document was rendered from
+     * @param content the document
+     */
+    public void put(ObservationURI uri, String format, URI accMetaChecksum, byte[] content) {
+        if (accMetaChecksum == null || content.length > maxDocumentBytes) {
+            return;
+        }
+        String key = getKey(uri, format);
+        synchronized (documents) {
+            remove(key);
+            documents.put(key, new Document(accMetaChecksum, content));
+            curBytes += content.length;
+            Iterator<Document> iter = documents.values().iterator();
+            while (curBytes > maxBytes && iter.hasNext()) {
+                curBytes -= iter.next().content.length;
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop all documents for an observation, e.g. after it was deleted.
+     *
+     * @param uri the observation
+     */
+    public void invalidate(ObservationURI uri) {
+        String prefix = uri.getURI().toASCIIString() + "\n";
+        int n = 0;
+        synchronized (documents) {
+            Iterator<Map.Entry<String, Document>> iter = documents.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<String, Document> e = iter.next();
+                if (e.getKey().startsWith(prefix)) {
+                    curBytes -= e.getValue().content.length;
+                    iter.remove();
+                    n++;
+                }
+            }
+        }
+        log.debug("invalidate: " + uri + " " + n + " documents");
+    }
+
+    public int size() {
+        synchronized (documents) {
+            return documents.size();
+        }
+    }
+
+    /**
+     * @return total size of the cached documents in bytes
+     */
+    public long getBytes() {
+        synchronized (documents) {
+            return curBytes;
+        }
+    }
+
+    // caller must hold the lock
+    private void remove(String key) {
+        Document d = documents.remove(key);
+        if (d != null) {
+            curBytes -= d.content.length;
+        }
+    }
+
+    private static String getKey(ObservationURI uri, String format) {
+        return uri.getURI().toASCIIString() + "\n" + format;
+    }
+
+    private static class Document {
+        final URI accMetaChecksum;
+        final byte[] content;
+
+        Document(URI accMetaChecksum, byte[] content) {
+            this.accMetaChecksum = accMetaChecksum;
+            this.content = content;
+        }
+    }
+}
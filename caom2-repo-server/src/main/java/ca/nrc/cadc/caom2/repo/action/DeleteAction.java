@@ -71,6 +71,7 @@ package ca.nrc.cadc.caom2.repo.action;
 
 import ca.nrc.cadc.caom2.ObservationURI;
 import ca.nrc.cadc.caom2.persistence.ObservationDAO;
+import ca.nrc.cadc.caom2.repo.ObservationDocumentCache;
 import ca.nrc.cadc.net.ResourceNotFoundException;
 
 import org.apache.log4j.Logger;
@@ -99,6 +100,7 @@ public class DeleteAction extends RepoAction {
         }
 
         dao.delete(uri);
+        ObservationDocumentCache.getInstance().invalidate(uri);
 
         log.debug("DONE: " + uri);
     }
@@ -72,22 +72,34 @@ package ca.nrc.cadc.caom2.repo.action;
 import ca.nrc.cadc.caom2.Observation;
 import ca.nrc.cadc.caom2.ObservationState;
 import ca.nrc.cadc.caom2.ObservationURI;
+import ca.nrc.cadc.caom2.binary.BinaryObservationWriter;
 import ca.nrc.cadc.caom2.persistence.ObservationDAO;
+import ca.nrc.cadc.caom2.persistence.ObservationStateIterator;
 import ca.nrc.cadc.caom2.repo.CaomRepoConfig;
+import ca.nrc.cadc.caom2.repo.ObservationDocumentCache;
 import ca.nrc.cadc.caom2.xml.ObservationWriter;
+import ca.nrc.cadc.caom2.xml.XmlConstants;
 import ca.nrc.cadc.date.DateUtil;
 import ca.nrc.cadc.io.ByteCountOutputStream;
 import ca.nrc.cadc.net.ResourceNotFoundException;
 
 import com.csvreader.CsvWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.net.URI;
 import java.text.DateFormat;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 import org.apache.log4j.Logger;
 
 /**
@@ -102,29 +114,91 @@ public class GetAction extends RepoAction {
 
     public static final String CAOM_MIMETYPE = "text/x-caom+xml";
 
-    public static final int MAX_OBS_LIST_SIZE = 100000;
+    /**
+     * Content type of the compact binary observation document, sent instead of
+     * XML if the Accept header includes it.
+     */
+    public static final String CAOM_BINARY_MIMETYPE = BinaryObservationWriter.CONTENT_TYPE;
+
+    /**
+     * Content type of the multiple observation document: for each requested
+     * observation a header line with the observation URI and document length in
+     * bytes separated by a tab, followed by that many bytes of CAOM XML. The length
+     * is -1 (and no document follows) if the observation was not found.
+     */
+    public static final String CAOM_BULK_MIMETYPE = "application/x-caom-observations";
+
+    /**
+     * Content type of the multiple observation document with binary observation
+     * documents (same framing as CAOM_BULK_MIMETYPE), sent if the Accept header
+     * includes it.
+     */
+    public static final String CAOM_BULK_BINARY_MIMETYPE = "application/x-caom-binary-observations";
+
+    public static final int MAX_BULK_SIZE = 100;
+
+    static final String ID_PARAM = "id";
+    static final String DETAIL_PARAM = "detail";
+    static final String DETAIL_OBSERVATIONS = "observations";
+
+    static final String ACCEPT = "Accept";
+    static final String ACCEPT_ENCODING = "Accept-Encoding";
+    static final String ETAG = "ETag";
+    static final String IF_NONE_MATCH = "If-None-Match";
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ObservationDocumentCache DOCUMENTS = ObservationDocumentCache.getInstance();
+
+    private String encoding;
+    private DeflaterOutputStream compressor;
+    private Deflater deflater;
+    private ByteCountOutputStream rawBytes;
+    private boolean varyAccept = false;
 
     public GetAction() {
     }
 
     @Override
     public void doAction() throws Exception {
+        try {
+            doGet();
+        } finally {
+            // the response was not finished (failure): release the encoder
+            endCompressor();
+        }
+    }
+
+    private void doGet() throws Exception {
         log.debug("GET ACTION");
         ObservationURI uri = getURI();
         if (uri != null) {
             doGetObservation(uri);
             return;
         } else if (getCollection() != null) {
+            List<String> ids = syncInput.getParameters(ID_PARAM);
+            if (ids != null && !ids.isEmpty()) {
+                if (ids.size() > MAX_BULK_SIZE) {
+                    throw new IllegalArgumentException("too many observations requested: " + ids.size()
+                        + " max: " + MAX_BULK_SIZE);
+                }
+                List<ObservationURI> uris = new ArrayList<ObservationURI>(ids.size());
+                for (String id : ids) {
+                    uris.add(new ObservationURI(getCollection(), id));
+                }
+                doGetObservations(uris);
+                return;
+            }
+
             // maxRec == null means list all
             String maxRecString = syncInput.getParameter("maxrec");
             String orderString = syncInput.getParameter("order");
+            boolean detail = DETAIL_OBSERVATIONS.equals(syncInput.getParameter(DETAIL_PARAM));
             boolean isAscending = true;
-            Integer maxRec = MAX_OBS_LIST_SIZE;
+            Integer maxRec = null;
             if (maxRecString != null) {
-                int m = Integer.valueOf(maxRecString);
-                if (m < maxRec) {
-                    maxRec = m;
-                }
+                maxRec = Integer.valueOf(maxRecString);
             }
 
             if (orderString != null) {
@@ -150,7 +224,15 @@ public class GetAction extends RepoAction {
                     end = df.parse(endString);
                 }
 
-                doList(maxRec, start, end, isAscending);
+                if (detail) {
+                    int max = MAX_BULK_SIZE;
+                    if (maxRec != null && maxRec < max) {
+                        max = maxRec;
+                    }
+                    doGetObservations(max, start, end, isAscending);
+                } else {
+                    doList(maxRec, start, end, isAscending);
+                }
             } catch (ParseException e) {
                 throw new IllegalArgumentException("wrong date format", e);
             }
@@ -167,40 +249,188 @@ public class GetAction extends RepoAction {
         checkReadPermission(uri.getCollection());
 
         ObservationDAO dao = getDAO();
-        Observation obs = dao.get(uri);
 
-        if (obs == null) {
+        // compare with the current state before reading the observation: conditional
+        // GET and cached documents only need the accMetaChecksum
+        ObservationState state = dao.getState(uri);
+        if (state == null) {
             throw new ResourceNotFoundException("not found: " + uri);
         }
+        String ifNoneMatch = syncInput.getHeader(IF_NONE_MATCH);
+        if (ifNoneMatch != null && state.accMetaChecksum != null) {
+            String etag = toETag(state.accMetaChecksum);
+            if (matches(ifNoneMatch, etag)) {
+                syncOutput.setHeader(ETAG, etag);
+                syncOutput.setCode(304);
+                log.debug("DONE: " + uri + " not modified");
+                return;
+            }
+        }
+
+        boolean binary = isAccepted(CAOM_BINARY_MIMETYPE);
+        String format = getDocumentFormat();
+        String contentType = CAOM_MIMETYPE;
+        if (binary) {
+            format = BinaryObservationWriter.FORMAT;
+            contentType = CAOM_BINARY_MIMETYPE;
+        }
+        byte[] doc = DOCUMENTS.get(uri, format, state.accMetaChecksum);
+        URI accMetaChecksum = state.accMetaChecksum;
+
+        if (doc == null) {
+            Observation obs = dao.get(uri);
+            if (obs == null) {
+                throw new ResourceNotFoundException("not found: " + uri);
+            }
+            accMetaChecksum = obs.getAccMetaChecksum();
 
-        // write with default schema
-        ObservationWriter ow = getObservationWriter();
+            // write with default schema
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(BUFFER_SIZE);
+            if (binary) {
+                new BinaryObservationWriter().write(obs, bos);
+            } else {
+                getObservationWriter().write(obs, bos);
+            }
+            doc = bos.toByteArray();
+            DOCUMENTS.put(uri, format, accMetaChecksum, doc);
+        } else {
+            log.debug("cached: " + uri);
+        }
 
-        syncOutput.setHeader("Content-Type", CAOM_MIMETYPE);
-        OutputStream os = syncOutput.getOutputStream();
+        if (accMetaChecksum != null) {
+            syncOutput.setHeader(ETAG, toETag(accMetaChecksum));
+        }
+        syncOutput.setHeader("Content-Type", contentType);
+        OutputStream os = getOutputStream();
         ByteCountOutputStream bc = new ByteCountOutputStream(os);
-        ow.write(obs, bc);
-        logInfo.setBytes(bc.getByteCount());
+        OutputStream out = encode(bc);
+        out.write(doc);
+        finish(out);
+        setBytes(bc.getByteCount());
 
         log.debug("DONE: " + uri);
     }
 
-    protected void doList(int maxRec, Date start, Date end, boolean isAscending) throws Exception {
+    /**
+     * Get the observations in a maxLastModified window as a multiple observation
+     * document.
+     *
+     * @param maxRec maximum number of observations
+     * @param start minimum maxLastModified (may be null)
+     * @param end maximum maxLastModified (may be null)
+     * @param isAscending maxLastModified order
+     * @throws Exception
+     */
+    protected void doGetObservations(int maxRec, Date start, Date end, boolean isAscending) throws Exception {
         log.debug("START: " + getCollection());
 
         checkReadPermission(getCollection());
 
         ObservationDAO dao = getDAO();
-
         List<ObservationState> states = dao.getObservationList(getCollection(), start, end, maxRec,
                 isAscending);
+        if (states == null) {
+            throw new ResourceNotFoundException("Collection not found: " + getCollection());
+        }
+
+        List<ObservationURI> uris = new ArrayList<ObservationURI>(states.size());
+        for (ObservationState s : states) {
+            uris.add(s.getURI());
+        }
+        writeObservations(dao, uris);
+
+        log.debug("DONE: " + getCollection());
+    }
+
+    /**
+     * Get the specified observations from a single collection as a multiple
+     * observation document.
+     *
+     * @param uris observations to get, in response order
+     * @throws Exception
+     */
+    protected void doGetObservations(List<ObservationURI> uris) throws Exception {
+        log.debug("START: " + getCollection() + " " + uris.size() + " observations");
+
+        checkReadPermission(getCollection());
+
+        writeObservations(getDAO(), uris);
+
+        log.debug("DONE: " + getCollection() + " " + uris.size() + " observations");
+    }
+
+    // one batched read, written in the requested order
+    private void writeObservations(ObservationDAO dao, List<ObservationURI> uris) throws Exception {
+        Map<ObservationURI, Observation> found = new HashMap<ObservationURI, Observation>();
+        for (Observation obs : dao.getObservations(uris)) {
+            found.put(obs.getURI(), obs);
+        }
+
+        ObservationWriter ow = null;
+        BinaryObservationWriter bw = null;
+        if (isAccepted(CAOM_BULK_BINARY_MIMETYPE)) {
+            bw = new BinaryObservationWriter();
+            syncOutput.setHeader("Content-Type", CAOM_BULK_BINARY_MIMETYPE);
+        } else {
+            ow = getObservationWriter();
+            syncOutput.setHeader("Content-Type", CAOM_BULK_MIMETYPE);
+        }
+        OutputStream os = getOutputStream();
+        ByteCountOutputStream bc = new ByteCountOutputStream(os);
+        OutputStream out = encode(bc);
+        ByteArrayOutputStream doc = new ByteArrayOutputStream(BUFFER_SIZE);
+        for (ObservationURI uri : uris) {
+            Observation obs = found.get(uri);
+            int len = -1;
+            if (obs != null) {
+                doc.reset();
+                if (bw != null) {
+                    bw.write(obs, doc);
+                } else {
+                    ow.write(obs, doc);
+                }
+                len = doc.size();
+            }
+            String header = uri.getURI().toASCIIString() + "\t" + len + "\n";
+            out.write(header.getBytes("US-ASCII"));
+            if (obs != null) {
+                doc.writeTo(out);
+            }
+        }
+        finish(out);
+        setBytes(bc.getByteCount());
+    }
+
+    /**
+     * Write the list of observations. The list is streamed from the database to the
+     * output so there is no limit on the number of observations.
+     *
+     * @param maxRec maximum number of observations, null for all
+     * @param start minimum maxLastModified (may be null)
+     * @param end maximum maxLastModified (may be null)
+     * @param isAscending maxLastModified order
+     * @throws Exception
+     */
+    protected void doList(Integer maxRec, Date start, Date end, boolean isAscending) throws Exception {
+        log.debug("START: " + getCollection());
+
+        checkReadPermission(getCollection());
+
+        ObservationDAO dao = getDAO();
+
+        ObservationStateIterator states = dao.getObservationListIterator(getCollection(), start, end, maxRec,
+                isAscending);
 
         if (states == null) {
             throw new ResourceNotFoundException("Collection not found: " + getCollection());
         }
 
-        long byteCount = writeObservationList(states);
-        logInfo.setBytes(byteCount);
+        try {
+            long byteCount = writeObservationList(states);
+            setBytes(byteCount);
+        } finally {
+            states.close();
+        }
 
         log.debug("DONE: " + getCollection());
     }
@@ -209,14 +439,23 @@ public class GetAction extends RepoAction {
         return new ObservationWriter();
     }
 
-    protected long writeObservationList(List<ObservationState> states) throws IOException {
+    /**
+     * @return identifier of the XML document format produced by getObservationWriter
+     */
+    protected String getDocumentFormat() {
+        return XmlConstants.CAOM2_3_NAMESPACE;
+    }
+
+    protected long writeObservationList(Iterator<ObservationState> states) throws IOException {
         // write in tsv format
         syncOutput.setHeader("Content-Type", "text/tab-separated-values");
-        OutputStream os = syncOutput.getOutputStream();
+        OutputStream os = getOutputStream();
         ByteCountOutputStream bc = new ByteCountOutputStream(os);
-        OutputStreamWriter out = new OutputStreamWriter(bc, "US-ASCII");
+        OutputStream eos = encode(bc);
+        OutputStreamWriter out = new OutputStreamWriter(eos, "US-ASCII");
         CsvWriter writer = new CsvWriter(out, '\t');
-        for (ObservationState state : states) {
+        while (states.hasNext()) {
+            ObservationState state = states.next();
             writer.write(state.getURI().getCollection());
             writer.write(state.getURI().getObservationID());
             if (state.maxLastModified != null) {
@@ -232,9 +471,187 @@ public class GetAction extends RepoAction {
             writer.endRecord();
         }
         writer.flush();
+        finish(eos);
         return bc.getByteCount();
     }
 
+    // weak entity tag: the same tag is sent for every content encoding and for
+    // the 2.2, 2.3 and binary documents, so the representations are not byte-identical
+    static String toETag(URI accMetaChecksum) {
+        return "W/\"" + accMetaChecksum.toASCIIString() + "\"";
+    }
+
+    // true if one of the If-None-Match entity tags is the specified one (weak comparison)
+    private static boolean matches(String ifNoneMatch, String etag) {
+        String opaque = stripWeak(etag);
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if ("*".equals(tag) || opaque.equals(stripWeak(tag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        if (tag.startsWith("W/")) {
+            return tag.substring(2);
+        }
+        return tag;
+    }
+
+    /**
+     * Get the response output stream. If the client accepts gzip or deflate content
+     * encoding the Content-Encoding header is set and the caller must wrap the stream
+     * with encode(OutputStream). Headers must be set before calling this method.
+     *
+     * @return the response output stream
+     * @throws IOException failure to get the stream
+     */
+    protected OutputStream getOutputStream() throws IOException {
+        this.encoding = getAcceptedEncoding();
+        if (encoding != null) {
+            syncOutput.setHeader("Content-Encoding", encoding);
+        }
+        if (varyAccept) {
+            syncOutput.setHeader("Vary", ACCEPT + ", " + ACCEPT_ENCODING);
+        } else {
+            syncOutput.setHeader("Vary", ACCEPT_ENCODING);
+        }
+        return syncOutput.getOutputStream();
+    }
+
+    /**
+     * Wrap the response stream to apply the content encoding and count the bytes
+     * before encoding.
+     *
+     * @param out response stream
+     * @return stream to write the content to
+     * @throws IOException failure to set up the encoding
+     */
+    protected OutputStream encode(OutputStream out) throws IOException {
+        endCompressor();
+        if (GZIP.equals(encoding)) {
+            GzipOutputStream gz = new GzipOutputStream(out, BUFFER_SIZE);
+            this.compressor = gz;
+            this.deflater = gz.getDeflater();
+        } else if (DEFLATE.equals(encoding)) {
+            // HTTP deflate is the zlib format
+            this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            this.compressor = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+        }
+        if (compressor != null) {
+            this.rawBytes = new ByteCountOutputStream(compressor);
+        } else {
+            this.rawBytes = new ByteCountOutputStream(out);
+        }
+        return rawBytes;
+    }
+
+    /**
+     * Finish the content encoding and release the encoder. The response stream
+     * itself is flushed but not closed.
+     *
+     * @param out stream returned by encode(OutputStream)
+     * @throws IOException failure to write the response
+     */
+    protected void finish(OutputStream out) throws IOException {
+        try {
+            out.flush();
+            if (compressor != null) {
+                compressor.finish();
+                compressor.flush();
+            }
+        } finally {
+            endCompressor();
+        }
+    }
+
+    // Deflater memory is native: end it explicitly instead of closing the stream
+    // (which would close the response) or waiting for finalization
+    private void endCompressor() {
+        if (deflater != null) {
+            deflater.end();
+        }
+        this.deflater = null;
+        this.compressor = null;
+    }
+
+    /**
+     * Record the number of bytes sent and, if the content was compressed, the number
+     * of bytes before compression in the log info message.
+     *
+     * @param byteCount number of bytes written to the response
+     */
+    protected void setBytes(long byteCount) {
+        logInfo.setBytes(byteCount);
+        if (encoding != null && rawBytes != null) {
+            // an error after this point replaces the message
+            logInfo.setMessage(encoding + " " + rawBytes.getByteCount() + " -> " + byteCount + " bytes");
+        }
+    }
+
+    // the supported encoding with the highest q value in Accept-Encoding (gzip for
+    // a tie) or null; compression is used whenever acceptable, even if identity is
+    // preferred, since it is much cheaper than the transfer
+    private String getAcceptedEncoding() {
+        String accept = syncInput.getHeader(ACCEPT_ENCODING);
+        if (accept == null) {
+            return null;
+        }
+        String ret = null;
+        double best = 0.0;
+        for (String enc : accept.split(",")) {
+            String[] parts = enc.split(";");
+            String name = parts[0].trim().toLowerCase();
+            if ("x-gzip".equals(name)) {
+                name = GZIP;
+            }
+            if (!GZIP.equals(name) && !DEFLATE.equals(name)) {
+                continue;
+            }
+            double q = getQuality(parts);
+            if (q > best || (q == best && q > 0.0 && GZIP.equals(name))) {
+                best = q;
+                ret = name;
+            }
+        }
+        return ret;
+    }
+
+    // true if the Accept header lists the content type with a non-zero q value;
+    // wildcards do not select it so other clients keep getting XML
+    private boolean isAccepted(String contentType) {
+        this.varyAccept = true;
+        String accept = syncInput.getHeader(ACCEPT);
+        if (accept == null) {
+            return false;
+        }
+        for (String type : accept.split(",")) {
+            String[] parts = type.split(";");
+            if (contentType.equalsIgnoreCase(parts[0].trim())) {
+                return getQuality(parts) > 0.0;
+            }
+        }
+        return false;
+    }
+
+    // q value from the parameters of an Accept or Accept-Encoding list element
+    private static double getQuality(String[] parts) {
+        double q = 1.0;
+        for (int i = 1; i < parts.length; i++) {
+            String p = parts[i].trim();
+            if (p.startsWith("q=")) {
+                try {
+                    q = Double.parseDouble(p.substring(2));
+                } catch (NumberFormatException ex) {
+                    log.debug("invalid q value: " + p);
+                }
+            }
+        }
+        return q;
+    }
+
     /**
      * Get list of collection names from repo configuration.
      * 
@@ -246,9 +663,10 @@ public class GetAction extends RepoAction {
         Iterator<String> collectionListIterator = curConfig.collectionIterator();
 
         syncOutput.setHeader("Content-Type", "text/tab-separated-values");
-        OutputStream os = syncOutput.getOutputStream();
+        OutputStream os = getOutputStream();
         ByteCountOutputStream bc = new ByteCountOutputStream(os);
-        OutputStreamWriter out = new OutputStreamWriter(bc, "US-ASCII");
+        OutputStream eos = encode(bc);
+        OutputStreamWriter out = new OutputStreamWriter(eos, "US-ASCII");
         CsvWriter writer = new CsvWriter(out, '\t');
 
         while (collectionListIterator.hasNext()) {
@@ -262,8 +680,20 @@ public class GetAction extends RepoAction {
         }
 
         writer.flush();
-        logInfo.setBytes(bc.getByteCount());
+        finish(eos);
+        setBytes(bc.getByteCount());
         log.debug("DONE");
     }
 
+    // GZIPOutputStream only ends its own Deflater in close()
+    private static class GzipOutputStream extends GZIPOutputStream {
+
+        GzipOutputStream(OutputStream out, int size) throws IOException {
+            super(out, size);
+        }
+
+        Deflater getDeflater() {
+            return def;
+        }
+    }
 }
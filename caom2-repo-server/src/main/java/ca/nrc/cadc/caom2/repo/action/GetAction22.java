@@ -79,7 +79,7 @@ import com.csvreader.CsvWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
-import java.util.List;
+import java.util.Iterator;
 
 /**
  * For CAOM 2.2 support.
@@ -94,22 +94,30 @@ public class GetAction22 extends GetAction {
         return new ObservationWriter("caom2", XmlConstants.CAOM2_2_NAMESPACE, false);
     }
 
+    @Override
+    protected String getDocumentFormat() {
+        return XmlConstants.CAOM2_2_NAMESPACE;
+    }
+
     /**
      * Write in CSV format.
      */
     @Override
-    protected long writeObservationList(List<ObservationState> states) throws IOException {
+    protected long writeObservationList(Iterator<ObservationState> states) throws IOException {
         // write in csv format for now
         syncOutput.setHeader("Content-Type", "text/csv");
-        OutputStream os = syncOutput.getOutputStream();
+        OutputStream os = getOutputStream();
         ByteCountOutputStream bc = new ByteCountOutputStream(os);
-        CsvWriter writer = new CsvWriter(bc, ',', Charset.defaultCharset());
-        for (ObservationState state : states) {
+        OutputStream eos = encode(bc);
+        CsvWriter writer = new CsvWriter(eos, ',', Charset.defaultCharset());
+        while (states.hasNext()) {
+            ObservationState state = states.next();
             writer.write(state.getURI().getObservationID());
             writer.write(df.format(state.maxLastModified));
             writer.endRecord();
         }
         writer.flush();
+        finish(eos);
         return bc.getByteCount();
     }
 
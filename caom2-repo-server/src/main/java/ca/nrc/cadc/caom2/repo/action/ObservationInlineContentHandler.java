@@ -70,6 +70,9 @@
 package ca.nrc.cadc.caom2.repo.action;
 
 import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.ObservationResponse;
+import ca.nrc.cadc.caom2.ObservationState;
+import ca.nrc.cadc.caom2.ObservationURI;
 import ca.nrc.cadc.caom2.xml.ObservationParsingException;
 import ca.nrc.cadc.caom2.xml.ObservationReader;
 import ca.nrc.cadc.io.ByteCountInputStream;
@@ -77,8 +80,14 @@ import ca.nrc.cadc.io.ByteLimitExceededException;
 import ca.nrc.cadc.rest.InlineContentException;
 import ca.nrc.cadc.rest.InlineContentHandler;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
 
 import org.apache.log4j.Logger;
 
@@ -88,8 +97,19 @@ public class ObservationInlineContentHandler implements InlineContentHandler {
     // 20MB XML Doc size limit
     private static final long DOCUMENT_SIZE_MAX = 20971520L;
 
+    // multiple observation documents: 200MB and 1000 observations
+    private static final long BULK_SIZE_MAX = 10 * DOCUMENT_SIZE_MAX;
+    static final int BULK_COUNT_MAX = 1000;
+
     public static final String CONTENT_KEY = "obs_name";
 
+    /**
+     * Content name for a multiple observation document (GetAction.CAOM_BULK_MIMETYPE).
+     * The value is a MultiObservationReader: nothing is read from the request until
+     * the action reads the observations, one at a time in document order.
+     */
+    public static final String BULK_CONTENT_KEY = "obs_list";
+
     public ObservationInlineContentHandler() {
     }
 
@@ -105,6 +125,13 @@ public class ObservationInlineContentHandler implements InlineContentHandler {
             throw new IOException("The InputStream is closed");
         }
 
+        if (contentType != null && contentType.startsWith(GetAction.CAOM_BULK_MIMETYPE)) {
+            InlineContentHandler.Content content = new InlineContentHandler.Content();
+            content.name = BULK_CONTENT_KEY;
+            content.value = new MultiObservationReader(inputStream);
+            return content;
+        }
+
         // wrap the input stream in a byte counter to limit bytes read
         ByteCountInputStream sizeLimitInputStream = new ByteCountInputStream(inputStream,
                 DOCUMENT_SIZE_MAX);
@@ -124,4 +151,143 @@ public class ObservationInlineContentHandler implements InlineContentHandler {
         }
     }
 
+    /**
+     * Reader for a multiple observation document: uri \t length \n followed by
+     * length bytes of XML for each observation. Each document is parsed directly
+     * from the request stream.
+     */
+    public static class MultiObservationReader {
+        private final DataInputStream in;
+        private final ObservationReader obsReader = new ObservationReader();
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        private int num = 0;
+
+        MultiObservationReader(InputStream inputStream) {
+            ByteCountInputStream sizeLimitInputStream = new ByteCountInputStream(inputStream, BULK_SIZE_MAX);
+            this.in = new DataInputStream(new BufferedInputStream(sizeLimitInputStream));
+        }
+
+        /**
+         * Read the next observation. An invalid document is reported in the response;
+         * invalid framing fails the rest of the input.
+         *
+         * @return the next observation or null at the end of the input
+         * @throws InlineContentException invalid header or too many observations
+         * @throws IOException failure to read the input, truncated input or input too large
+         */
+        public ObservationResponse next() throws InlineContentException, IOException {
+            try {
+                String header = readLine(in, line);
+                if (header == null) {
+                    return null;
+                }
+                if (num >= BULK_COUNT_MAX) {
+                    throw new InlineContentException("too many observations, max: " + BULK_COUNT_MAX);
+                }
+                int i = header.lastIndexOf('\t');
+                ObservationURI uri;
+                int len;
+                try {
+                    uri = new ObservationURI(new URI(header.substring(0, i)));
+                    len = Integer.parseInt(header.substring(i + 1));
+                } catch (IndexOutOfBoundsException | URISyntaxException | IllegalArgumentException ex) {
+                    throw new InlineContentException("invalid observation header: " + header, ex);
+                }
+                if (len < 0) {
+                    throw new InlineContentException("invalid observation header: " + header);
+                }
+                num++;
+
+                ObservationResponse r = new ObservationResponse(new ObservationState(uri));
+                DocumentInputStream doc = new DocumentInputStream(in, len);
+                if (len > DOCUMENT_SIZE_MAX) {
+                    r.error = new ByteLimitExceededException("too large: " + uri, DOCUMENT_SIZE_MAX);
+                } else {
+                    try {
+                        r.observation = obsReader.read(doc);
+                    } catch (ObservationParsingException | RuntimeException ex) {
+                        log.debug("invalid document: " + uri, ex);
+                        r.error = new IllegalArgumentException("invalid input: " + uri + " " + ex.getMessage(), ex);
+                    }
+                }
+                doc.skipRemaining();
+                return r;
+            } catch (ByteLimitExceededException ex) {
+                log.debug(ex.getMessage(), ex);
+                throw new ByteLimitExceededException("too large: ", ex.getLimit());
+            }
+        }
+    }
+
+    // one document in the input: the parser closes its input, which skips to the
+    // end of the document and leaves the request stream open
+    private static class DocumentInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        DocumentInputStream(InputStream in, long len) {
+            this.in = in;
+            this.remaining = len;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("truncated observation document");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n == -1) {
+                throw new EOFException("truncated observation document");
+            }
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public void close() throws IOException {
+            skipRemaining();
+        }
+
+        void skipRemaining() throws IOException {
+            byte[] buf = new byte[8192];
+            while (remaining > 0) {
+                read(buf, 0, buf.length);
+            }
+        }
+    }
+
+    // null at end of stream
+    private static String readLine(DataInputStream in, ByteArrayOutputStream buf) throws IOException {
+        buf.reset();
+        int b = in.read();
+        if (b == -1) {
+            return null;
+        }
+        while (b != '\n') {
+            if (b == -1) {
+                throw new EOFException("truncated observation header");
+            }
+            buf.write(b);
+            b = in.read();
+        }
+        return buf.toString("US-ASCII");
+    }
 }
@@ -70,11 +70,26 @@
 package ca.nrc.cadc.caom2.repo.action;
 
 import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.ObservationResponse;
+import ca.nrc.cadc.caom2.ObservationState;
 import ca.nrc.cadc.caom2.ObservationURI;
 import ca.nrc.cadc.caom2.persistence.ObservationDAO;
+import ca.nrc.cadc.net.ResourceAlreadyExistsException;
 import ca.nrc.cadc.net.ResourceNotFoundException;
+import ca.nrc.cadc.rest.InlineContentException;
 import ca.nrc.cadc.rest.InlineContentHandler;
 
+import com.csvreader.CsvWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveAction;
 import org.apache.log4j.Logger;
 
 /**
@@ -84,12 +99,24 @@ import org.apache.log4j.Logger;
 public class PostAction extends RepoAction {
     private static final Logger log = Logger.getLogger(PostAction.class);
 
+    // observations written per transaction in a multiple observation request
+    static final int BATCH_SIZE = 100;
+
+    static final String CREATED = "CREATED";
+    static final String UPDATED = "UPDATED";
+    static final String UNCHANGED = "UNCHANGED";
+    static final String FAILED = "FAILED";
+
     public PostAction() {
     }
 
     @Override
     public void doAction() throws Exception {
         ObservationURI uri = getURI();
+        if (uri == null && getCollection() != null) {
+            doPostObservations();
+            return;
+        }
         log.debug("START: " + uri);
 
         checkWritePermission(uri);
@@ -102,17 +129,253 @@ public class PostAction extends RepoAction {
 
         ObservationDAO dao = getDAO();
 
-        if (!dao.exists(uri)) {
-            throw new ResourceNotFoundException("not found: " + uri);
+        // resubmitted without changes: nothing to validate or write
+        URI ifMatch = getIfMatch();
+        URI accMetaChecksum = obs.getAccMetaChecksum();
+        if (accMetaChecksum != null && (ifMatch == null || ifMatch.equals(accMetaChecksum))
+                && isUnchanged(obs, dao.getState(uri))) {
+            syncOutput.setHeader(GetAction.ETAG, GetAction.toETag(accMetaChecksum));
+            log.debug("DONE: " + uri + " unchanged");
+            return;
         }
 
         validate(obs);
 
-        dao.put(obs);
+        // existence and If-Match checks and write in one transaction
+        ObservationDAO.PutResult result = dao.put(obs, Boolean.TRUE, ifMatch);
+        if (ObservationDAO.PutResult.NOT_FOUND.equals(result)) {
+            throw new ResourceNotFoundException("not found: " + uri);
+        }
+        if (ObservationDAO.PutResult.CONFLICT.equals(result)) {
+            throw new ResourceAlreadyExistsException("conflict: " + uri + " exists with a different ID");
+        }
+        if (ObservationDAO.PutResult.PRECONDITION_FAILED.equals(result)) {
+            syncOutput.setCode(412);
+            syncOutput.setHeader("Content-Type", ERROR_MIMETYPE);
+            OutputStreamWriter w = new OutputStreamWriter(syncOutput.getOutputStream(), "UTF-8");
+            w.write("precondition failed: " + uri + " was modified");
+            w.flush();
+            log.debug("DONE: " + uri + " precondition failed");
+            return;
+        }
+
+        if (obs.getAccMetaChecksum() != null) {
+            syncOutput.setHeader(GetAction.ETAG, GetAction.toETag(obs.getAccMetaChecksum()));
+        }
 
         log.debug("DONE: " + uri);
     }
 
+    /**
+     * Create or update the observations in a multiple observation document
+     * (GetAction.CAOM_BULK_MIMETYPE) posted to the collection. The document is read
+     * after the permission check, one batch ahead of the writes: observations are
+     * validated concurrently while the previous batch is written, with one transaction
+     * per batch and at most 2 * BATCH_SIZE observations in memory. A failure only
+     * affects that observation. The response lists the result for each observation in
+     * document order: observation URI, CREATED, UPDATED, UNCHANGED (see isUnchanged)
+     * or FAILED, and the error message. If the document is malformed after the first
+     * observation, the observations before that point are processed and the last line
+     * has no URI, FAILED, and the error.
+     *
+     * @throws Exception
+     */
+    protected void doPostObservations() throws Exception {
+        String collection = getCollection();
+        log.debug("START: " + collection);
+
+        checkWritePermission(collection);
+
+        ObservationInlineContentHandler.MultiObservationReader input = getInputObservations();
+        if (input == null) {
+            throw new IllegalArgumentException("invalid input: expected " + GetAction.CAOM_BULK_MIMETYPE);
+        }
+
+        ObservationDAO dao = getDAO();
+
+        Deque<ValidateTask> pending = new ArrayDeque<ValidateTask>();
+        List<ObservationResponse> done = new ArrayList<ObservationResponse>();
+        Map<ObservationResponse, String> results = new IdentityHashMap<ObservationResponse, String>();
+        boolean more = true;
+        String inputError = null;
+        int batchStart = 0;
+        int ok = 0;
+        try {
+            while (true) {
+                if (done.size() == batchStart) {
+                    // between transactions: read and start validation of the next batch
+                    while (more && pending.size() < 2 * BATCH_SIZE) {
+                        ObservationResponse r;
+                        try {
+                            r = input.next();
+                        } catch (InlineContentException | IOException ex) {
+                            if (done.isEmpty() && pending.isEmpty()) {
+                                throw toInputException(ex);
+                            }
+                            log.debug("invalid input after " + (done.size() + pending.size()) + " observations", ex);
+                            inputError = "invalid input: " + ex.getMessage();
+                            r = null;
+                        }
+                        if (r == null) {
+                            more = false;
+                        } else {
+                            pending.add(startValidation(dao, collection, r));
+                        }
+                    }
+                }
+                if (pending.isEmpty()) {
+                    break;
+                }
+
+                ValidateTask t = pending.remove();
+                t.join();
+                ObservationResponse r = t.response;
+
+                if (done.size() == batchStart) {
+                    dao.getTransactionManager().startTransaction();
+                }
+                done.add(r);
+                if (t.unchanged) {
+                    results.put(r, UNCHANGED);
+                    ok++;
+                } else if (r.observation != null && r.error == null) {
+                    try {
+                        ObservationDAO.PutResult result = dao.put(r.observation, null, null);
+                        if (ObservationDAO.PutResult.CONFLICT.equals(result)) {
+                            r.error = new IllegalArgumentException("conflict: " + r.observationState.getURI()
+                                + " exists with a different ID");
+                        } else {
+                            results.put(r, ObservationDAO.PutResult.CREATED.equals(result) ? CREATED : UPDATED);
+                            ok++;
+                        }
+                    } catch (RuntimeException ex) {
+                        // put rolled back its own (nested) transaction
+                        log.debug("failed to put " + r.observationState.getURI(), ex);
+                        r.error = ex;
+                    }
+                }
+                // only the result is needed from here on
+                r.observation = null;
+
+                // pending is only empty within a batch at the end of the input
+                if (done.size() - batchStart == BATCH_SIZE || pending.isEmpty()) {
+                    commit(dao, done.subList(batchStart, done.size()), results);
+                    batchStart = done.size();
+                }
+            }
+        } finally {
+            if (dao.getTransactionManager().isOpen()) {
+                log.error("BUG - open transaction in finally");
+                dao.getTransactionManager().rollbackTransaction();
+                log.error("rollback: OK");
+            }
+        }
+
+        syncOutput.setHeader("Content-Type", "text/tab-separated-values");
+        OutputStreamWriter out = new OutputStreamWriter(syncOutput.getOutputStream(), "UTF-8");
+        CsvWriter writer = new CsvWriter(out, '\t');
+        for (ObservationResponse r : done) {
+            writer.write(r.observationState.getURI().getURI().toASCIIString());
+            if (r.error == null) {
+                writer.write(results.get(r));
+                writer.write("");
+            } else {
+                writer.write(FAILED);
+                writer.write(r.error.getMessage());
+            }
+            writer.endRecord();
+        }
+        if (inputError != null) {
+            writer.write("");
+            writer.write(FAILED);
+            writer.write(inputError);
+            writer.endRecord();
+        }
+        writer.flush();
+
+        log.debug("DONE: " + collection + " " + ok + "/" + done.size() + " observations");
+    }
+
+    // check the observation is in the collection and start validation
+    private ValidateTask startValidation(ObservationDAO dao, String collection, ObservationResponse r) {
+        ObservationURI u = r.observationState.getURI();
+        if (!collection.equals(u.getCollection())) {
+            r.error = new IllegalArgumentException("invalid input: " + u + " not in collection " + collection);
+            r.observation = null;
+        } else if (r.observation != null && !u.equals(r.observation.getURI())) {
+            r.error = new IllegalArgumentException("invalid input: " + u + " document contains "
+                + r.observation.getURI());
+            r.observation = null;
+        }
+        ValidateTask t = new ValidateTask(r);
+        Observation o = r.observation;
+        if (o != null && o.getAccMetaChecksum() != null) {
+            t.current = dao.getState(o.getURI());
+        }
+        fork(t);
+        return t;
+    }
+
+    // invalid document before any observation: fail the request
+    private Exception toInputException(Exception ex) {
+        if (ex instanceof InlineContentException) {
+            return new IllegalArgumentException("invalid input: " + ex.getMessage(), ex);
+        }
+        return ex;
+    }
+
+    // commit the batch or mark the written observations as failed
+    private void commit(ObservationDAO dao, List<ObservationResponse> batch, Map<ObservationResponse, String> results) {
+        try {
+            dao.getTransactionManager().commitTransaction();
+        } catch (RuntimeException ex) {
+            log.warn("failed to commit batch: " + ex);
+            if (dao.getTransactionManager().isOpen()) {
+                dao.getTransactionManager().rollbackTransaction();
+            }
+            for (ObservationResponse r : batch) {
+                String status = results.get(r);
+                if (CREATED.equals(status) || UPDATED.equals(status)) {
+                    r.error = ex;
+                }
+            }
+        }
+    }
+
+    // reader for the multiple observation document
+    protected ObservationInlineContentHandler.MultiObservationReader getInputObservations() {
+        Object ret = syncInput.getContent(ObservationInlineContentHandler.BULK_CONTENT_KEY);
+        return (ObservationInlineContentHandler.MultiObservationReader) ret;
+    }
+
+    // validate and compute metadata, recording the failure in the response, unless
+    // the observation is unchanged
+    private class ValidateTask extends RecursiveAction {
+        private final ObservationResponse response;
+        private ObservationState current;
+        private boolean unchanged = false;
+
+        ValidateTask(ObservationResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        protected void compute() {
+            if (response.observation == null || response.error != null) {
+                return;
+            }
+            try {
+                if (isUnchanged(response.observation, current)) {
+                    unchanged = true;
+                    return;
+                }
+                validate(response.observation);
+            } catch (RuntimeException ex) {
+                response.error = ex;
+            }
+        }
+    }
+
     @Override
     protected InlineContentHandler getInlineContentHandler() {
         return new ObservationInlineContentHandler();
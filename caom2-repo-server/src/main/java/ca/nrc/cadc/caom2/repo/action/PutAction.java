@@ -102,13 +102,22 @@ public class PutAction extends RepoAction {
 
         ObservationDAO dao = getDAO();
 
-        if (dao.exists(uri)) {
+        // cheap check before validation and computation
+        if (dao.getState(uri) != null) {
             throw new ResourceAlreadyExistsException("already exists: " + uri);
         }
 
         validate(obs);
 
-        dao.put(obs);
+        // existence check again and write in one transaction
+        ObservationDAO.PutResult result = dao.put(obs, Boolean.FALSE, null);
+        if (ObservationDAO.PutResult.CONFLICT.equals(result)) {
+            throw new ResourceAlreadyExistsException("already exists: " + uri);
+        }
+
+        if (obs.getAccMetaChecksum() != null) {
+            syncOutput.setHeader(GetAction.ETAG, GetAction.toETag(obs.getAccMetaChecksum()));
+        }
 
         log.debug("DONE: " + uri);
     }
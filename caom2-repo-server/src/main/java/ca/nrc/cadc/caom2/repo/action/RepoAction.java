@@ -72,16 +72,18 @@ package ca.nrc.cadc.caom2.repo.action;
 import ca.nrc.cadc.ac.GroupURI;
 import ca.nrc.cadc.ac.UserNotFoundException;
 import ca.nrc.cadc.ac.client.GMSClient;
-import ca.nrc.cadc.caom2.Artifact;
+import ca.nrc.cadc.auth.AuthenticationUtil;
 import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.ObservationState;
 import ca.nrc.cadc.caom2.ObservationURI;
 import ca.nrc.cadc.caom2.Plane;
-import ca.nrc.cadc.caom2.compute.CaomWCSValidator;
 import ca.nrc.cadc.caom2.compute.ComputeUtil;
 import ca.nrc.cadc.caom2.persistence.ObservationDAO;
-import ca.nrc.cadc.caom2.persistence.SQLGenerator;
+import ca.nrc.cadc.caom2.persistence.PlaneMetadataComputer;
 import ca.nrc.cadc.caom2.repo.CaomRepoConfig;
-import ca.nrc.cadc.caom2.util.CaomValidator;
+import ca.nrc.cadc.caom2.repo.ComputePool;
+import ca.nrc.cadc.caom2.repo.DAORegistry;
+import ca.nrc.cadc.caom2.repo.GroupMembershipCache;
 import ca.nrc.cadc.cred.client.CredUtil;
 import ca.nrc.cadc.net.ResourceNotFoundException;
 import ca.nrc.cadc.rest.InlineContentHandler;
@@ -92,8 +94,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.AccessControlException;
 import java.security.cert.CertificateException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
 import org.apache.log4j.Logger;
 
 /**
@@ -113,12 +114,18 @@ public abstract class RepoAction extends RestAction {
 
     public static final String ERROR_MIMETYPE = "text/plain";
 
+    static final String IF_MATCH = "If-Match";
+
     private static final GroupURI CADC_GROUP_URI = new GroupURI("ivo://cadc.nrc.ca/gms?CADC");
 
+    // GMS decisions shared by all requests
+    private static final GroupMembershipCache MEMBERSHIP = GroupMembershipCache.getInstance();
+
     private String collection;
     protected ObservationURI uri;
     protected boolean computeMetadata;
     protected boolean computeMetadataValidation;
+    protected boolean trustClientChecksum;
 
     private transient CaomRepoConfig repoConfig;
     private transient ObservationDAO dao;
@@ -176,22 +183,15 @@ public abstract class RepoAction extends RestAction {
         return dao;
     }
 
-    // create DAO
+    // create DAO with the shared DataSource and SQLGenerator for the collection
     private ObservationDAO getDAO(String collection) throws IOException {
         CaomRepoConfig.Item i = getCollectionConfig(collection);
         if (i != null) {
             this.computeMetadata = i.getComputeMetadata();
             this.computeMetadataValidation = i.getComputeMetadataValidation();
+            this.trustClientChecksum = i.getTrustClientChecksum();
 
-            Map<String, Object> props = new HashMap<String, Object>();
-            props.put("jndiDataSourceName", i.getDataSourceName());
-            props.put("database", i.getDatabase());
-            props.put("schema", i.getSchema());
-            props.put(SQLGenerator.class.getName(), i.getSqlGenerator());
-            ObservationDAO ret = new ObservationDAO();
-            ret.setConfig(props);
-
-            return ret;
+            return DAORegistry.getObservationDAO(i);
         }
         throw new IllegalArgumentException("unknown collection: " + collection);
     }
@@ -215,6 +215,34 @@ public abstract class RepoAction extends RestAction {
         }
     }
 
+    /**
+     * Get the accMetaChecksum the stored observation must have from the If-Match
+     * header (optimistic concurrency for updates).
+     *
+     * @return the required accMetaChecksum, or null if not specified or *
+     */
+    protected URI getIfMatch() {
+        String val = syncInput.getHeader(IF_MATCH);
+        if (val == null) {
+            return null;
+        }
+        String tag = val.trim();
+        if ("*".equals(tag)) {
+            return null;
+        }
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() > 1 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return new URI(tag);
+        } catch (URISyntaxException ex) {
+            throw new IllegalArgumentException("invalid " + IF_MATCH + ": " + val, ex);
+        }
+    }
+
     /**
      * Check if the caller can read the specified resource.
      *
@@ -241,25 +269,13 @@ public abstract class RepoAction extends RestAction {
 
         try {
             if (CredUtil.checkCredentials()) {
-                GroupURI grw = i.getReadWriteGroup();
-                GMSClient gms = new GMSClient(grw.getServiceID());
-                if (gms.isMember(grw.getName())) {
+                if (isMember(collection, i.getReadWriteGroup())) {
                     return;
                 }
-
-                GroupURI gro = i.getReadOnlyGroup();
-                if (!grw.getServiceID().equals(gro.getServiceID())) {
-                    gms = new GMSClient(gro.getServiceID());
-                }
-
-                if (gms.isMember(gro.getName())) {
+                if (isMember(collection, i.getReadOnlyGroup())) {
                     return;
                 }
-
-                if (!gro.getServiceID().equals(CADC_GROUP_URI.getServiceID())) {
-                    gms = new GMSClient(CADC_GROUP_URI.getServiceID());
-                }
-                if (gms.isMember(CADC_GROUP_URI.getName())) {
+                if (isMember(collection, CADC_GROUP_URI)) {
                     return;
                 }
             }
@@ -283,6 +299,20 @@ public abstract class RepoAction extends RestAction {
      * @throws java.io.IOException
      */
     protected void checkWritePermission(ObservationURI uri) throws AccessControlException,
+        CertificateException, ResourceNotFoundException, IOException {
+        checkWritePermission(uri.getCollection());
+    }
+
+    /**
+     * Check if the caller can create or modify resources in the specified collection.
+     *
+     * @param collection
+     * @throws AccessControlException
+     * @throws java.security.cert.CertificateException
+     * @throws ca.nrc.cadc.net.ResourceNotFoundException
+     * @throws java.io.IOException
+     */
+    protected void checkWritePermission(String collection) throws AccessControlException,
         CertificateException, ResourceNotFoundException, IOException {
         initState();
         if (!writable) {
@@ -292,17 +322,14 @@ public abstract class RepoAction extends RestAction {
             throw new IllegalStateException(OFFLINE_MSG);
         }
 
-        CaomRepoConfig.Item i = getCollectionConfig(uri.getCollection());
+        CaomRepoConfig.Item i = getCollectionConfig(collection);
         if (i == null) {
-            throw new ResourceNotFoundException("not found: " + uri);
+            throw new ResourceNotFoundException("not found: " + collection);
         }
 
         try {
             if (CredUtil.checkCredentials()) {
-                GroupURI guri = i.getReadWriteGroup();
-                URI gmsUri = guri.getServiceID();
-                GMSClient gms = new GMSClient(gmsUri);
-                if (gms.isMember(guri.getName())) {
+                if (isMember(collection, i.getReadWriteGroup())) {
                     return;
                 }
             }
@@ -317,30 +344,67 @@ public abstract class RepoAction extends RestAction {
         throw new AccessControlException("permission denied: " + getURI());
     }
 
+    // group membership check with cached decisions for identified callers
+    private boolean isMember(String collection, GroupURI group) throws UserNotFoundException,
+        CertificateException, ResourceNotFoundException, IOException {
+        String caller = GroupMembershipCache.getCallerKey(AuthenticationUtil.getCurrentSubject());
+        if (caller != null) {
+            Boolean ret = MEMBERSHIP.get(collection, caller, group);
+            if (ret != null) {
+                log.debug("isMember: " + group + " " + ret + " (cached)");
+                return ret;
+            }
+        }
+        GMSClient gms = new GMSClient(group.getServiceID());
+        boolean ret = gms.isMember(group.getName());
+        if (caller != null) {
+            MEMBERSHIP.put(collection, caller, group, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Check if a submitted observation is the same as the stored one: the submitted
+     * accMetaChecksum matches the stored one and is either trusted (collection
+     * option trustClientChecksum) or verified by computing it from the submitted
+     * observation, which is much cheaper than validation and put.
+     *
+     * @param obs submitted observation
+     * @param cur current state of the stored observation (may be null)
+     * @return true if the observation does not need to be validated or stored
+     */
+    protected boolean isUnchanged(Observation obs, ObservationState cur) {
+        URI submitted = obs.getAccMetaChecksum();
+        if (submitted == null || cur == null || !submitted.equals(cur.accMetaChecksum)) {
+            return false;
+        }
+        if (trustClientChecksum) {
+            return true;
+        }
+        URI computed = ComputePool.getInstance().newMetaChecksumCache().assignAll(obs);
+        if (!submitted.equals(computed)) {
+            log.debug("isUnchanged: " + obs.getURI() + " submitted " + submitted + " computed " + computed);
+            return false;
+        }
+        return true;
+    }
+
     protected void validate(Observation obs) {
         try {
-            CaomValidator.validate(obs);
-
-            for (Plane pl : obs.getPlanes()) {
-                for (Artifact a : pl.getArtifacts()) {
-                    CaomWCSValidator.validate(a);
-                }
-            }
+            PlaneMetadataComputer.validate(obs);
 
             if (computeMetadata || computeMetadataValidation) {
                 String ostr = obs.getCollection() + "/" + obs.getObservationID();
-                String cur = ostr;
                 try {
-                    for (Plane p : obs.getPlanes()) {
-                        cur = ostr + "/" + p.getProductID();
-                        ComputeUtil.clearTransientState(p);
-                        ComputeUtil.computeTransientState(obs, p);
+                    // planes are computed concurrently in the shared pool
+                    ComputePool.getInstance().computePlanes(obs);
+                } catch (PlaneMetadataComputer.PlaneFailure ex) {
+                    String cur = ostr + "/" + ex.getPlane().getProductID();
+                    if (ex.getCause() instanceof Error) {
+                        throw new RuntimeException("failed to compute metadata for plane " + cur, ex.getCause());
                     }
-                } catch (Error er) {
-                    throw new RuntimeException("failed to compute metadata for plane " + cur, er);
-                } catch (Exception ex) {
                     throw new IllegalArgumentException(
-                        "failed to compute metadata for plane " + cur, ex);
+                        "failed to compute metadata for plane " + cur, ex.getCause());
                 } finally {
                     if (!computeMetadata) {
                         for (Plane p : obs.getPlanes()) {
@@ -351,13 +415,22 @@ public abstract class RepoAction extends RestAction {
             }
         } catch (IllegalArgumentException ex) {
             log.debug(ex.getMessage(), ex);
-            throw new IllegalArgumentException("invalid input: " + uri, ex);
+            throw new IllegalArgumentException("invalid input: " + obs.getURI(), ex);
         } catch (RuntimeException ex) {
             log.debug(ex.getMessage(), ex);
-            throw new RuntimeException("invalid input: " + uri, ex);
+            throw new RuntimeException("invalid input: " + obs.getURI(), ex);
         }
     }
 
+    /**
+     * Run a task in the shared compute pool; the caller must join the task.
+     *
+     * @param task the task
+     */
+    protected static void fork(ForkJoinTask<?> task) {
+        ComputePool.getInstance().execute(task);
+    }
+
     @Override
     protected InlineContentHandler getInlineContentHandler() {
         return null;
@@ -390,7 +463,7 @@ public abstract class RepoAction extends RestAction {
             String serviceName = syncInput.getContextPath();
             File config = new File(System.getProperty("user.home") + "/config",
                 serviceName + ".properties");
-            this.repoConfig = new CaomRepoConfig(config);
+            this.repoConfig = CaomRepoConfig.getInstance(config);
 
             if (this.repoConfig.isEmpty()) {
                 throw new IllegalStateException("no RepoConfig.Item(s)found");
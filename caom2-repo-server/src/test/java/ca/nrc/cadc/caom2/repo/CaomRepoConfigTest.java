@@ -75,6 +75,7 @@ import ca.nrc.cadc.util.FileUtil;
 import ca.nrc.cadc.util.Log4jInit;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.util.List;
 import java.util.Properties;
 
@@ -104,6 +105,38 @@ public class CaomRepoConfigTest {
         }
     }
 
+    @Test
+    public void testGetInstance() {
+        try {
+            File f = File.createTempFile("CaomRepoConfigTest", ".properties");
+            f.deleteOnExit();
+            FileWriter w = new FileWriter(f);
+            w.write("TEST = dsname database schema caom2obs ivo://cadc.nrc.ca/gms?group1 ivo://cadc.nrc.ca/gms?group2 "
+                    + "ca.nrc.cadc.caom2.repo.DummySQLGeneratorImpl\n");
+            w.close();
+            f.setLastModified(System.currentTimeMillis() - 10000L);
+
+            CaomRepoConfig c1 = CaomRepoConfig.getInstance(f);
+            CaomRepoConfig c2 = CaomRepoConfig.getInstance(f);
+            Assert.assertSame(c1, c2);
+            Assert.assertNotNull(c1.getConfig("TEST"));
+            Assert.assertNull(c1.getConfig("OTHER"));
+
+            w = new FileWriter(f, true);
+            w.write("OTHER = dsname database schema caom2obs ivo://cadc.nrc.ca/gms?group1 ivo://cadc.nrc.ca/gms?group2 "
+                    + "ca.nrc.cadc.caom2.repo.DummySQLGeneratorImpl\n");
+            w.close();
+            f.setLastModified(System.currentTimeMillis());
+
+            CaomRepoConfig c3 = CaomRepoConfig.getInstance(f);
+            Assert.assertNotSame(c1, c3);
+            Assert.assertNotNull(c3.getConfig("OTHER"));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
     @Test
     public void testGetItem() {
         try {
@@ -119,6 +152,8 @@ public class CaomRepoConfigTest {
             props.setProperty("mix",
                     "dsname \t database\t schema \tcaom2obs \t ivo://cadc.nrc.ca/gms?group1 \t ivo://cadc.nrc.ca/gms?group2 ca.nrc.cadc.caom2.repo.DummySQLGeneratorImpl");
             props.setProperty("def-impl", "dsname \t database\t schema \tcaom2obs \t ivo://cadc.nrc.ca/gms?group1 \t ivo://cadc.nrc.ca/gms?group2");
+            props.setProperty("options",
+                    "dsname database schema caom2obs ivo://cadc.nrc.ca/gms?group1 ivo://cadc.nrc.ca/gms?group2 ca.nrc.cadc.caom2.repo.DummySQLGeneratorImpl computeMetadata=true,trustClientChecksum=true");
 
             CaomRepoConfig.Item it = CaomRepoConfig.getItem("space", props);
             Assert.assertNotNull(it);
@@ -191,6 +226,18 @@ public class CaomRepoConfigTest {
             Assert.assertEquals(new GroupURI("ivo://cadc.nrc.ca/gms?group1"), it.getReadOnlyGroup());
             Assert.assertEquals(new GroupURI("ivo://cadc.nrc.ca/gms?group2"), it.getReadWriteGroup());
             Assert.assertEquals(SybaseSQLGenerator.class, it.getSqlGenerator());
+            Assert.assertFalse(it.getComputeMetadata());
+            Assert.assertTrue(it.getComputeMetadataValidation());
+            Assert.assertFalse(it.getTrustClientChecksum());
+
+            it = CaomRepoConfig.getItem("options", props);
+            Assert.assertNotNull(it);
+            log.debug("found: " + it);
+            Assert.assertEquals("options", it.getCollection());
+            Assert.assertEquals(DummySQLGeneratorImpl.class, it.getSqlGenerator());
+            Assert.assertTrue(it.getComputeMetadata());
+            Assert.assertTrue(it.getComputeMetadataValidation());
+            Assert.assertTrue(it.getTrustClientChecksum());
 
         } catch (Exception unexpected) {
             log.error("unexpected exception", unexpected);
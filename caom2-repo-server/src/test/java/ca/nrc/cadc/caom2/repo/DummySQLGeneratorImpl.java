@@ -73,6 +73,7 @@ import ca.nrc.cadc.caom2.CaomEntity;
 import ca.nrc.cadc.caom2.DeletedEntity;
 import ca.nrc.cadc.caom2.ObservationURI;
 import ca.nrc.cadc.caom2.access.ReadAccess;
+import ca.nrc.cadc.caom2.persistence.EntityBatchPut;
 import ca.nrc.cadc.caom2.persistence.EntityDelete;
 import ca.nrc.cadc.caom2.persistence.EntityPut;
 import ca.nrc.cadc.caom2.persistence.SQLGenerator;
@@ -80,6 +81,7 @@ import ca.nrc.cadc.caom2.persistence.skel.Skeleton;
 
 import java.net.URI;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 import org.apache.log4j.Logger;
@@ -106,6 +108,21 @@ public class DummySQLGeneratorImpl implements SQLGenerator {
         throw new UnsupportedOperationException("Not supported yet."); // To change body of generated methods, choose Tools | Templates.
     }
 
+    @Override
+    public String getObservationStateSQL(ObservationURI uri) {
+        throw new UnsupportedOperationException("Not supported yet."); // To change body of generated methods, choose Tools | Templates.
+    }
+
+    @Override
+    public String getSelectForUpdateSQL(ObservationURI uri, int depth) {
+        throw new UnsupportedOperationException("Not supported yet."); // To change body of generated methods, choose Tools | Templates.
+    }
+
+    @Override
+    public String getSelectSQL(List<ObservationURI> list, int i) {
+        throw new UnsupportedOperationException("Not supported yet."); // To change body of generated methods, choose Tools | Templates.
+    }
+
     @Override
     public String getSelectSQL(UUID uuid, int i, boolean bln) {
         throw new UnsupportedOperationException("Not supported yet."); // To change body of generated methods, choose Tools | Templates.
@@ -121,6 +138,11 @@ public class DummySQLGeneratorImpl implements SQLGenerator {
         throw new UnsupportedOperationException("Not supported yet."); // To change body of generated methods, choose Tools | Templates.
     }
 
+    @Override
+    public String getSelectSQL(Class type, List<UUID> list) {
+        throw new UnsupportedOperationException("Not supported yet."); // To change body of generated methods, choose Tools | Templates.
+    }
+
     @Override
     public String getSelectSQL(Class type, Date date, Date date1, Integer intgr) {
         throw new UnsupportedOperationException("Not supported yet."); // To change body of generated methods, choose Tools | Templates.
@@ -186,6 +208,11 @@ public class DummySQLGeneratorImpl implements SQLGenerator {
         throw new UnsupportedOperationException("Not supported yet."); // To change body of generated methods, choose Tools | Templates.
     }
 
+    @Override
+    public EntityBatchPut getEntityBatchPut(Class<? extends CaomEntity> type) {
+        throw new UnsupportedOperationException("Not supported yet."); // To change body of generated methods, choose Tools | Templates.
+    }
+
     @Override
     public EntityDelete getEntityDelete(Class<? extends CaomEntity> type, boolean bln) {
         throw new UnsupportedOperationException("Not supported yet."); // To change body of generated methods, choose Tools | Templates.
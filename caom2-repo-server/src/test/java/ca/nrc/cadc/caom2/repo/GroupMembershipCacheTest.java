@@ -0,0 +1,157 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.repo;
+
+import ca.nrc.cadc.ac.GroupURI;
+import ca.nrc.cadc.auth.HttpPrincipal;
+import ca.nrc.cadc.util.Log4jInit;
+
+import javax.security.auth.Subject;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class GroupMembershipCacheTest {
+    private static final Logger log = Logger.getLogger(GroupMembershipCacheTest.class);
+
+    static {
+        Log4jInit.setLevel("ca.nrc.cadc.caom2", Level.INFO);
+    }
+
+    private final GroupURI group1 = new GroupURI("ivo://cadc.nrc.ca/gms?group1");
+    private final GroupURI group2 = new GroupURI("ivo://cadc.nrc.ca/gms?group2");
+
+    @Test
+    public void testGetPut() {
+        try {
+            GroupMembershipCache cache = new GroupMembershipCache(10, 60000L, 60000L);
+            Assert.assertNull(cache.get("FOO", "caller", group1));
+
+            cache.put("FOO", "caller", group1, true);
+            cache.put("FOO", "caller", group2, false);
+            Assert.assertEquals(Boolean.TRUE, cache.get("FOO", "caller", group1));
+            Assert.assertEquals(Boolean.FALSE, cache.get("FOO", "caller", group2));
+            Assert.assertNull(cache.get("FOO", "other", group1));
+            Assert.assertNull(cache.get("BAR", "caller", group1));
+
+            cache.put("BAR", "caller", group1, true);
+            cache.invalidate("FOO");
+            Assert.assertNull(cache.get("FOO", "caller", group1));
+            Assert.assertNull(cache.get("FOO", "caller", group2));
+            Assert.assertEquals(Boolean.TRUE, cache.get("BAR", "caller", group1));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testExpiryAndSize() {
+        try {
+            GroupMembershipCache cache = new GroupMembershipCache(2, 60000L, 0L);
+            cache.put("FOO", "caller", group1, false);
+            Thread.sleep(5L);
+            Assert.assertNull("negative decision expired", cache.get("FOO", "caller", group1));
+
+            cache.put("FOO", "c1", group1, true);
+            cache.put("FOO", "c2", group1, true);
+            cache.put("FOO", "c3", group1, true);
+            Assert.assertEquals(2, cache.size());
+            Assert.assertNull("least recently used dropped", cache.get("FOO", "c1", group1));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testCallerKey() {
+        try {
+            Assert.assertNull(GroupMembershipCache.getCallerKey(null));
+            Assert.assertNull(GroupMembershipCache.getCallerKey(new Subject()));
+
+            Subject s1 = new Subject();
+            s1.getPrincipals().add(new HttpPrincipal("someone"));
+            Subject s2 = new Subject();
+            s2.getPrincipals().add(new HttpPrincipal("someone"));
+            Assert.assertNotNull(GroupMembershipCache.getCallerKey(s1));
+            Assert.assertEquals(GroupMembershipCache.getCallerKey(s1), GroupMembershipCache.getCallerKey(s2));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+}
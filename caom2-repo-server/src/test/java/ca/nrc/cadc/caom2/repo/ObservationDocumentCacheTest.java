@@ -0,0 +1,150 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+
+package ca.nrc.cadc.caom2.repo;
+
+import ca.nrc.cadc.caom2.ObservationURI;
+import ca.nrc.cadc.util.Log4jInit;
+
+import java.net.URI;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class ObservationDocumentCacheTest {
+    private static final Logger log = Logger.getLogger(ObservationDocumentCacheTest.class);
+
+    static {
+        Log4jInit.setLevel("ca.nrc.cadc.caom2", Level.INFO);
+    }
+
+    private final ObservationURI uri1 = new ObservationURI("FOO", "obs1");
+    private final ObservationURI uri2 = new ObservationURI("FOO", "obs2");
+    private final URI cs1 = URI.create("md5:5b71d023d4729575d550536dce8439e6");
+    private final URI cs2 = URI.create("md5:aedbcf5e27a17fc2daa5a0e0d7840009");
+
+    @Test
+    public void testGetPut() {
+        try {
+            ObservationDocumentCache cache = new ObservationDocumentCache(1024L);
+            Assert.assertNull(cache.get(uri1, "xml", cs1));
+
+            byte[] doc = new byte[] { 1, 2, 3 };
+            cache.put(uri1, "xml", cs1, doc);
+            Assert.assertArrayEquals(doc, cache.get(uri1, "xml", cs1));
+            Assert.assertNull("other format", cache.get(uri1, "bin", cs1));
+            Assert.assertNull("other observation", cache.get(uri2, "xml", cs1));
+            Assert.assertNull("no checksum", cache.get(uri1, "xml", null));
+            Assert.assertEquals(3L, cache.getBytes());
+
+            Assert.assertNull("modified", cache.get(uri1, "xml", cs2));
+            Assert.assertEquals(0, cache.size());
+            Assert.assertEquals(0L, cache.getBytes());
+
+            cache.put(uri1, "xml", cs1, doc);
+            cache.put(uri1, "bin", cs1, doc);
+            cache.put(uri2, "xml", cs2, doc);
+            cache.invalidate(uri1);
+            Assert.assertNull(cache.get(uri1, "xml", cs1));
+            Assert.assertNull(cache.get(uri1, "bin", cs1));
+            Assert.assertArrayEquals(doc, cache.get(uri2, "xml", cs2));
+            Assert.assertEquals(3L, cache.getBytes());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testSizeLimit() {
+        try {
+            ObservationDocumentCache cache = new ObservationDocumentCache(1600L);
+            cache.put(uri1, "xml", cs1, new byte[2000]);
+            Assert.assertEquals("too large", 0, cache.size());
+
+            for (int i = 0; i < 20; i++) {
+                cache.put(new ObservationURI("FOO", "obs" + i), "xml", cs1, new byte[100]);
+            }
+            Assert.assertEquals(16, cache.size());
+            Assert.assertEquals(1600L, cache.getBytes());
+            Assert.assertNull("least recently used dropped", cache.get(new ObservationURI("FOO", "obs0"), "xml", cs1));
+            Assert.assertNotNull(cache.get(new ObservationURI("FOO", "obs19"), "xml", cs1));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+}
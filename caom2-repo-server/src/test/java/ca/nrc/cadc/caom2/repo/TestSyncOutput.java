@@ -124,6 +124,11 @@ public class TestSyncOutput extends SyncOutput {
         return new String(bytes);
     }
 
+    public byte[] getContentBytes() {
+        ByteArrayOutputStream myOut = (ByteArrayOutputStream) outputStream;
+        return myOut.toByteArray();
+    }
+
     public int getCode() {
         return code;
     }
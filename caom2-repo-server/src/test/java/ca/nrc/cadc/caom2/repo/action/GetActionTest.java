@@ -74,25 +74,39 @@ import static org.easymock.EasyMock.mock;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.reset;
 
+import ca.nrc.cadc.caom2.Observation;
 import ca.nrc.cadc.caom2.ObservationState;
 import ca.nrc.cadc.caom2.ObservationURI;
+import ca.nrc.cadc.caom2.Plane;
+import ca.nrc.cadc.caom2.SimpleObservation;
+import ca.nrc.cadc.caom2.binary.BinaryObservationReader;
+import ca.nrc.cadc.caom2.binary.BinaryObservationWriter;
 import ca.nrc.cadc.caom2.persistence.ObservationDAO;
+import ca.nrc.cadc.caom2.persistence.ObservationStateIterator;
+import ca.nrc.cadc.caom2.repo.ObservationDocumentCache;
 import ca.nrc.cadc.caom2.repo.TestSyncOutput;
+import ca.nrc.cadc.caom2.util.CaomUtil;
 import ca.nrc.cadc.date.DateUtil;
 import ca.nrc.cadc.log.WebServiceLogInfo;
 import ca.nrc.cadc.net.ResourceNotFoundException;
 import ca.nrc.cadc.rest.SyncInput;
 import ca.nrc.cadc.util.Log4jInit;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.security.AccessControlException;
+import java.security.MessageDigest;
 import java.security.cert.CertificateException;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -135,7 +149,7 @@ public class GetActionTest {
         reset(mockDao);
         expect(mockRequest.getMethod()).andReturn("GET");
         expect(mockRequest.getPathInfo()).andReturn("/BLAH");
-        expect(mockDao.getObservationList("BLAH", null, null, null, true)).andReturn(null);
+        expect(mockDao.getObservationListIterator("BLAH", null, null, null, true)).andReturn(null);
 
         Enumeration<String> params = Collections.emptyEnumeration();
         expect(mockRequest.getParameterNames()).andReturn(params);
@@ -176,8 +190,9 @@ public class GetActionTest {
         Enumeration<String> params = Collections.emptyEnumeration();
         expect(mockRequest.getParameterNames()).andReturn(params);
 
-        // since no maxRec argument given, expect the default one
-        expect(mockDao.getObservationList("TEST", null, null, GetAction.MAX_OBS_LIST_SIZE, true)).andReturn(obsList);
+        // since no maxRec argument given, expect all
+        expect(mockDao.getObservationListIterator("TEST", null, null, null, true)).andReturn(new TestIterator(obsList));
+        expect(mockRequest.getHeader(GetAction.ACCEPT_ENCODING)).andReturn(null);
 
         replay(mockDao, mockRequest);
 
@@ -215,7 +230,8 @@ public class GetActionTest {
         expect(mockRequest.getParameterValues("end")).andReturn(new String[] { endDate });
 
         // all arguments given
-        expect(mockDao.getObservationList("TEST", df.parse(startDate), df.parse(endDate), 3, true)).andReturn(obsList);
+        expect(mockDao.getObservationListIterator("TEST", df.parse(startDate), df.parse(endDate), 3, true)).andReturn(new TestIterator(obsList));
+        expect(mockRequest.getHeader(GetAction.ACCEPT_ENCODING)).andReturn(null);
 
         replay(mockDao, mockRequest);
 
@@ -224,6 +240,236 @@ public class GetActionTest {
         Assert.assertEquals(expected, out.getContent());
     }
 
+    @Test
+    public void testListGzip() throws Exception {
+        HttpServletRequest mockRequest = mock(HttpServletRequest.class);
+
+        GetAction getAction = new TestGetAction(mockDao);
+        TestSyncOutput out = new TestSyncOutput();
+        getAction.setSyncOutput(out);
+
+        reset(mockDao);
+
+        expect(mockRequest.getMethod()).andReturn("GET");
+        expect(mockRequest.getPathInfo()).andReturn("/TEST");
+
+        List<ObservationState> obsList = new ArrayList<ObservationState>();
+        DateFormat df = DateUtil.getDateFormat(DateUtil.IVOA_DATE_FORMAT, DateUtil.UTC);
+        ObservationState os1 = new ObservationState(new ObservationURI("TEST", "1234"));
+        os1.maxLastModified = df.parse("2010-10-10T10:10:10.10");
+        os1.accMetaChecksum = URI.create("md5:5b71d023d4729575d550536dce8439e6");
+        obsList.add(os1);
+
+        Enumeration<String> params = Collections.emptyEnumeration();
+        expect(mockRequest.getParameterNames()).andReturn(params);
+        expect(mockDao.getObservationListIterator("TEST", null, null, null, true)).andReturn(new TestIterator(obsList));
+        expect(mockRequest.getHeader(GetAction.ACCEPT_ENCODING)).andReturn("gzip;q=0.8, identity");
+
+        replay(mockDao, mockRequest);
+
+        getAction.setSyncInput(new SyncInput(mockRequest, getAction.getInlineContentHandler()));
+        getAction.run();
+
+        Assert.assertEquals(GetAction.GZIP, out.getHeaders().get("Content-Encoding"));
+        String expected = "TEST" + "\t" + "1234" + "\t" + df.format(os1.maxLastModified) + "\t" + os1.accMetaChecksum.toString() + "\n";
+        GZIPInputStream gz = new GZIPInputStream(new ByteArrayInputStream(out.getContentBytes()));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int num = gz.read(buf);
+        while (num != -1) {
+            bos.write(buf, 0, num);
+            num = gz.read(buf);
+        }
+        Assert.assertEquals(expected, bos.toString("US-ASCII"));
+    }
+
+    @Test
+    public void testListDeflate() throws Exception {
+        HttpServletRequest mockRequest = mock(HttpServletRequest.class);
+
+        GetAction getAction = new TestGetAction(mockDao);
+        TestSyncOutput out = new TestSyncOutput();
+        getAction.setSyncOutput(out);
+
+        reset(mockDao);
+
+        expect(mockRequest.getMethod()).andReturn("GET");
+        expect(mockRequest.getPathInfo()).andReturn("/TEST");
+
+        List<ObservationState> obsList = new ArrayList<ObservationState>();
+        DateFormat df = DateUtil.getDateFormat(DateUtil.IVOA_DATE_FORMAT, DateUtil.UTC);
+        ObservationState os1 = new ObservationState(new ObservationURI("TEST", "1234"));
+        os1.maxLastModified = df.parse("2010-10-10T10:10:10.10");
+        os1.accMetaChecksum = URI.create("md5:5b71d023d4729575d550536dce8439e6");
+        obsList.add(os1);
+
+        Enumeration<String> params = Collections.emptyEnumeration();
+        expect(mockRequest.getParameterNames()).andReturn(params);
+        expect(mockDao.getObservationListIterator("TEST", null, null, null, true)).andReturn(new TestIterator(obsList));
+        expect(mockRequest.getHeader(GetAction.ACCEPT_ENCODING)).andReturn("gzip;q=0.5, deflate");
+
+        replay(mockDao, mockRequest);
+
+        getAction.setSyncInput(new SyncInput(mockRequest, getAction.getInlineContentHandler()));
+        getAction.run();
+
+        Assert.assertEquals(GetAction.DEFLATE, out.getHeaders().get("Content-Encoding"));
+        String expected = "TEST" + "\t" + "1234" + "\t" + df.format(os1.maxLastModified) + "\t" + os1.accMetaChecksum.toString() + "\n";
+        InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(out.getContentBytes()));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int num = in.read(buf);
+        while (num != -1) {
+            bos.write(buf, 0, num);
+            num = in.read(buf);
+        }
+        Assert.assertEquals(expected, bos.toString("US-ASCII"));
+    }
+
+    @Test
+    public void testGetNotModified() throws Exception {
+        HttpServletRequest mockRequest = mock(HttpServletRequest.class);
+
+        GetAction getAction = new TestGetAction(mockDao);
+        TestSyncOutput out = new TestSyncOutput();
+        getAction.setSyncOutput(out);
+
+        reset(mockDao);
+
+        expect(mockRequest.getMethod()).andReturn("GET");
+        expect(mockRequest.getPathInfo()).andReturn("/TEST/1234");
+
+        ObservationURI uri = new ObservationURI("TEST", "1234");
+        ObservationState os1 = new ObservationState(uri);
+        os1.accMetaChecksum = URI.create("md5:5b71d023d4729575d550536dce8439e6");
+        String etag = "\"" + os1.accMetaChecksum + "\"";
+
+        Enumeration<String> params = Collections.emptyEnumeration();
+        expect(mockRequest.getParameterNames()).andReturn(params);
+        expect(mockRequest.getHeader(GetAction.IF_NONE_MATCH)).andReturn("\"md5:aedbcf5e27a17fc2daa5a0e0d7840009\", " + etag);
+        expect(mockDao.getState(uri)).andReturn(os1);
+
+        replay(mockDao, mockRequest);
+
+        getAction.setSyncInput(new SyncInput(mockRequest, getAction.getInlineContentHandler()));
+        getAction.run();
+
+        Assert.assertEquals(304, out.getCode());
+        Assert.assertEquals("W/" + etag, out.getHeaders().get(GetAction.ETAG));
+    }
+
+    @Test
+    public void testGetCached() throws Exception {
+        HttpServletRequest mockRequest = mock(HttpServletRequest.class);
+
+        GetAction getAction = new TestGetAction(mockDao);
+        TestSyncOutput out = new TestSyncOutput();
+        getAction.setSyncOutput(out);
+
+        reset(mockDao);
+
+        expect(mockRequest.getMethod()).andReturn("GET");
+        expect(mockRequest.getPathInfo()).andReturn("/TEST/cached");
+
+        ObservationURI uri = new ObservationURI("TEST", "cached");
+        ObservationState os1 = new ObservationState(uri);
+        os1.accMetaChecksum = URI.create("md5:5b71d023d4729575d550536dce8439e6");
+        byte[] doc = "<caom2:Observation/>".getBytes("UTF-8");
+        ObservationDocumentCache.getInstance().put(uri, getAction.getDocumentFormat(), os1.accMetaChecksum, doc);
+
+        Enumeration<String> params = Collections.emptyEnumeration();
+        expect(mockRequest.getParameterNames()).andReturn(params);
+        expect(mockRequest.getHeader(GetAction.IF_NONE_MATCH)).andReturn(null);
+        expect(mockRequest.getHeader(GetAction.ACCEPT)).andReturn(null);
+        expect(mockRequest.getHeader(GetAction.ACCEPT_ENCODING)).andReturn(null);
+        // no dao.get(uri): the nice mock would return null and cause a 404
+        expect(mockDao.getState(uri)).andReturn(os1);
+
+        replay(mockDao, mockRequest);
+
+        getAction.setSyncInput(new SyncInput(mockRequest, getAction.getInlineContentHandler()));
+        getAction.run();
+
+        Assert.assertEquals(GetAction.CAOM_MIMETYPE, out.getHeaders().get("Content-Type"));
+        Assert.assertEquals(GetAction.toETag(os1.accMetaChecksum), out.getHeaders().get(GetAction.ETAG));
+        Assert.assertArrayEquals(doc, out.getContentBytes());
+    }
+
+    @Test
+    public void testGetBinary() throws Exception {
+        HttpServletRequest mockRequest = mock(HttpServletRequest.class);
+
+        GetAction getAction = new TestGetAction(mockDao);
+        TestSyncOutput out = new TestSyncOutput();
+        getAction.setSyncOutput(out);
+
+        reset(mockDao);
+
+        expect(mockRequest.getMethod()).andReturn("GET");
+        expect(mockRequest.getPathInfo()).andReturn("/TEST/binary");
+
+        ObservationURI uri = new ObservationURI("TEST", "binary");
+        Observation obs = new SimpleObservation("TEST", "binary");
+        obs.getPlanes().add(new Plane("foo"));
+        URI acc = obs.computeAccMetaChecksum(MessageDigest.getInstance("MD5"));
+        CaomUtil.assignMetaChecksum(obs, acc, "accMetaChecksum");
+        ObservationState os1 = new ObservationState(uri);
+        os1.accMetaChecksum = acc;
+
+        Enumeration<String> params = Collections.emptyEnumeration();
+        expect(mockRequest.getParameterNames()).andReturn(params);
+        expect(mockRequest.getHeader(GetAction.IF_NONE_MATCH)).andReturn(null);
+        expect(mockRequest.getHeader(GetAction.ACCEPT)).andReturn(GetAction.CAOM_BINARY_MIMETYPE + ", " + GetAction.CAOM_MIMETYPE + ";q=0.5");
+        expect(mockRequest.getHeader(GetAction.ACCEPT_ENCODING)).andReturn(null);
+        expect(mockDao.getState(uri)).andReturn(os1);
+        expect(mockDao.get(uri)).andReturn(obs);
+
+        replay(mockDao, mockRequest);
+
+        getAction.setSyncInput(new SyncInput(mockRequest, getAction.getInlineContentHandler()));
+        getAction.run();
+
+        Assert.assertEquals(GetAction.CAOM_BINARY_MIMETYPE, out.getHeaders().get("Content-Type"));
+        Assert.assertEquals(GetAction.ACCEPT + ", " + GetAction.ACCEPT_ENCODING, out.getHeaders().get("Vary"));
+        Assert.assertEquals(GetAction.toETag(acc), out.getHeaders().get(GetAction.ETAG));
+        Observation actual = new BinaryObservationReader().read(new ByteArrayInputStream(out.getContentBytes()));
+        Assert.assertEquals(uri, actual.getURI());
+        Assert.assertEquals(obs.getID(), actual.getID());
+        Assert.assertEquals(acc, actual.getAccMetaChecksum());
+        Assert.assertEquals(1, actual.getPlanes().size());
+
+        // cached separately from the XML document
+        Assert.assertNotNull(ObservationDocumentCache.getInstance().get(uri, BinaryObservationWriter.FORMAT, acc));
+        Assert.assertNull(ObservationDocumentCache.getInstance().get(uri, getAction.getDocumentFormat(), acc));
+    }
+
+    private static class TestIterator implements ObservationStateIterator {
+        private final Iterator<ObservationState> iter;
+
+        TestIterator(List<ObservationState> states) {
+            this.iter = states.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iter.hasNext();
+        }
+
+        @Override
+        public ObservationState next() {
+            return iter.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
     private class TestLogInfo extends WebServiceLogInfo {
 
     }
@@ -0,0 +1,200 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+
+package ca.nrc.cadc.caom2.repo.action;
+
+import ca.nrc.cadc.caom2.ObservationResponse;
+import ca.nrc.cadc.caom2.ObservationURI;
+import ca.nrc.cadc.caom2.SimpleObservation;
+import ca.nrc.cadc.caom2.xml.ObservationWriter;
+import ca.nrc.cadc.rest.InlineContentException;
+import ca.nrc.cadc.rest.InlineContentHandler;
+import ca.nrc.cadc.util.Log4jInit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class ObservationInlineContentHandlerTest {
+    private static final Logger log = Logger.getLogger(ObservationInlineContentHandlerTest.class);
+
+    static {
+        Log4jInit.setLevel("ca.nrc.cadc.caom2", Level.INFO);
+    }
+
+    @Test
+    public void testMultipleObservations() {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObservationWriter w = new ObservationWriter();
+            for (String id : new String[] { "obs1", "obs2" }) {
+                ByteArrayOutputStream doc = new ByteArrayOutputStream();
+                w.write(new SimpleObservation("TEST", id), doc);
+                bos.write(("caom:TEST/" + id + "\t" + doc.size() + "\n").getBytes("US-ASCII"));
+                doc.writeTo(bos);
+            }
+            byte[] invalid = "<not-an-observation/>".getBytes("UTF-8");
+            bos.write(("caom:TEST/obs3\t" + invalid.length + "\n").getBytes("US-ASCII"));
+            bos.write(invalid);
+
+            ObservationInlineContentHandler handler = new ObservationInlineContentHandler();
+            InlineContentHandler.Content content = handler.accept("data", GetAction.CAOM_BULK_MIMETYPE,
+                new ByteArrayInputStream(bos.toByteArray()));
+            Assert.assertEquals(ObservationInlineContentHandler.BULK_CONTENT_KEY, content.name);
+
+            ObservationInlineContentHandler.MultiObservationReader reader =
+                (ObservationInlineContentHandler.MultiObservationReader) content.value;
+            ObservationResponse r = reader.next();
+            Assert.assertEquals(new ObservationURI("TEST", "obs1"), r.observationState.getURI());
+            Assert.assertNotNull(r.observation);
+            Assert.assertEquals(new ObservationURI("TEST", "obs1"), r.observation.getURI());
+            r = reader.next();
+            Assert.assertNotNull(r.observation);
+            Assert.assertEquals(new ObservationURI("TEST", "obs2"), r.observation.getURI());
+            r = reader.next();
+            Assert.assertEquals(new ObservationURI("TEST", "obs3"), r.observationState.getURI());
+            Assert.assertNull(r.observation);
+            Assert.assertNotNull(r.error);
+            Assert.assertNull(reader.next());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testNotReadInAccept() {
+        try {
+            // the action checks permissions before the document is read
+            InputStream unreadable = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    throw new IOException("read in accept");
+                }
+            };
+            ObservationInlineContentHandler handler = new ObservationInlineContentHandler();
+            InlineContentHandler.Content content = handler.accept("data", GetAction.CAOM_BULK_MIMETYPE, unreadable);
+            Assert.assertNotNull(content.value);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testInvalidHeader() {
+        try {
+            ObservationInlineContentHandler handler = new ObservationInlineContentHandler();
+            byte[] doc = "caom:TEST/obs1 123\n".getBytes("US-ASCII");
+            InlineContentHandler.Content content = handler.accept("data", GetAction.CAOM_BULK_MIMETYPE,
+                new ByteArrayInputStream(doc));
+            ((ObservationInlineContentHandler.MultiObservationReader) content.value).next();
+            Assert.fail("expected InlineContentException");
+        } catch (InlineContentException expected) {
+            log.debug("caught expected: " + expected);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testTruncatedDocument() {
+        try {
+            ByteArrayOutputStream doc = new ByteArrayOutputStream();
+            new ObservationWriter().write(new SimpleObservation("TEST", "obs1"), doc);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            bos.write(("caom:TEST/obs1\t" + (doc.size() + 10) + "\n").getBytes("US-ASCII"));
+            doc.writeTo(bos);
+
+            ObservationInlineContentHandler handler = new ObservationInlineContentHandler();
+            InlineContentHandler.Content content = handler.accept("data", GetAction.CAOM_BULK_MIMETYPE,
+                new ByteArrayInputStream(bos.toByteArray()));
+            ((ObservationInlineContentHandler.MultiObservationReader) content.value).next();
+            Assert.fail("expected EOFException");
+        } catch (EOFException expected) {
+            log.debug("caught expected: " + expected);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+
+package ca.nrc.cadc.caom2.repo.action;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.ObservationState;
+import ca.nrc.cadc.caom2.ObservationURI;
+import ca.nrc.cadc.caom2.SimpleObservation;
+import ca.nrc.cadc.caom2.persistence.ObservationDAO;
+import ca.nrc.cadc.caom2.repo.ComputePool;
+import ca.nrc.cadc.caom2.repo.TestSyncOutput;
+import ca.nrc.cadc.caom2.util.CaomUtil;
+import ca.nrc.cadc.log.WebServiceLogInfo;
+import ca.nrc.cadc.net.ResourceNotFoundException;
+import ca.nrc.cadc.util.Log4jInit;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.AccessControlException;
+import java.security.MessageDigest;
+import java.security.cert.CertificateException;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.easymock.EasyMock;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Update of an observation that was resubmitted without changes (see
+ * RepoAction.isUnchanged).
+ *
+ * @author agent
+ */
+public class PostActionTest {
+    private static final Logger log = Logger.getLogger(PostActionTest.class);
+
+    static {
+        Log4jInit.setLevel("ca.nrc.cadc.caom2", Level.INFO);
+    }
+
+    private static final URI OTHER = URI.create("md5:0123456789abcdef0123456789abcdef");
+
+    private ObservationDAO mockDao;
+    private Observation obs;
+    private URI computed;
+
+    @Before
+    public void setup() throws Exception {
+        // strict: put must not be called when the observation is unchanged
+        mockDao = EasyMock.createMock(ObservationDAO.class);
+        obs = new SimpleObservation("TEST", "bar");
+        computed = obs.computeAccMetaChecksum(MessageDigest.getInstance("MD5"));
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        new ComputePool().contextDestroyed(null);
+    }
+
+    @Test
+    public void testUnchangedTrusted() {
+        try {
+            // not the computed value: trusted without computing
+            CaomUtil.assignMetaChecksum(obs, OTHER, "accMetaChecksum");
+            ObservationState cur = new ObservationState(obs.getURI());
+            cur.accMetaChecksum = OTHER;
+            expect(mockDao.getState(obs.getURI())).andReturn(cur);
+            replay(mockDao);
+
+            TestSyncOutput out = new TestSyncOutput();
+            TestPostAction action = new TestPostAction(mockDao, obs, true);
+            action.setSyncOutput(out);
+            action.doAction();
+
+            verify(mockDao);
+            Assert.assertEquals(GetAction.toETag(OTHER), out.getHeaders().get(GetAction.ETAG));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testUnchangedVerified() {
+        try {
+            CaomUtil.assignMetaChecksum(obs, computed, "accMetaChecksum");
+            ObservationState cur = new ObservationState(obs.getURI());
+            cur.accMetaChecksum = computed;
+            expect(mockDao.getState(obs.getURI())).andReturn(cur);
+            replay(mockDao);
+
+            TestSyncOutput out = new TestSyncOutput();
+            TestPostAction action = new TestPostAction(mockDao, obs, false);
+            action.setSyncOutput(out);
+            action.doAction();
+
+            verify(mockDao);
+            Assert.assertEquals(GetAction.toETag(computed), out.getHeaders().get(GetAction.ETAG));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testChecksumMismatch() {
+        try {
+            // submitted matches the stored state but not the content: validate and put
+            CaomUtil.assignMetaChecksum(obs, OTHER, "accMetaChecksum");
+            ObservationState cur = new ObservationState(obs.getURI());
+            cur.accMetaChecksum = OTHER;
+            expect(mockDao.getState(obs.getURI())).andReturn(cur);
+            expect(mockDao.put(obs, Boolean.TRUE, null)).andReturn(ObservationDAO.PutResult.UPDATED);
+            replay(mockDao);
+
+            TestSyncOutput out = new TestSyncOutput();
+            TestPostAction action = new TestPostAction(mockDao, obs, false);
+            action.setSyncOutput(out);
+            action.doAction();
+
+            verify(mockDao);
+            Assert.assertEquals(computed, obs.getAccMetaChecksum());
+            Assert.assertEquals(GetAction.toETag(computed), out.getHeaders().get(GetAction.ETAG));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testChanged() {
+        try {
+            // stored observation is different: no checksum computation, validate and put
+            CaomUtil.assignMetaChecksum(obs, computed, "accMetaChecksum");
+            ObservationState cur = new ObservationState(obs.getURI());
+            cur.accMetaChecksum = OTHER;
+            expect(mockDao.getState(obs.getURI())).andReturn(cur);
+            expect(mockDao.put(obs, Boolean.TRUE, null)).andReturn(ObservationDAO.PutResult.UPDATED);
+            replay(mockDao);
+
+            TestSyncOutput out = new TestSyncOutput();
+            TestPostAction action = new TestPostAction(mockDao, obs, true);
+            action.setSyncOutput(out);
+            action.doAction();
+
+            verify(mockDao);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    private class TestLogInfo extends WebServiceLogInfo {
+
+    }
+
+    // test subclass with the request and collection config in place of the
+    // servlet request, permission checks and DataSource
+    private class TestPostAction extends PostAction {
+        private final ObservationDAO dao;
+        private final Observation input;
+
+        TestPostAction(ObservationDAO dao, Observation input, boolean trustClientChecksum) {
+            super();
+            setLogInfo(new TestLogInfo());
+            this.dao = dao;
+            this.input = input;
+            this.trustClientChecksum = trustClientChecksum;
+        }
+
+        @Override
+        protected ObservationURI getURI() {
+            return input.getURI();
+        }
+
+        @Override
+        protected URI getIfMatch() {
+            return null;
+        }
+
+        @Override
+        protected void checkWritePermission(ObservationURI uri) throws AccessControlException,
+            CertificateException, ResourceNotFoundException, IOException {
+        }
+
+        @Override
+        protected Observation getInputObservation() throws IOException {
+            return input;
+        }
+
+        @Override
+        protected ObservationDAO getDAO() {
+            return dao;
+        }
+    }
+}
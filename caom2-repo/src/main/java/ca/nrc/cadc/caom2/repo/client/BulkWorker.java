@@ -0,0 +1,372 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.repo.client;
+
+import ca.nrc.cadc.auth.RunnableAction;
+import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.ObservationResponse;
+import ca.nrc.cadc.caom2.ObservationState;
+import ca.nrc.cadc.caom2.ObservationURI;
+import ca.nrc.cadc.caom2.binary.BinaryObservationReader;
+import ca.nrc.cadc.caom2.xml.ObservationParsingException;
+import ca.nrc.cadc.caom2.xml.ObservationReader;
+import ca.nrc.cadc.net.HttpDownload;
+import ca.nrc.cadc.net.InputStreamWrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import javax.security.auth.Subject;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Get a batch of observations from one collection with a single request. If the
+ * service does not support multiple observation documents, the observations are
+ * downloaded one at a time with Worker and the client is told to stop trying.
+ * Observations with a local copy that matches the accMetaChecksum in the observation
+ * list are not requested; if the list has no accMetaChecksum, observations with a local
+ * copy are requested one at a time with If-None-Match. The response for unchanged
+ * observations has neither an observation nor an error.
+ *
+ * @author agent
+ */
+class BulkWorker implements Callable<List<ObservationResponse>> {
+
+    private static final Logger log = Logger.getLogger(BulkWorker.class);
+
+    // must match the repo service GetAction
+    static final String CAOM_BULK_MIMETYPE = "application/x-caom-observations";
+    static final String CAOM_BULK_BINARY_MIMETYPE = "application/x-caom-binary-observations";
+
+    private static final ThreadLocal<ObservationReader> READER = new ThreadLocal<ObservationReader>() {
+        @Override
+        protected ObservationReader initialValue() {
+            return new ObservationReader();
+        }
+    };
+
+    private static final BinaryObservationReader BINARY_READER = new BinaryObservationReader();
+
+    private final List<ObservationState> states;
+    private final Subject subject;
+    private final String baseHTTPURL;
+    private final RepoClient client;
+    private final Map<ObservationURI, URI> localChecksums;
+
+    /**
+     * @param states observations to get, all from the same collection
+     * @param subject caller
+     * @param url base service URL
+     * @param client notified if bulk requests are not supported
+     * @param localChecksums accMetaChecksum of local copies (may be null)
+     */
+    BulkWorker(List<ObservationState> states, Subject subject, String url, RepoClient client,
+        Map<ObservationURI, URI> localChecksums) {
+        this.states = states;
+        this.subject = subject;
+        this.baseHTTPURL = url;
+        this.client = client;
+        this.localChecksums = localChecksums;
+    }
+
+    @Override
+    public List<ObservationResponse> call() throws Exception {
+        DocumentCache cache = client.getCache();
+        if (cache == null && localChecksums == null) {
+            return getBatch(states);
+        }
+
+        // only request the observations that are not cached in one request;
+        // conditional requests for the ones that are probably unchanged
+        Map<ObservationState, ObservationResponse> done = new HashMap<ObservationState, ObservationResponse>();
+        List<ObservationState> fetch = new ArrayList<ObservationState>(states.size());
+        for (ObservationState s : states) {
+            Observation o = null;
+            if (cache != null) {
+                o = cache.get(s);
+            }
+            URI local = getLocalChecksum(s);
+            if (o != null) {
+                ObservationResponse wr = new ObservationResponse(s);
+                wr.observation = o;
+                done.put(s, wr);
+            } else if (local != null && local.equals(s.accMetaChecksum)) {
+                // the observation list already says the local copy is current
+                done.put(s, new ObservationResponse(s));
+            } else if (local != null && s.accMetaChecksum == null) {
+                done.put(s, getOne(s));
+            } else {
+                fetch.add(s);
+            }
+        }
+        if (done.isEmpty()) {
+            return getBatch(states);
+        }
+
+        Iterator<ObservationResponse> fetched = getBatch(fetch).iterator();
+        List<ObservationResponse> ret = new ArrayList<ObservationResponse>(states.size());
+        for (ObservationState s : states) {
+            ObservationResponse wr = done.get(s);
+            if (wr != null) {
+                ret.add(wr);
+            } else {
+                ret.add(fetched.next());
+            }
+        }
+        return ret;
+    }
+
+    private URI getLocalChecksum(ObservationState s) {
+        if (localChecksums == null) {
+            return null;
+        }
+        return localChecksums.get(s.getURI());
+    }
+
+    private ObservationResponse getOne(ObservationState s) {
+        Worker w = new Worker(s, subject, baseHTTPURL);
+        w.setCache(client.getCache());
+        w.setClient(client);
+        w.setIfNoneMatch(getLocalChecksum(s));
+        return w.getObservation();
+    }
+
+    private List<ObservationResponse> getBatch(List<ObservationState> states) {
+        if (states.isEmpty()) {
+            return new ArrayList<ObservationResponse>(0);
+        }
+        if (states.size() == 1 || !client.isBulkSupported()) {
+            return getEach(states);
+        }
+
+        URL url = getURL(states);
+        log.debug("URL: " + url);
+        MultiObservationReader mor = new MultiObservationReader();
+        HttpDownload get = new HttpDownload(url, mor);
+        mor.download = get;
+        mor.cache = client.getCache();
+        get.setFollowRedirects(true);
+        ContentEncoding.acceptGzip(get);
+        get.setRequestProperty(Worker.ACCEPT, CAOM_BULK_BINARY_MIMETYPE + ", " + CAOM_BULK_MIMETYPE + ";q=0.5");
+
+        if (subject != null) {
+            Subject.doAs(subject, new RunnableAction(get));
+        } else {
+            get.run();
+        }
+
+        String contentType = get.getContentType();
+        if (get.getResponseCode() == 200 && !Worker.isContentType(contentType, CAOM_BULK_MIMETYPE)
+            && !Worker.isContentType(contentType, CAOM_BULK_BINARY_MIMETYPE)) {
+            // older service: ignored the id param and returned the observation list
+            log.info("multiple observation request not supported by " + baseHTTPURL + ": " + contentType);
+            client.setBulkSupported(false);
+            return getEach(states);
+        }
+
+        int code = get.getResponseCode();
+        if (code <= 0 || code >= 500 || code == 429 || (code == 200 && get.getThrowable() != null)) {
+            // transient failure: get them one at a time with retries
+            log.warn("multiple observation request failed: " + url + " code: " + code + " cause: " + get.getThrowable());
+            if (code <= 0 || code >= 500) {
+                // connection refused or server error: service may have moved
+                client.invalidateServiceURL();
+            }
+            return getEach(states);
+        }
+
+        List<ObservationResponse> ret = new ArrayList<ObservationResponse>(states.size());
+        for (ObservationState s : states) {
+            ObservationResponse wr = new ObservationResponse(s);
+            wr.observation = mor.observations.get(s.getURI().getURI().toASCIIString());
+            wr.error = mor.errors.get(s.getURI().getURI().toASCIIString());
+            if (wr.observation == null && wr.error == null) {
+                String msg = "no document";
+                if (get.getThrowable() != null) {
+                    msg = get.getThrowable().getMessage();
+                }
+                wr.error = new IllegalStateException("Unable to create Observation object for id "
+                    + s.getURI().getObservationID() + ": " + msg);
+            }
+            ret.add(wr);
+        }
+        return ret;
+    }
+
+    private List<ObservationResponse> getEach(List<ObservationState> states) {
+        List<ObservationResponse> ret = new ArrayList<ObservationResponse>(states.size());
+        for (ObservationState s : states) {
+            ret.add(getOne(s));
+        }
+        return ret;
+    }
+
+    private URL getURL(List<ObservationState> states) {
+        StringBuilder surl = new StringBuilder();
+        surl.append(baseHTTPURL).append(File.separator).append(states.get(0).getURI().getCollection());
+        char sep = '?';
+        try {
+            for (ObservationState s : states) {
+                surl.append(sep).append("id=").append(URLEncoder.encode(s.getURI().getObservationID(), "UTF-8"));
+                sep = '&';
+            }
+            return new URL(surl.toString());
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("BUG: UTF-8 encoding not supported", e);
+        } catch (MalformedURLException e) {
+            throw new RuntimeException("Unable to create URL object for " + surl);
+        }
+    }
+
+    // parse the multiple observation document: uri \t length \n followed by length bytes
+    // of XML or, with the binary content type, a binary document
+    private static class MultiObservationReader implements InputStreamWrapper {
+        final Map<String, Observation> observations = new HashMap<String, Observation>();
+        final Map<String, Exception> errors = new HashMap<String, Exception>();
+        HttpDownload download;
+        DocumentCache cache;
+
+        @Override
+        public void read(InputStream in) throws IOException {
+            boolean binary = Worker.isContentType(download.getContentType(), CAOM_BULK_BINARY_MIMETYPE);
+            DataInputStream din = new DataInputStream(ContentEncoding.decode(in, download));
+            ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            String header;
+            while ((header = readLine(din, line)) != null) {
+                int i = header.lastIndexOf('\t');
+                if (i <= 0) {
+                    throw new IOException("invalid observation header: " + header);
+                }
+                String uri = header.substring(0, i);
+                int len;
+                try {
+                    len = Integer.parseInt(header.substring(i + 1));
+                } catch (NumberFormatException ex) {
+                    throw new IOException("invalid observation header: " + header);
+                }
+                if (len < 0) {
+                    errors.put(uri, new IllegalStateException("not found: " + uri));
+                    continue;
+                }
+                byte[] doc = new byte[len];
+                din.readFully(doc);
+                try {
+                    Observation obs;
+                    if (binary) {
+                        obs = BINARY_READER.read(new ByteArrayInputStream(doc));
+                    } else {
+                        obs = READER.get().read(new InputStreamReader(new ByteArrayInputStream(doc), "UTF-8"));
+                    }
+                    observations.put(uri, obs);
+                    if (cache != null) {
+                        cache.put(obs.getURI().getURI(), obs.getAccMetaChecksum(), doc);
+                    }
+                } catch (ObservationParsingException | IOException | RuntimeException e) {
+                    // complete document in memory: truncated binary content is invalid content
+                    errors.put(uri, new IllegalStateException("Unable to create Observation object for " + uri + ": " + e.getMessage()));
+                }
+            }
+        }
+
+        // null at end of stream
+        private String readLine(DataInputStream in, ByteArrayOutputStream buf) throws IOException {
+            buf.reset();
+            int b = in.read();
+            if (b == -1) {
+                return null;
+            }
+            while (b != '\n') {
+                if (b == -1) {
+                    throw new EOFException("truncated observation header");
+                }
+                buf.write(b);
+                b = in.read();
+            }
+            return buf.toString("US-ASCII");
+        }
+    }
+}
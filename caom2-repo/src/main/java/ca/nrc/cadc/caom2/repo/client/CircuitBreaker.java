@@ -0,0 +1,145 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.repo.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Per-host circuit breaker. After a number of consecutive failures (connection
+ * failures and 5xx responses) requests to the host fail fast until a cool down
+ * period has passed; then one trial request is allowed and the circuit closes
+ * again if it succeeds.
+ *
+ * @author agent
+ */
+class CircuitBreaker {
+
+    private static final Logger log = Logger.getLogger(CircuitBreaker.class);
+
+    static final int FAILURE_THRESHOLD = 5;
+    static final long OPEN_MILLIS = 30 * 1000L;
+
+    private static final ConcurrentMap<String, CircuitBreaker> HOSTS = new ConcurrentHashMap<>();
+
+    private final String host;
+    private int failures = 0;
+    private long openUntil = 0L;
+    private boolean trial = false;
+
+    CircuitBreaker(String host) {
+        this.host = host;
+    }
+
+    static CircuitBreaker forHost(String host) {
+        CircuitBreaker ret = HOSTS.get(host);
+        if (ret == null) {
+            HOSTS.putIfAbsent(host, new CircuitBreaker(host));
+            ret = HOSTS.get(host);
+        }
+        return ret;
+    }
+
+    /**
+     * @return true if a request can be made now
+     */
+    synchronized boolean allowRequest() {
+        if (failures < FAILURE_THRESHOLD) {
+            return true;
+        }
+        if (System.currentTimeMillis() < openUntil || trial) {
+            return false;
+        }
+        // half open: let one request through
+        trial = true;
+        return true;
+    }
+
+    synchronized void success() {
+        if (failures >= FAILURE_THRESHOLD) {
+            log.info("circuit closed: " + host);
+        }
+        failures = 0;
+        trial = false;
+    }
+
+    synchronized void failure() {
+        failures++;
+        trial = false;
+        if (failures >= FAILURE_THRESHOLD) {
+            openUntil = System.currentTimeMillis() + OPEN_MILLIS;
+            if (failures == FAILURE_THRESHOLD) {
+                log.warn("circuit open: " + host + " after " + failures + " consecutive failures");
+            }
+        }
+    }
+}
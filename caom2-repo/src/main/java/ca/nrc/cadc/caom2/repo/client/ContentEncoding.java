@@ -0,0 +1,137 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.repo.client;
+
+import ca.nrc.cadc.net.HttpDownload;
+import ca.nrc.cadc.net.HttpTransfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Response compression support for the repo client: requests are sent with
+ * Accept-Encoding: gzip and responses are decompressed if the Content-Encoding
+ * response header says so (so uncompressed responses from older services still work).
+ *
+ * @author agent
+ */
+final class ContentEncoding {
+
+    static final String ACCEPT_ENCODING = "Accept-Encoding";
+    static final String GZIP = "gzip";
+    static final String X_GZIP = "x-gzip";
+
+    private ContentEncoding() {
+    }
+
+    /**
+     * Request compressed response.
+     *
+     * @param transfer the transfer to configure
+     */
+    static void acceptGzip(HttpTransfer transfer) {
+        transfer.setRequestProperty(ACCEPT_ENCODING, GZIP);
+    }
+
+    /**
+     * Wrap the response stream to decompress content according to the
+     * Content-Encoding of the response.
+     *
+     * @param in response stream
+     * @param download the download the stream is from (null: not encoded)
+     * @return stream with decompressed content
+     * @throws IOException failed to read the stream
+     */
+    static InputStream decode(InputStream in, HttpDownload download) throws IOException {
+        if (download == null) {
+            return in;
+        }
+        return decode(in, download.getContentEncoding());
+    }
+
+    /**
+     * Wrap the stream to decompress content.
+     *
+     * @param in response stream
+     * @param contentEncoding value of the Content-Encoding response header (may be null)
+     * @return stream with decompressed content
+     * @throws IOException failed to read the stream
+     */
+    static InputStream decode(InputStream in, String contentEncoding) throws IOException {
+        if (contentEncoding != null) {
+            String enc = contentEncoding.trim();
+            if (GZIP.equalsIgnoreCase(enc) || X_GZIP.equalsIgnoreCase(enc)) {
+                return new GZIPInputStream(in);
+            }
+        }
+        return in;
+    }
+}
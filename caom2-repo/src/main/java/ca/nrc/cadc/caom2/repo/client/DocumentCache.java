@@ -0,0 +1,496 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.repo.client;
+
+import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.ObservationState;
+import ca.nrc.cadc.caom2.binary.BinaryObservationReader;
+import ca.nrc.cadc.caom2.xml.ObservationReader;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * On-disk cache of observation documents. Documents are stored by observation URI and
+ * accMetaChecksum so a cached document is only used when the observation list shows
+ * that the observation has not changed. The documents are stored as they were received
+ * from the service (after content decoding), XML or binary, and read in the same way
+ * as a response.
+ * The total size is bounded and the least recently used documents are evicted. Cached
+ * documents are read with memory mapping.
+ *
+ * @author agent
+ */
+class DocumentCache {
+
+    private static final Logger log = Logger.getLogger(DocumentCache.class);
+
+    private static final String SUFFIX = ".doc";
+
+    // enough to recognize a binary document
+    private static final int PREFIX_SIZE = 16;
+
+    private static final ThreadLocal<ObservationReader> READER = new ThreadLocal<ObservationReader>() {
+        @Override
+        protected ObservationReader initialValue() {
+            return new ObservationReader();
+        }
+    };
+
+    private static final BinaryObservationReader BINARY_READER = new BinaryObservationReader();
+
+    private final File dir;
+    private final long maxBytes;
+
+    // file name -> size, in access order
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(1024, 0.75f, true);
+    private long totalBytes = 0L;
+
+    private long hits = 0L;
+    private long misses = 0L;
+
+    /**
+     * @param dir directory to store documents in (created if necessary)
+     * @param maxBytes maximum total size of the stored documents
+     */
+    DocumentCache(File dir, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("invalid cache size: " + maxBytes);
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalArgumentException("cannot create cache directory: " + dir);
+        }
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        init();
+    }
+
+    // index documents from a previous run, oldest first
+    private void init() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        synchronized (index) {
+            for (File f : files) {
+                if (f.isFile() && f.getName().endsWith(SUFFIX)) {
+                    index.put(f.getName(), f.length());
+                    totalBytes += f.length();
+                }
+            }
+            evict();
+        }
+        log.debug("init: " + index.size() + " documents " + totalBytes + " bytes in " + dir);
+    }
+
+    /**
+     * Get the cached observation in the specified state.
+     *
+     * @param state observation state with accMetaChecksum
+     * @return the observation or null if not cached
+     */
+    Observation get(ObservationState state) {
+        if (state.accMetaChecksum == null) {
+            return null;
+        }
+        String name = getName(state.getURI().getURI(), state.accMetaChecksum);
+        synchronized (index) {
+            if (index.get(name) == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+
+        File f = new File(dir, name);
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r"); FileChannel fc = raf.getChannel()) {
+            MappedByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            byte[] prefix = new byte[Math.min(buf.remaining(), PREFIX_SIZE)];
+            buf.get(prefix);
+            buf.rewind();
+            Observation ret;
+            if (BinaryObservationReader.isBinary(prefix)) {
+                ret = BINARY_READER.read(new ByteBufferInputStream(buf));
+            } else {
+                ret = READER.get().read(new InputStreamReader(new ByteBufferInputStream(buf), "UTF-8"));
+            }
+            if (!state.accMetaChecksum.equals(ret.getAccMetaChecksum())) {
+                throw new IllegalStateException("accMetaChecksum mismatch: " + ret.getAccMetaChecksum());
+            }
+            log.debug("hit: " + state.getURI());
+            return ret;
+        } catch (Exception ex) {
+            log.warn("discarding cached " + state.getURI() + ": " + ex);
+            remove(name);
+            return null;
+        }
+    }
+
+    /**
+     * Store an observation document.
+     *
+     * @param uri observation URI
+     * @param accMetaChecksum accMetaChecksum of the observation (not stored if null)
+     * @param doc the document as received
+     */
+    void put(URI uri, URI accMetaChecksum, byte[] doc) {
+        if (accMetaChecksum == null || contains(uri, accMetaChecksum)) {
+            return;
+        }
+        File tmp = null;
+        try {
+            tmp = File.createTempFile("doc", ".tmp", dir);
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                out.write(doc);
+            }
+            store(tmp, uri, accMetaChecksum);
+            tmp = null;
+        } catch (Exception ex) {
+            log.warn("failed to cache " + uri + ": " + ex);
+        } finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Copy a document to the cache while it is read. The copy is stored when
+     * {@link Tee#commit(Observation)} is called after the document was parsed
+     * and removed by {@link Tee#discard()} otherwise.
+     *
+     * @param in the document stream
+     * @return stream to read the document from or null if a copy cannot be made
+     */
+    Tee tee(InputStream in) {
+        try {
+            return new Tee(in, File.createTempFile("doc", ".tmp", dir));
+        } catch (IOException ex) {
+            log.warn("failed to create temporary file in " + dir + ": " + ex);
+            return null;
+        }
+    }
+
+    private boolean contains(URI uri, URI accMetaChecksum) {
+        String name = getName(uri, accMetaChecksum);
+        synchronized (index) {
+            return index.containsKey(name);
+        }
+    }
+
+    private void store(File tmp, URI uri, URI accMetaChecksum) throws IOException {
+        String name = getName(uri, accMetaChecksum);
+        File f = new File(dir, name);
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        synchronized (index) {
+            Long prev = index.put(name, f.length());
+            if (prev != null) {
+                totalBytes -= prev;
+            }
+            totalBytes += f.length();
+            evict();
+        }
+    }
+
+    long getHits() {
+        synchronized (index) {
+            return hits;
+        }
+    }
+
+    long getMisses() {
+        synchronized (index) {
+            return misses;
+        }
+    }
+
+    private void remove(String name) {
+        synchronized (index) {
+            Long size = index.remove(name);
+            if (size != null) {
+                totalBytes -= size;
+            }
+        }
+        new File(dir, name).delete();
+    }
+
+    // caller must hold the index lock
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iter = index.entrySet().iterator();
+        while (totalBytes > maxBytes && iter.hasNext()) {
+            Map.Entry<String, Long> e = iter.next();
+            iter.remove();
+            totalBytes -= e.getValue();
+            new File(dir, e.getKey()).delete();
+            log.debug("evict: " + e.getKey());
+        }
+    }
+
+    // content address: hash of observation URI and accMetaChecksum
+    static String getName(URI uri, URI accMetaChecksum) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(uri.toASCIIString().getBytes("UTF-8"));
+            md.update((byte) ' ');
+            md.update(accMetaChecksum.toASCIIString().getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            sb.append(SUFFIX);
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | IOException ex) {
+            throw new RuntimeException("BUG: failed to create cache key", ex);
+        }
+    }
+
+    class Tee extends FilterInputStream {
+        private final File tmp;
+        private final OutputStream out;
+        private boolean done = false;
+        private boolean closed = false;
+        private boolean complete = false;
+
+        private Tee(InputStream in, File tmp) throws IOException {
+            super(in);
+            this.tmp = tmp;
+            this.out = new BufferedOutputStream(new FileOutputStream(tmp));
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                out.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                out.write(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // read so the copy is complete
+            byte[] buf = new byte[(int) Math.min(n, 8192L)];
+            long ret = 0L;
+            while (ret < n) {
+                int num = read(buf, 0, (int) Math.min(buf.length, n - ret));
+                if (num < 0) {
+                    break;
+                }
+                ret += num;
+            }
+            return ret;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * Copy the rest of the document and close the input. The XML parser
+         * usually closes its input when it is done, so the copy is completed here.
+         *
+         * @throws IOException failure to close the input
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            try {
+                if (!done) {
+                    drain();
+                }
+            } catch (IOException ex) {
+                log.debug("failed to copy the rest of " + tmp + ": " + ex);
+            } finally {
+                closed = true;
+                super.close();
+            }
+        }
+
+        private void drain() throws IOException {
+            byte[] buf = new byte[8192];
+            while (read(buf, 0, buf.length) >= 0) {
+                // copy
+            }
+            complete = true;
+        }
+
+        /**
+         * Copy the rest of the document and store it for the observation.
+         *
+         * @param obs the observation parsed from the document
+         */
+        void commit(Observation obs) {
+            if (done) {
+                return;
+            }
+            try {
+                if (!closed) {
+                    drain();
+                }
+                done = true;
+                out.close();
+                if (!complete) {
+                    log.debug("incomplete copy: " + obs.getURI());
+                } else if (obs.getAccMetaChecksum() != null) {
+                    store(tmp, obs.getURI().getURI(), obs.getAccMetaChecksum());
+                }
+            } catch (Exception ex) {
+                log.warn("failed to cache " + obs.getURI() + ": " + ex);
+            } finally {
+                discard();
+            }
+        }
+
+        /**
+         * Remove the copy if it was not stored.
+         */
+        void discard() {
+            done = true;
+            try {
+                out.close();
+            } catch (IOException ignore) {
+                log.debug("failed to close " + tmp + ": " + ignore);
+            }
+            tmp.delete();
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            return buf.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+}
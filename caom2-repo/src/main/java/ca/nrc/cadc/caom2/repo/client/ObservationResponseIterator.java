@@ -0,0 +1,197 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.repo.client;
+
+import ca.nrc.cadc.caom2.ObservationResponse;
+import ca.nrc.cadc.caom2.ObservationState;
+import ca.nrc.cadc.caom2.ObservationURI;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.security.auth.Subject;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Iterator that downloads observations with a shared executor. Observations are
+ * requested in batches of up to batchSize, at most maxInFlight batches are submitted
+ * ahead of the caller, and responses are returned in the order of the underlying
+ * observation list.
+ *
+ * @author agent
+ */
+class ObservationResponseIterator implements Iterator<ObservationResponse> {
+
+    private static final Logger log = Logger.getLogger(ObservationResponseIterator.class);
+
+    private final Iterator<ObservationState> states;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final Subject subject;
+    private final String baseURL;
+    private final RepoClient client;
+    private final int batchSize;
+    private final Map<ObservationURI, URI> localChecksums;
+
+    private final LinkedList<Future<List<ObservationResponse>>> inFlight = new LinkedList<>();
+    private Iterator<ObservationResponse> current = Collections.<ObservationResponse>emptyList().iterator();
+
+    ObservationResponseIterator(Iterator<ObservationState> states, ExecutorService executor, int maxInFlight,
+        Subject subject, String baseURL, RepoClient client, int batchSize, Map<ObservationURI, URI> localChecksums) {
+        this.states = states;
+        this.executor = executor;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.subject = subject;
+        this.baseURL = baseURL;
+        this.client = client;
+        this.batchSize = Math.max(1, batchSize);
+        this.localChecksums = localChecksums;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (current.hasNext()) {
+            return true;
+        }
+        fill();
+        return !inFlight.isEmpty();
+    }
+
+    @Override
+    public ObservationResponse next() {
+        try {
+            return nextResponse();
+        } catch (InterruptedException ex) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for observation", ex);
+        } catch (ExecutionException ex) {
+            cancel();
+            throw new RuntimeException("failed to get observation", ex.getCause());
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Wait for the next response in list order.
+     *
+     * @return next observation response
+     * @throws InterruptedException interrupted while waiting
+     * @throws ExecutionException the worker failed
+     */
+    ObservationResponse nextResponse() throws InterruptedException, ExecutionException {
+        while (!current.hasNext()) {
+            fill();
+            if (inFlight.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Future<List<ObservationResponse>> f = inFlight.removeFirst();
+            fill(); // keep the workers busy while we wait
+            current = f.get().iterator();
+        }
+        return current.next();
+    }
+
+    /**
+     * Cancel workers that were submitted but not returned.
+     */
+    void cancel() {
+        log.debug("cancel: " + inFlight.size() + " in flight");
+        for (Future<List<ObservationResponse>> f : inFlight) {
+            f.cancel(true);
+        }
+        inFlight.clear();
+    }
+
+    private void fill() {
+        while (inFlight.size() < maxInFlight && states.hasNext()) {
+            // one observation per request if the service cannot do more
+            int n = client.isBulkSupported() ? batchSize : 1;
+            List<ObservationState> batch = new ArrayList<>(n);
+            while (batch.size() < n && states.hasNext()) {
+                batch.add(states.next());
+            }
+            inFlight.add(executor.submit(new BulkWorker(batch, subject, baseURL, client, localChecksums)));
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.repo.client;
+
+import ca.nrc.cadc.auth.AuthenticationUtil;
+import ca.nrc.cadc.caom2.ObservationState;
+import ca.nrc.cadc.caom2.ObservationURI;
+
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import javax.security.auth.Subject;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Iterator over the observation list of a repo service. Pages are requested on
+ * demand; when a page is taken the request for the following page is submitted
+ * so it downloads while the caller processes the current one. Each page starts at
+ * the maxLastModified of the end of the previous page; observations at the boundary
+ * that were already returned are removed and the page size is increased by the
+ * number of such observations, so listings where many observations share the same
+ * maxLastModified make progress instead of stopping early.
+ *
+ * @author agent
+ */
+class ObservationStateIterator implements Iterator<ObservationState> {
+
+    private static final Logger log = Logger.getLogger(ObservationStateIterator.class);
+
+    private final RepoClient client;
+    private final String collection;
+    private final Date end;
+    private final Integer maxrec;
+    private final Subject subject;
+    private final boolean paged;
+
+    private int rec;
+    private int requested;
+    private int count = 0;
+    private Future<List<ObservationState>> nextPage;
+    private Iterator<ObservationState> curPage;
+    private Date boundary;
+    private Set<ObservationURI> boundaryURIs = new HashSet<>();
+
+    ObservationStateIterator(RepoClient client, String collection, Date start, Date end, Integer maxrec) {
+        this.client = client;
+        this.collection = collection;
+        this.end = end;
+        this.maxrec = maxrec;
+        this.subject = AuthenticationUtil.getCurrentSubject();
+        this.paged = (maxrec == null || maxrec > RepoClient.MAX_NUMBER);
+        this.rec = paged ? RepoClient.MAX_NUMBER : maxrec;
+        this.nextPage = submit(start);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while ((curPage == null || !curPage.hasNext()) && nextPage != null) {
+            curPage = takePage().iterator();
+        }
+        return curPage != null && curPage.hasNext();
+    }
+
+    @Override
+    public ObservationState next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return curPage.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private Future<List<ObservationState>> submit(final Date start) {
+        // boundary entries already returned come back at the start of the page:
+        // request enough rows to get up to rec new ones
+        final int maxRec = paged ? rec + boundaryURIs.size() : rec + 1;
+        this.requested = maxRec;
+        log.debug("submit: " + collection + " start=" + start + " maxRec=" + maxRec);
+        return client.getListExecutor().submit(new Callable<List<ObservationState>>() {
+            @Override
+            public List<ObservationState> call() throws Exception {
+                if (subject == null) {
+                    return client.getObservationPage(collection, start, end, maxRec);
+                }
+                return Subject.doAs(subject, new PrivilegedAction<List<ObservationState>>() {
+                    @Override
+                    public List<ObservationState> run() {
+                        return client.getObservationPage(collection, start, end, maxRec);
+                    }
+                });
+            }
+        });
+    }
+
+    private List<ObservationState> takePage() {
+        List<ObservationState> rows;
+        try {
+            rows = nextPage.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for observation list", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("failed to get observation list", cause);
+        } finally {
+            nextPage = null;
+        }
+
+        // a short page (before removing duplicates) is the end of the listing
+        boolean full = rows.size() >= requested;
+
+        List<ObservationState> page = new ArrayList<>(rows.size());
+        for (ObservationState os : rows) {
+            if (boundary == null || !boundary.equals(os.maxLastModified) || !boundaryURIs.contains(os.getURI())) {
+                page.add(os);
+            }
+        }
+        if (maxrec != null && count + page.size() > maxrec) {
+            page = page.subList(0, maxrec - count);
+        }
+        count += page.size();
+        log.debug("page: " + rows.size() + " new: " + page.size() + " total: " + count);
+
+        if (paged && full && !rows.isEmpty() && (maxrec == null || count < maxrec)) {
+            Date start = rows.get(rows.size() - 1).maxLastModified;
+            if (!start.equals(boundary)) {
+                boundary = start;
+                boundaryURIs.clear();
+            }
+            // when a whole page has the same maxLastModified the boundary set grows
+            // and so does the next request, so every page makes progress
+            for (ObservationState os : page) {
+                if (start.equals(os.maxLastModified)) {
+                    boundaryURIs.add(os.getURI());
+                }
+            }
+            if (maxrec != null && maxrec - count < rec) {
+                rec = maxrec - count;
+            }
+            nextPage = submit(start);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.repo.client;
+
+import ca.nrc.cadc.caom2.ObservationState;
+import ca.nrc.cadc.caom2.ObservationURI;
+import ca.nrc.cadc.date.DateUtil;
+import ca.nrc.cadc.net.HttpDownload;
+import ca.nrc.cadc.net.InputStreamWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Streaming parser for the tab-separated observation list returned by the repo
+ * service: collection, observationID, maxLastModified, and (optional) accMetaChecksum
+ * one observation per line. The response is read in one pass with a reusable
+ * buffer and ObservationState objects are created as each line completes.
+ *
+ * @author agent
+ */
+class ObservationStateListReader implements InputStreamWrapper {
+
+    private static final Logger log = Logger.getLogger(ObservationStateListReader.class);
+
+    private static final char SEPARATOR = '\t';
+    private static final char END_OF_LINE = '\n';
+    private static final int NUM_FIELDS = 4;
+
+    private final DateFormat df;
+    private HttpDownload download;
+    private final List<ObservationState> states = new ArrayList<>();
+
+    private final char[] buf = new char[8192];
+    private final StringBuilder field = new StringBuilder(128);
+    private final String[] fields = new String[NUM_FIELDS];
+    private int numFields = 0;
+    private int lineNumber = 0;
+
+    ObservationStateListReader(DateFormat df) {
+        this.df = df;
+    }
+
+    /**
+     * @param download the download this reader is used with (for the response Content-Encoding)
+     */
+    void setDownload(HttpDownload download) {
+        this.download = download;
+    }
+
+    /**
+     * @return the observation states in the order they were read
+     */
+    List<ObservationState> getStates() {
+        return states;
+    }
+
+    @Override
+    public void read(InputStream in) throws IOException {
+        Reader r = new InputStreamReader(ContentEncoding.decode(in, download), "UTF-8");
+        int num = r.read(buf);
+        while (num != -1) {
+            for (int i = 0; i < num; i++) {
+                char c = buf[i];
+                if (c == SEPARATOR) {
+                    endField();
+                } else if (c == END_OF_LINE) {
+                    endField();
+                    endLine();
+                } else if (c != ' ' && c != '\r') {
+                    field.append(c);
+                }
+            }
+            num = r.read(buf);
+        }
+        if (field.length() > 0 || numFields > 0) {
+            // last line without end of line
+            endField();
+            endLine();
+        }
+        log.debug("read " + states.size() + " observation states from " + lineNumber + " lines");
+    }
+
+    private void endField() {
+        if (numFields < NUM_FIELDS) {
+            fields[numFields] = field.toString();
+        }
+        numFields++;
+        field.setLength(0);
+    }
+
+    private void endLine() throws IOException {
+        lineNumber++;
+        try {
+            if (numFields >= 3 && fields[0].length() > 0 && fields[1].length() > 0) {
+                ObservationState os = new ObservationState(new ObservationURI(fields[0], fields[1]));
+                os.maxLastModified = DateUtil.flexToDate(fields[2], df);
+                if (numFields > 3 && fields[3].length() > 0) {
+                    os.accMetaChecksum = new URI(fields[3]);
+                }
+                states.add(os);
+            } else if (numFields > 1) {
+                log.debug("skip line " + lineNumber + ": found " + numFields + " fields");
+            }
+        } catch (ParseException | URISyntaxException | IllegalArgumentException ex) {
+            throw new IOException("failed to parse observation list line " + lineNumber + ": " + ex.getMessage(), ex);
+        } finally {
+            numFields = 0;
+            for (int i = 0; i < NUM_FIELDS; i++) {
+                fields[i] = null;
+            }
+        }
+    }
+}
@@ -79,26 +79,28 @@ import ca.nrc.cadc.net.HttpDownload;
 import ca.nrc.cadc.reg.Standards;
 import ca.nrc.cadc.reg.client.RegistryClient;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URL;
 import java.security.AccessControlException;
 import java.text.DateFormat;
-import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.security.auth.Subject;
 
@@ -109,14 +111,23 @@ public class RepoClient {
 
     private static final Logger log = Logger.getLogger(RepoClient.class);
     private static final URI standardID = Standards.CAOM2REPO_OBS_23;
-    private static final Integer MAX_NUMBER = 3000;
+    static final Integer MAX_NUMBER = 3000;
+    private static final long IDLE_TIMEOUT_SEC = 60L;
+    static final int BULK_SIZE = 50;
 
-    private final DateFormat df = DateUtil.getDateFormat(DateUtil.IVOA_DATE_FORMAT, DateUtil.UTC);
+    // service URL lookups: resourceID + standardID + authMethod -> URL
+    static final long SERVICE_URL_TTL = 10 * 60 * 1000L;
+    private static final ConcurrentMap<String, CachedURL> SERVICE_URLS = new ConcurrentHashMap<>();
 
     private URI resourceID = null;
     private URL baseServiceURL = null;
+    private String serviceKey = null;
 
     private int nthreads = 1;
+    private ExecutorService listExecutor;
+    private ExecutorService workerExecutor;
+    private volatile boolean bulkSupported = true;
+    private DocumentCache cache;
     private Comparator<ObservationState> maxLasModifiedComparator = new Comparator<ObservationState>() {
         @Override
         public int compare(ObservationState o1, ObservationState o2) {
@@ -125,7 +136,10 @@ public class RepoClient {
     };
 
     /**
-     * Create new CAOM RepoClient.
+     * Create new CAOM RepoClient. HttpURLConnection keeps up to 5 idle persistent
+     * connections per host (system property http.maxConnections); applications
+     * that use more threads should set that property at startup so connections
+     * are reused.
      *
      * @param resourceID the service identifier
      * @param nthreads   number of threads to use when getting list of observations
@@ -136,183 +150,304 @@ public class RepoClient {
     }
 
     private void init() {
-        RegistryClient rc = new RegistryClient();
-
         Subject s = AuthenticationUtil.getCurrentSubject();
         AuthMethod meth = AuthenticationUtil.getAuthMethodFromCredentials(s);
         if (meth == null) {
             meth = AuthMethod.ANON;
         }
-        this.baseServiceURL = rc.getServiceURL(this.resourceID, standardID, meth);
-        if (baseServiceURL == null) {
-            throw new RuntimeException("not found: " + resourceID + " + " + standardID + " + " + meth);
+        String key = resourceID + " + " + standardID + " + " + meth;
+
+        long now = System.currentTimeMillis();
+        CachedURL cur = SERVICE_URLS.get(key);
+        if (cur == null || cur.expires < now) {
+            RegistryClient rc = new RegistryClient();
+            URL url = rc.getServiceURL(this.resourceID, standardID, meth);
+            if (url == null) {
+                SERVICE_URLS.remove(key);
+                throw new RuntimeException("not found: " + key);
+            }
+            cur = new CachedURL(url, now + SERVICE_URL_TTL);
+            SERVICE_URLS.put(key, cur);
+            log.debug("service URL lookup: " + key);
         }
+        this.baseServiceURL = cur.url;
+        this.serviceKey = key;
 
         log.debug("service URL: " + baseServiceURL.toString());
         log.debug("AuthMethod:  " + meth);
     }
 
-    public List<ObservationState> getObservationList(String collection, Date start, Date end, Integer maxrec) throws AccessControlException {
-        init();
+    // drop the cached service URL so the next call does a registry lookup;
+    // called when a request to the service fails in case the service moved
+    void invalidateServiceURL() {
+        if (serviceKey != null) {
+            log.debug("service URL invalidated: " + serviceKey);
+            SERVICE_URLS.remove(serviceKey);
+        }
+    }
 
-        List<ObservationState> accList = new ArrayList<>();
-        List<ObservationState> partialList = null;
-        boolean tooBigRequest = maxrec == null || maxrec > MAX_NUMBER;
+    private static class CachedURL {
+        final URL url;
+        final long expires;
 
-        Integer rec = maxrec;
-        Integer recCounter;
-        if (tooBigRequest) {
-            rec = MAX_NUMBER;
+        CachedURL(URL url, long expires) {
+            this.url = url;
+            this.expires = expires;
         }
-        // Use HttpDownload to make the http GET calls (because it handles a lot
-        // of the
-        // authentication stuff)
-        boolean go = true;
-        String surlCommon = baseServiceURL.toExternalForm() + File.separator + collection;
-
-        while (go) {
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            if (!tooBigRequest) {
-                go = false;// only one go
-            }
-            String surl = surlCommon;
-            surl = surl + "?maxRec=" + (rec + 1);
-            if (start != null) {
-                surl = surl + "&start=" + df.format(start);
-            }
-            if (end != null) {
-                surl = surl + "&end=" + df.format(end);
-            }
-            URL url;
-            log.debug("URL: " + surl);
-            try {
-                url = new URL(surl);
-                HttpDownload get = new HttpDownload(url, bos);
-                get.setFollowRedirects(true);
-
-                get.run();
-                int responseCode = get.getResponseCode();
-                log.debug("RESPONSE CODE: '" + responseCode + "'");
-                /*
-                if (responseCode == 302) // redirected url
-                {
-                    url = get.getRedirectURL();
-                    log.debug("REDIRECTED URL: " + url);
-                    bos = new ByteArrayOutputStream();
-                    get = new HttpDownload(url, bos);
-                    responseCode = get.getResponseCode();
-                    log.debug("RESPONSE CODE (REDIRECTED URL): '" + responseCode + "'");
+    }
 
-                }
-                */
+    /**
+     * Get the list of observations. This reads all pages of the listing
+     * into memory; use getObservationIterator to process large listings.
+     *
+     * @param collection collection name
+     * @param start minimum maxLastModified (may be null)
+     * @param end maximum maxLastModified (may be null)
+     * @param maxrec maximum number of observations (may be null)
+     * @return list of observation states ordered by maxLastModified
+     * @throws AccessControlException permission denied
+     */
+    public List<ObservationState> getObservationList(String collection, Date start, Date end, Integer maxrec) throws AccessControlException {
+        List<ObservationState> ret = new ArrayList<>();
+        Iterator<ObservationState> iter = getObservationIterator(collection, start, end, maxrec);
+        while (iter.hasNext()) {
+            ret.add(iter.next());
+        }
+        return ret;
+    }
 
-                if (get.getThrowable() != null) {
-                    if (get.getThrowable() instanceof AccessControlException) {
-                        throw (AccessControlException) get.getThrowable();
-                    }
-                    throw new RuntimeException("failed to get observation list", get.getThrowable());
-                }
-            } catch (MalformedURLException e) {
-                throw new RuntimeException("BUG: failed to generate observation list url", e);
-            }
+    /**
+     * Get an iterator over the list of observations. Pages of up to 3000 observations
+     * are requested from the service as the caller consumes the iterator; the next
+     * page is fetched in the background while the current one is processed. The
+     * entries at the boundary between pages (same maxLastModified) are only returned
+     * once.
+     *
+     * @param collection collection name
+     * @param start minimum maxLastModified (may be null)
+     * @param end maximum maxLastModified (may be null)
+     * @param maxrec maximum number of observations (may be null)
+     * @return iterator over observation states ordered by maxLastModified
+     */
+    public Iterator<ObservationState> getObservationIterator(String collection, Date start, Date end, Integer maxrec) {
+        init();
+        return new ObservationStateIterator(this, collection, start, end, maxrec);
+    }
 
-            try {
-                // log.debug("RESPONSE = '" + bos.toString() + "'");
-                partialList = transformByteArrayOutputStreamIntoListOfObservationState(bos, df, '\t', '\n');
-                if (partialList != null && !partialList.isEmpty() && !accList.isEmpty() && accList.get(accList.size() - 1).equals(partialList.get(0))) {
-                    partialList.remove(0);
-                }
+    // fetch one page of the observation list
+    List<ObservationState> getObservationPage(String collection, Date start, Date end, int maxRec) throws AccessControlException {
+        DateFormat df = DateUtil.getDateFormat(DateUtil.IVOA_DATE_FORMAT, DateUtil.UTC);
+        ObservationStateListReader reader = new ObservationStateListReader(df);
 
-                if (partialList != null) {
-                    accList.addAll(partialList);
-                    log.debug("adding " + partialList.size() + " elements to accList. Now there are " + accList.size());
+        StringBuilder surl = new StringBuilder();
+        surl.append(baseServiceURL.toExternalForm()).append(File.separator).append(collection);
+        surl.append("?maxRec=").append(maxRec);
+        if (start != null) {
+            surl.append("&start=").append(df.format(start));
+        }
+        if (end != null) {
+            surl.append("&end=").append(df.format(end));
+        }
+        log.debug("URL: " + surl);
+        try {
+            // Use HttpDownload to make the http GET calls (because it handles a lot
+            // of the authentication stuff)
+            URL url = new URL(surl.toString());
+            HttpDownload get = new HttpDownload(url, reader);
+            reader.setDownload(get);
+            get.setFollowRedirects(true);
+            ContentEncoding.acceptGzip(get);
+
+            get.run();
+            int responseCode = get.getResponseCode();
+            log.debug("RESPONSE CODE: '" + responseCode + "'");
+
+            if (get.getThrowable() != null) {
+                if (get.getThrowable() instanceof AccessControlException) {
+                    throw (AccessControlException) get.getThrowable();
                 }
-
-                bos.close();
-            } catch (ParseException | URISyntaxException | IOException e) {
-                throw new RuntimeException("Unable to list of ObservationState from " + bos.toString(), e);
-            }
-
-            if (accList.size() > 0) {
-                start = accList.get(accList.size() - 1).maxLastModified;
+                invalidateServiceURL();
+                throw new RuntimeException("failed to get observation list", get.getThrowable());
             }
+        } catch (MalformedURLException e) {
+            throw new RuntimeException("BUG: failed to generate observation list url", e);
+        }
 
-            recCounter = accList.size();
-            if (maxrec != null && maxrec - recCounter > 0 && maxrec - recCounter < rec) {
-                rec = maxrec - recCounter;
-            }
-            log.debug("dynamic batch (rec): " + rec);
-            log.debug("counter (recCounter): " + recCounter);
-            log.debug("maxrec: " + maxrec);
-            // log.debug("start: " + start.toString());
-            // log.debug("end: " + end.toString());
+        List<ObservationState> ret = reader.getStates();
+        Collections.sort(ret, maxLasModifiedComparator);
+        return ret;
+    }
 
-            if (partialList != null) {
-                log.debug("partialList.size(): " + partialList.size());
+    // executor used to prefetch observation list pages
+    synchronized ExecutorService getListExecutor() {
+        if (listExecutor == null) {
+            listExecutor = createExecutor(1, "list");
+        }
+        return listExecutor;
+    }
 
-                if (partialList.size() < rec || (end != null && start != null && start.equals(end))) {
-                    log.debug("************** go false");
+    // executor used to get observation documents: kept across calls
+    synchronized ExecutorService getWorkerExecutor() {
+        if (workerExecutor == null) {
+            workerExecutor = createExecutor(nthreads, "worker");
+        }
+        return workerExecutor;
+    }
 
-                    go = false;
+    // fixed size pool of daemon threads that are released when idle so
+    // the client does not need an explicit shutdown
+    private ExecutorService createExecutor(int size, final String name) {
+        final String prefix = RepoClient.class.getSimpleName() + "-" + name + "-";
+        ThreadPoolExecutor ret = new ThreadPoolExecutor(size, size, IDLE_TIMEOUT_SEC, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger num = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, prefix + num.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
                 }
-            }
-        }
-        return partialList;
+            });
+        ret.allowCoreThreadTimeOut(true);
+        return ret;
     }
 
-    public List<ObservationResponse> getList(String collection, Date startDate, Date end, Integer numberOfObservations)
-        throws InterruptedException, ExecutionException {
-        init();
+    /**
+     * Keep a local copy of the observation documents that are downloaded, up to the
+     * specified total size with the least recently used documents removed first.
+     * Documents are stored by URI and accMetaChecksum and a local copy is used when
+     * the observation list shows that the observation has not changed, so repeated
+     * harvest or validation passes only download modified observations.
+     *
+     * @param dir cache directory (created if necessary)
+     * @param maxBytes maximum size of the cache in bytes
+     */
+    public void setCache(File dir, long maxBytes) {
+        this.cache = new DocumentCache(dir, maxBytes);
+    }
 
-        // startDate = null;
-        // end = df.parse("2017-06-20T09:03:15.360");
-        List<ObservationResponse> list = new ArrayList<>();
+    DocumentCache getCache() {
+        return cache;
+    }
 
-        List<ObservationState> stateList = getObservationList(collection, startDate, end, numberOfObservations);
+    // false once the service failed to return a multiple observation document
+    boolean isBulkSupported() {
+        return bulkSupported;
+    }
 
-        // Create tasks for each file
-        List<Callable<ObservationResponse>> tasks = new ArrayList<>();
+    void setBulkSupported(boolean bulkSupported) {
+        this.bulkSupported = bulkSupported;
+    }
 
-        // the current subject usually gets propagated into a thread pool, but
-        // gets attached
-        // when the thread is created so we explicitly pass it it and do another
-        // Subject.doAs in
-        // case
-        // thread pool management is changed
-        Subject subjectForWorkerThread = AuthenticationUtil.getCurrentSubject();
-        for (ObservationState os : stateList) {
-            tasks.add(new Worker(os, subjectForWorkerThread, baseServiceURL.toExternalForm()));
-        }
+    /**
+     * Get observations. The observation list is read lazily and documents are downloaded
+     * by the worker threads in batches of up to 50 observations per request (one per
+     * request if the service does not support that) with at most 2 * nthreads requests
+     * in flight. Responses are
+     * returned in the order of the list (maxLastModified) as soon as each one (and those
+     * before it) is complete. Failures to get the observation list or to execute a worker
+     * are thrown as RuntimeException from the iterator.
+     *
+     * @param collection collection name
+     * @param start minimum maxLastModified (may be null)
+     * @param end maximum maxLastModified (may be null)
+     * @param maxrec maximum number of observations (may be null)
+     * @return iterator over observation responses
+     */
+    public Iterator<ObservationResponse> getIterator(String collection, Date start, Date end, Integer maxrec) {
+        return getIterator(collection, start, end, maxrec, null);
+    }
 
-        ExecutorService taskExecutor = null;
-        try {
-            // Run tasks in a fixed thread pool
-            taskExecutor = Executors.newFixedThreadPool(nthreads);
-            List<Future<ObservationResponse>> futures;
+    /**
+     * Get observations that differ from local copies. This is the same as
+     * getIterator(collection, start, end, maxrec) except that observations with a
+     * local copy that matches the accMetaChecksum in the observation list are not
+     * requested, and the response has neither an observation nor an error. If the
+     * list has no accMetaChecksum, observations with a local copy are requested
+     * with If-None-Match and the response is the same if the service reports the
+     * observation is not modified.
+     *
+     * @param collection collection name
+     * @param start minimum maxLastModified (may be null)
+     * @param end maximum maxLastModified (may be null)
+     * @param maxrec maximum number of observations (may be null)
+     * @param localChecksums accMetaChecksum of local copies (may be null)
+     * @return iterator over observation responses
+     */
+    public Iterator<ObservationResponse> getIterator(String collection, Date start, Date end, Integer maxrec,
+        Map<ObservationURI, URI> localChecksums) {
+        Iterator<ObservationState> states = getObservationIterator(collection, start, end, maxrec);
 
-            futures = taskExecutor.invokeAll(tasks);
+        // the current subject usually gets propagated into a thread pool, but
+        // gets attached when the thread is created so we explicitly pass it
+        // and do another Subject.doAs in case thread pool management is changed
+        Subject subjectForWorkerThread = AuthenticationUtil.getCurrentSubject();
+        return new ObservationResponseIterator(states, getWorkerExecutor(), 2 * nthreads,
+            subjectForWorkerThread, baseServiceURL.toExternalForm(), this, BULK_SIZE, localChecksums);
+    }
 
-            for (Future<ObservationResponse> f : futures) {
-                ObservationResponse res = null;
-                res = f.get();
+    public List<ObservationResponse> getList(String collection, Date startDate, Date end, Integer numberOfObservations)
+        throws InterruptedException, ExecutionException {
+        return getList(collection, startDate, end, numberOfObservations, null);
+    }
 
-                if (f.isDone()) {
-                    list.add(res);
-                }
+    /**
+     * Get observations that differ from local copies (see getIterator).
+     *
+     * @param collection collection name
+     * @param startDate minimum maxLastModified (may be null)
+     * @param end maximum maxLastModified (may be null)
+     * @param numberOfObservations maximum number of observations (may be null)
+     * @param localChecksums accMetaChecksum of local copies (may be null)
+     * @return list of observation responses
+     * @throws InterruptedException interrupted while waiting
+     * @throws ExecutionException a worker failed
+     */
+    public List<ObservationResponse> getList(String collection, Date startDate, Date end, Integer numberOfObservations,
+        Map<ObservationURI, URI> localChecksums) throws InterruptedException, ExecutionException {
+        List<ObservationResponse> list = new ArrayList<>();
+        ObservationResponseIterator iter = (ObservationResponseIterator) getIterator(collection, startDate, end,
+            numberOfObservations, localChecksums);
+        boolean ok = false;
+        try {
+            while (iter.hasNext()) {
+                list.add(iter.nextResponse());
             }
+            ok = true;
         } catch (InterruptedException | ExecutionException e) {
-            log.error("Error when executing thread in ThreadPool: " + e.getMessage() + " caused by: " + e.getCause().toString());
+            log.error("Error when executing thread in ThreadPool: " + e.getMessage() + " caused by: " + e.getCause());
             throw e;
         } finally {
-            if (taskExecutor != null) {
-                taskExecutor.shutdown();
+            if (!ok) {
+                iter.cancel();
             }
         }
 
         return list;
     }
 
+    /**
+     * Get an observation. Transient failures are retried.
+     *
+     * @param uri observation to get
+     * @return observation response or null if the observation does not exist
+     */
     public ObservationResponse get(ObservationURI uri) {
+        return get(uri, null);
+    }
+
+    /**
+     * Get an observation unless the local copy is current. The service compares the
+     * accMetaChecksum of the local copy with the current one and only sends the
+     * observation if they differ. If the local copy is current, the response has
+     * neither an observation nor an error.
+     *
+     * @param uri observation to get
+     * @param accMetaChecksum accMetaChecksum of the local copy (may be null)
+     * @return observation response or null if the observation does not exist
+     */
+    public ObservationResponse get(ObservationURI uri, URI accMetaChecksum) {
         init();
         if (uri == null) {
             throw new IllegalArgumentException("uri cannot be null");
@@ -323,7 +458,14 @@ public class RepoClient {
         // see comment above in getList
         Subject subjectForWorkerThread = AuthenticationUtil.getCurrentSubject();
         Worker wt = new Worker(os, subjectForWorkerThread, baseServiceURL.toExternalForm());
-        return wt.getObservation();
+        wt.setCache(cache);
+        wt.setClient(this);
+        wt.setIfNoneMatch(accMetaChecksum);
+        ObservationResponse ret = wt.getObservation();
+        if (wt.isNotFound()) {
+            return null;
+        }
+        return ret;
     }
 
     public ObservationResponse get(String collection, URI uri, Date start) {
@@ -335,9 +477,10 @@ public class RepoClient {
 
         log.debug("******************* getObservationList(collection, start, null, null) " + collection);
 
-        List<ObservationState> list = getObservationList(collection, start, null, null);
+        Iterator<ObservationState> iter = getObservationIterator(collection, start, null, null);
         ObservationState obsState = null;
-        for (ObservationState os : list) {
+        while (iter.hasNext()) {
+            ObservationState os = iter.next();
             if (!os.getURI().getURI().equals(uri)) {
                 continue;
             }
@@ -351,106 +494,11 @@ public class RepoClient {
             // see comment above in getList
             Subject subjectForWorkerThread = AuthenticationUtil.getCurrentSubject();
             Worker wt = new Worker(obsState, subjectForWorkerThread, baseServiceURL.toExternalForm());
+            wt.setCache(cache);
+            wt.setClient(this);
             return wt.getObservation();
         } else {
             return null;
         }
     }
-
-    private List<ObservationState> transformByteArrayOutputStreamIntoListOfObservationState(final ByteArrayOutputStream bos, DateFormat sdf, char separator,
-                                                                                            char endOfLine)
-
-        throws ParseException, IOException, URISyntaxException {
-        init();
-
-        List<ObservationState> list = new ArrayList<>();
-
-        String id = null;
-        String sdate;
-        Date date = null;
-        String collection = null;
-        String md5;
-        String aux = "";
-
-        boolean readingDate = false;
-        boolean readingCollection = true;
-        boolean readingId = false;
-
-        for (int i = 0; i < bos.toString().length(); i++) {
-            char c = bos.toString().charAt(i);
-
-            if (c != ' ' && c != separator && c != endOfLine) {
-                aux += c;
-            } else if (c == separator) {
-                if (readingCollection) {
-                    collection = aux;
-                    // log.debug("*************** collection: " + collection);
-                    readingCollection = false;
-                    readingId = true;
-                    readingDate = false;
-                    aux = "";
-                } else if (readingId) {
-                    id = aux;
-                    // log.debug("*************** id: " + id);
-                    readingCollection = false;
-                    readingId = false;
-                    readingDate = true;
-                    aux = "";
-                } else if (readingDate) {
-                    sdate = aux;
-                    // log.debug("*************** sdate: " + sdate);
-                    date = DateUtil.flexToDate(sdate, sdf);
-
-                    readingCollection = false;
-                    readingId = false;
-                    readingDate = false;
-                    aux = "";
-                }
-
-            } else if (c == ' ') {
-                if (readingDate) {
-                    sdate = aux;
-                    // log.debug("*************** sdate: " + sdate);
-                    date = DateUtil.flexToDate(sdate, sdf);
-
-                    readingCollection = false;
-                    readingId = false;
-                    readingDate = false;
-                    aux = "";
-                }
-            } else if (c == endOfLine) {
-                if (id == null || collection == null) {
-                    continue;
-                }
-
-                ObservationState os = new ObservationState(new ObservationURI(collection, id));
-
-                if (date == null) {
-                    sdate = aux;
-                    date = DateUtil.flexToDate(sdate, sdf);
-                }
-
-                os.maxLastModified = date;
-
-                md5 = aux;
-                aux = "";
-                // log.debug("*************** md5: " + md5);
-                if (!md5.equals("")) {
-                    os.accMetaChecksum = new URI(md5);
-                }
-
-                // if (os.maxLastModified == null)
-                // {
-                // log.debug("*************** NO DATE");
-                // System.exit(1);
-                // }
-                list.add(os);
-                readingCollection = true;
-                readingId = false;
-            }
-        }
-        Collections.sort(list, maxLasModifiedComparator);
-        return list;
-
-    }
 }
\ No newline at end of file
@@ -70,18 +70,30 @@
 package ca.nrc.cadc.caom2.repo.client;
 
 import ca.nrc.cadc.auth.RunnableAction;
+import ca.nrc.cadc.caom2.Observation;
 import ca.nrc.cadc.caom2.ObservationResponse;
 import ca.nrc.cadc.caom2.ObservationState;
+import ca.nrc.cadc.caom2.binary.BinaryObservationReader;
+import ca.nrc.cadc.caom2.binary.BinaryObservationWriter;
 import ca.nrc.cadc.caom2.xml.ObservationParsingException;
 import ca.nrc.cadc.caom2.xml.ObservationReader;
 import ca.nrc.cadc.net.HttpDownload;
+import ca.nrc.cadc.net.InputStreamWrapper;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
 import javax.security.auth.Subject;
 
 import org.apache.log4j.Logger;
@@ -90,9 +102,39 @@ public class Worker implements Callable<ObservationResponse> {
 
     private static final Logger log = Logger.getLogger(Worker.class);
 
+    // must match the repo service GetAction
+    static final String CAOM_MIMETYPE = "text/x-caom+xml";
+    static final String CAOM_BINARY_MIMETYPE = BinaryObservationWriter.CONTENT_TYPE;
+
+    static final String ACCEPT = "Accept";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String RETRY_AFTER = "Retry-After";
+    private static final int NOT_MODIFIED = 304;
+    private static final int NOT_FOUND = 404;
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    static final int MAX_RETRIES = 3;
+    static final long RETRY_DELAY = 1000L;
+    static final long MAX_RETRY_DELAY = 16000L;
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    // readers are not thread safe but are expensive to create (schema setup): one per thread
+    private static final ThreadLocal<ObservationReader> READER = new ThreadLocal<ObservationReader>() {
+        @Override
+        protected ObservationReader initialValue() {
+            return new ObservationReader();
+        }
+    };
+
+    private static final BinaryObservationReader BINARY_READER = new BinaryObservationReader();
+
     private ObservationState state = null;
     private Subject subject = null;
     private String baseHTTPURL = null;
+    private URI ifNoneMatch = null;
+    private boolean notFound = false;
+    private DocumentCache cache = null;
+    private RepoClient client = null;
 
     public Worker(ObservationState state, Subject subject, String url) {
         this.state = state;
@@ -100,55 +142,179 @@ public class Worker implements Callable<ObservationResponse> {
         this.baseHTTPURL = url;
     }
 
+    /**
+     * Only get the observation if it differs from a local copy. If the service
+     * reports that the observation is not modified, the response has neither an
+     * observation nor an error.
+     *
+     * @param accMetaChecksum accMetaChecksum of the local copy (may be null)
+     */
+    public void setIfNoneMatch(URI accMetaChecksum) {
+        this.ifNoneMatch = accMetaChecksum;
+    }
+
+    // get documents from and store them in the cache
+    void setCache(DocumentCache cache) {
+        this.cache = cache;
+    }
+
+    // drop the cached service URL of the client when the service cannot be reached
+    void setClient(RepoClient client) {
+        this.client = client;
+    }
+
     @Override
     public ObservationResponse call() throws Exception {
         return getObservation();
     }
 
     public ObservationResponse getObservation() {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        return getObservation(getURL());
+    }
+
+    public ObservationResponse getObservation(URI uri) {
+        URL url = getURL();
+        log.info("URL: " + url);
+        return getObservation(url);
+    }
+
+    private URL getURL() {
         String surl = baseHTTPURL + File.separator + state.getURI().getURI().getSchemeSpecificPart();
-        final URL url;
         try {
-            url = new URL(surl);
+            return new URL(surl);
         } catch (MalformedURLException e) {
             throw new RuntimeException("Unable to create URL object for " + surl);
         }
-        HttpDownload get = new HttpDownload(url, bos);
-
-        if (subject != null) {
-            Subject.doAs(subject, new RunnableAction(get));
+    }
 
-        } else {
-            get.run();
+    private ObservationResponse getObservation(URL url) {
+        if (cache != null) {
+            Observation cached = cache.get(state);
+            if (cached != null) {
+                ObservationResponse ret = new ObservationResponse(state);
+                ret.observation = cached;
+                return ret;
+            }
         }
 
-        // TODO: need to check get.getResponseCode() and get.getThrowable() for any failure to get the document
-        // specifically: 404 if the observation does not/no longer exists is important to distinguish and handle
-        ObservationReader obsReader = new ObservationReader();
-        ObservationResponse wr = new ObservationResponse(state);
+        String oid = state.getURI().getObservationID();
+        CircuitBreaker breaker = CircuitBreaker.forHost(url.getHost());
+        ObservationResponse wr = null;
+        HttpDownload get = null;
+        boolean unavailable = false;
+        for (int attempt = 0; ; attempt++) {
+            if (!breaker.allowRequest()) {
+                wr = new ObservationResponse(state);
+                wr.error = new IllegalStateException("Unable to create Observation object for id " + oid
+                    + ": too many failures, not calling " + url.getHost());
+                return wr;
+            }
 
-        try {
-            // log.info("********************* bos:" + bos.toString());
-            wr.observation = obsReader.read(bos.toString());
-        } catch (Exception e) {
-            String oid = state.getURI().getObservationID();
-            wr.error = new IllegalStateException("Unable to create Observation object for id " + oid + ": " + e.getMessage());
+            wr = new ObservationResponse(state);
+            get = download(url, wr);
+            int code = get.getResponseCode();
+
+            if (ifNoneMatch != null && code == NOT_MODIFIED) {
+                breaker.success();
+                log.debug("not modified: " + state.getURI());
+                state.accMetaChecksum = ifNoneMatch;
+                return wr;
+            }
+            if (wr.observation != null) {
+                breaker.success();
+                return wr;
+            }
+            if (code == NOT_FOUND) {
+                // observation does not or no longer exists: not a failure of the service
+                breaker.success();
+                this.notFound = true;
+                wr.error = new IllegalStateException("Unable to create Observation object for id " + oid + ": not found");
+                return wr;
+            }
+
+            // connection failure, server error, or failure reading the response: retry
+            // busy (429): retry but it is not a failure of the service
+            // other client errors (auth) and invalid documents: fail now
+            boolean busy = code == TOO_MANY_REQUESTS;
+            unavailable = code <= 0 || code >= 500;
+            boolean failed = unavailable || (code == 200 && wr.error == null && get.getThrowable() != null);
+            if (failed) {
+                breaker.failure();
+            } else if (!busy) {
+                breaker.success();
+            }
+            if (!(busy || failed) || attempt >= MAX_RETRIES) {
+                break;
+            }
+
+            long dt = getRetryDelay(attempt);
+            if (busy) {
+                dt = getRetryDelay(attempt, get.getResponseHeader(RETRY_AFTER));
+            }
+            log.warn("retry " + (attempt + 1) + "/" + MAX_RETRIES + " in " + dt + "ms: " + url + " code: " + code
+                + " cause: " + get.getThrowable());
+            try {
+                Thread.sleep(dt);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (unavailable && client != null) {
+            // connection refused or server error after all retries: service may have moved
+            client.invalidateServiceURL();
+        }
+        if (wr.observation == null && wr.error == null) {
+            String msg = "no document";
+            if (get.getThrowable() != null) {
+                msg = get.getThrowable().getMessage();
+            }
+            wr.error = new IllegalStateException("Unable to create Observation object for id " + oid + ": " + msg);
         }
         return wr;
     }
 
-    public ObservationResponse getObservation(URI uri) {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        String surl = baseHTTPURL + File.separator + state.getURI().getURI().getSchemeSpecificPart();
-        log.info("URL: " + surl);
-        URL url = null;
+    // exponential backoff with jitter: [d/2, d) with d = RETRY_DELAY * 2^attempt
+    static long getRetryDelay(int attempt) {
+        long d = Math.min(MAX_RETRY_DELAY, RETRY_DELAY << attempt);
+        return d / 2 + ThreadLocalRandom.current().nextLong(d / 2);
+    }
+
+    // delay requested by the service (Retry-After: seconds or HTTP-date) capped at
+    // MAX_RETRY_DELAY; exponential backoff if there is no usable value
+    static long getRetryDelay(int attempt, String retryAfter) {
+        if (retryAfter == null) {
+            return getRetryDelay(attempt);
+        }
+        String val = retryAfter.trim();
+        long dt;
         try {
-            url = new URL(surl);
-        } catch (MalformedURLException e) {
-            throw new RuntimeException("Unable to create URL object for " + surl);
+            dt = Long.parseLong(val) * 1000L;
+        } catch (NumberFormatException ex) {
+            try {
+                DateFormat df = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+                df.setTimeZone(TimeZone.getTimeZone("GMT"));
+                dt = df.parse(val).getTime() - System.currentTimeMillis();
+            } catch (ParseException pex) {
+                log.debug("invalid " + RETRY_AFTER + ": " + retryAfter);
+                return getRetryDelay(attempt);
+            }
+        }
+        return Math.max(0L, Math.min(MAX_RETRY_DELAY, dt));
+    }
+
+    private HttpDownload download(URL url, ObservationResponse wr) {
+        // parse directly from the response stream
+        ObservationStreamReader osr = new ObservationStreamReader(wr);
+        HttpDownload get = new HttpDownload(url, osr);
+        osr.download = get;
+        ContentEncoding.acceptGzip(get);
+        // older services ignore Accept and send XML
+        get.setRequestProperty(ACCEPT, CAOM_BINARY_MIMETYPE + ", " + CAOM_MIMETYPE + ";q=0.5");
+        if (ifNoneMatch != null) {
+            get.setRequestProperty(IF_NONE_MATCH, "W/\"" + ifNoneMatch.toASCIIString() + "\"");
         }
-        HttpDownload get = new HttpDownload(url, bos);
 
         if (subject != null) {
             Subject.doAs(subject, new RunnableAction(get));
@@ -156,17 +322,64 @@ public class Worker implements Callable<ObservationResponse> {
         } else {
             get.run();
         }
+        return get;
+    }
 
-        ObservationReader obsReader = new ObservationReader();
-        ObservationResponse wr = new ObservationResponse(state);
-
-        try {
-            wr.observation = obsReader.read(bos.toString());
-        } catch (ObservationParsingException e) {
-            String oid = state.getURI().getObservationID();
-            wr.error = new IllegalStateException("Unable to create Observation object for id " + oid + ": " + e.getMessage());
+    // true if the media type of the Content-Type is the specified one
+    static boolean isContentType(String contentType, String mediaType) {
+        if (contentType == null) {
+            return false;
         }
-        return wr;
+        int i = contentType.indexOf(';');
+        if (i >= 0) {
+            contentType = contentType.substring(0, i);
+        }
+        return mediaType.equalsIgnoreCase(contentType.trim());
     }
 
-}
\ No newline at end of file
+    /**
+     * @return true if the last request found that the observation does not exist
+     */
+    boolean isNotFound() {
+        return notFound;
+    }
+
+    private class ObservationStreamReader implements InputStreamWrapper {
+        private final ObservationResponse wr;
+        private HttpDownload download;
+
+        ObservationStreamReader(ObservationResponse wr) {
+            this.wr = wr;
+        }
+
+        @Override
+        public void read(InputStream in) throws IOException {
+            InputStream istream = ContentEncoding.decode(in, download);
+            DocumentCache.Tee tee = null;
+            if (cache != null) {
+                // keep the document as received
+                tee = cache.tee(istream);
+                if (tee != null) {
+                    istream = tee;
+                }
+            }
+            try {
+                if (isContentType(download.getContentType(), CAOM_BINARY_MIMETYPE)) {
+                    wr.observation = BINARY_READER.read(istream);
+                } else {
+                    wr.observation = READER.get().read(new InputStreamReader(istream, "UTF-8"));
+                }
+                if (tee != null) {
+                    tee.commit(wr.observation);
+                }
+            } catch (ObservationParsingException | RuntimeException e) {
+                String oid = state.getURI().getObservationID();
+                wr.error = new IllegalStateException("Unable to create Observation object for id " + oid + ": " + e.getMessage());
+            } finally {
+                if (tee != null) {
+                    tee.discard();
+                }
+            }
+        }
+    }
+}
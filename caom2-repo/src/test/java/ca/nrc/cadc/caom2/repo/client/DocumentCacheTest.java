@@ -0,0 +1,287 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.repo.client;
+
+import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.ObservationState;
+import ca.nrc.cadc.caom2.SimpleObservation;
+import ca.nrc.cadc.caom2.binary.BinaryObservationReader;
+import ca.nrc.cadc.caom2.binary.BinaryObservationWriter;
+import ca.nrc.cadc.caom2.util.CaomUtil;
+import ca.nrc.cadc.caom2.xml.ObservationReader;
+import ca.nrc.cadc.caom2.xml.ObservationWriter;
+import ca.nrc.cadc.util.Log4jInit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class DocumentCacheTest {
+    private static final Logger log = Logger.getLogger(DocumentCacheTest.class);
+
+    static {
+        Log4jInit.setLevel("ca.nrc.cadc.caom2.repo.client", Level.INFO);
+    }
+
+    private File dir;
+    private Observation obs;
+    private byte[] doc;
+
+    @Before
+    public void setup() throws Exception {
+        this.dir = Files.createTempDirectory("doccache").toFile();
+        this.obs = new SimpleObservation("FOO", "bar");
+        URI cs = obs.computeAccMetaChecksum(MessageDigest.getInstance("MD5"));
+        CaomUtil.assignMetaChecksum(obs, cs, "accMetaChecksum");
+
+        // trailing comment: not what ObservationWriter would produce
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new ObservationWriter().write(obs, bos);
+        bos.write("\n<!-- as received -->\n".getBytes("UTF-8"));
+        this.doc = bos.toByteArray();
+    }
+
+    @After
+    public void cleanup() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testTeeStoresDocument() {
+        try {
+            DocumentCache cache = new DocumentCache(dir, 1024 * 1024L);
+            DocumentCache.Tee tee = cache.tee(new ByteArrayInputStream(doc));
+            Assert.assertNotNull(tee);
+            Observation o = new ObservationReader().read(new InputStreamReader(tee, "UTF-8"));
+            tee.commit(o);
+            tee.discard();
+
+            File f = new File(dir, DocumentCache.getName(obs.getURI().getURI(), obs.getAccMetaChecksum()));
+            Assert.assertTrue(f.exists());
+            Assert.assertArrayEquals("document as received", doc, Files.readAllBytes(f.toPath()));
+            Assert.assertEquals("no temporary files", 1, dir.listFiles().length);
+
+            ObservationState s = new ObservationState(obs.getURI());
+            s.accMetaChecksum = obs.getAccMetaChecksum();
+            Observation cached = cache.get(s);
+            Assert.assertNotNull(cached);
+            Assert.assertEquals(obs.getURI(), cached.getURI());
+            Assert.assertEquals(1L, cache.getHits());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testBinaryDocument() {
+        try {
+            DocumentCache cache = new DocumentCache(dir, 1024 * 1024L);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            new BinaryObservationWriter().write(obs, bos);
+            DocumentCache.Tee tee = cache.tee(new ByteArrayInputStream(bos.toByteArray()));
+            Observation o = new BinaryObservationReader().read(tee);
+            tee.commit(o);
+            tee.discard();
+
+            File f = new File(dir, DocumentCache.getName(obs.getURI().getURI(), obs.getAccMetaChecksum()));
+            Assert.assertArrayEquals("document as received", bos.toByteArray(), Files.readAllBytes(f.toPath()));
+
+            ObservationState s = new ObservationState(obs.getURI());
+            s.accMetaChecksum = obs.getAccMetaChecksum();
+            Observation cached = cache.get(s);
+            Assert.assertNotNull(cached);
+            Assert.assertEquals(obs.getURI(), cached.getURI());
+            Assert.assertEquals(obs.getAccMetaChecksum(), cached.getAccMetaChecksum());
+            Assert.assertEquals(1L, cache.getHits());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testTeeClosedByParser() {
+        try {
+            DocumentCache cache = new DocumentCache(dir, 1024 * 1024L);
+            DocumentCache.Tee tee = cache.tee(new ClosableInputStream(doc));
+            Observation o = new ObservationReader().read(new InputStreamReader(tee, "UTF-8"));
+            // the parser may or may not have closed the stream: a network stream
+            // cannot be read after close
+            tee.close();
+            tee.commit(o);
+            tee.discard();
+
+            File f = new File(dir, DocumentCache.getName(obs.getURI().getURI(), obs.getAccMetaChecksum()));
+            Assert.assertTrue(f.exists());
+            Assert.assertArrayEquals("document as received", doc, Files.readAllBytes(f.toPath()));
+            Assert.assertEquals("no temporary files", 1, dir.listFiles().length);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testTeeDiscard() {
+        try {
+            DocumentCache cache = new DocumentCache(dir, 1024 * 1024L);
+            DocumentCache.Tee tee = cache.tee(new ByteArrayInputStream(doc));
+            tee.read(new byte[16]);
+            tee.discard();
+            Assert.assertEquals(0, dir.listFiles().length);
+
+            ObservationState s = new ObservationState(obs.getURI());
+            s.accMetaChecksum = obs.getAccMetaChecksum();
+            Assert.assertNull(cache.get(s));
+            Assert.assertEquals(1L, cache.getMisses());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testPutAndEvict() {
+        try {
+            DocumentCache cache = new DocumentCache(dir, doc.length + 1);
+            cache.put(obs.getURI().getURI(), obs.getAccMetaChecksum(), doc);
+            File f = new File(dir, DocumentCache.getName(obs.getURI().getURI(), obs.getAccMetaChecksum()));
+            Assert.assertArrayEquals(doc, Files.readAllBytes(f.toPath()));
+
+            // a second document does not fit: least recently used is evicted
+            URI other = URI.create("md5:0123456789abcdef0123456789abcdef");
+            cache.put(obs.getURI().getURI(), other, doc);
+            Assert.assertFalse(f.exists());
+            Assert.assertTrue(new File(dir, DocumentCache.getName(obs.getURI().getURI(), other)).exists());
+
+            // no checksum: not stored
+            cache.put(obs.getURI().getURI(), null, doc);
+            Assert.assertEquals(1, dir.listFiles().length);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    // like a network stream: reading after close fails
+    private static class ClosableInputStream extends FilterInputStream {
+        private boolean closed = false;
+
+        ClosableInputStream(byte[] buf) {
+            super(new ByteArrayInputStream(buf));
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            return super.read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
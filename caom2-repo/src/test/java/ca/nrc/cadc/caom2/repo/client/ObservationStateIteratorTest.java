@@ -0,0 +1,217 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.repo.client;
+
+import ca.nrc.cadc.caom2.ObservationState;
+import ca.nrc.cadc.caom2.ObservationURI;
+import ca.nrc.cadc.util.Log4jInit;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class ObservationStateIteratorTest {
+    private static final Logger log = Logger.getLogger(ObservationStateIteratorTest.class);
+
+    static {
+        Log4jInit.setLevel("ca.nrc.cadc.caom2.repo.client", Level.INFO);
+    }
+
+    // observation list with duplicate maxLastModified across page boundaries
+    private List<ObservationState> getTestList() {
+        List<ObservationState> ret = new ArrayList<>();
+        long t = 1000000L;
+        int n = 0;
+        // unique timestamps up to just before the first page boundary
+        for (int i = 0; i < RepoClient.MAX_NUMBER - 10; i++) {
+            ret.add(getState(n++, t++));
+        }
+        // 30 observations straddle the first page boundary
+        for (int i = 0; i < 30; i++) {
+            ret.add(getState(n++, t));
+        }
+        t++;
+        for (int i = 0; i < RepoClient.MAX_NUMBER / 2; i++) {
+            ret.add(getState(n++, t++));
+        }
+        // more observations with one timestamp than fit in a page
+        for (int i = 0; i < 2 * RepoClient.MAX_NUMBER + 7; i++) {
+            ret.add(getState(n++, t));
+        }
+        t++;
+        for (int i = 0; i < 100; i++) {
+            ret.add(getState(n++, t++));
+        }
+        return ret;
+    }
+
+    private ObservationState getState(int n, long t) {
+        ObservationState ret = new ObservationState(new ObservationURI("FOO", "obs" + n));
+        ret.maxLastModified = new Date(t);
+        return ret;
+    }
+
+    @Test
+    public void testBoundaryDuplicates() {
+        try {
+            List<ObservationState> states = getTestList();
+            TestClient client = new TestClient(states);
+            Iterator<ObservationState> iter = new ObservationStateIterator(client, "FOO", null, null, null);
+            Set<ObservationURI> found = new HashSet<>();
+            int num = 0;
+            Date prev = null;
+            while (iter.hasNext()) {
+                ObservationState os = iter.next();
+                Assert.assertTrue("duplicate: " + os.getURI(), found.add(os.getURI()));
+                if (prev != null) {
+                    Assert.assertFalse("order", os.maxLastModified.before(prev));
+                }
+                prev = os.maxLastModified;
+                num++;
+            }
+            log.info("pages: " + client.pages + " observations: " + num);
+            Assert.assertEquals(states.size(), num);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testMaxRec() {
+        try {
+            List<ObservationState> states = getTestList();
+            TestClient client = new TestClient(states);
+            int maxrec = RepoClient.MAX_NUMBER * 2;
+            Iterator<ObservationState> iter = new ObservationStateIterator(client, "FOO", null, null, maxrec);
+            Set<ObservationURI> found = new HashSet<>();
+            while (iter.hasNext()) {
+                ObservationState os = iter.next();
+                Assert.assertTrue("duplicate: " + os.getURI(), found.add(os.getURI()));
+            }
+            Assert.assertEquals(maxrec, found.size());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    // serves pages of the list like the repo service: maxLastModified >= start,
+    // ordered by maxLastModified with arbitrary order for equal values
+    private static class TestClient extends RepoClient {
+        private final List<ObservationState> states;
+        private final Random rnd = new Random(1L);
+        int pages = 0;
+
+        TestClient(List<ObservationState> states) {
+            super(URI.create("ivo://example.net/caom2repo"), 1);
+            this.states = states;
+        }
+
+        @Override
+        List<ObservationState> getObservationPage(String collection, Date start, Date end, int maxRec) {
+            pages++;
+            List<ObservationState> ret = new ArrayList<>();
+            int i = 0;
+            while (i < states.size() && ret.size() < maxRec) {
+                // group of equal maxLastModified
+                Date t = states.get(i).maxLastModified;
+                List<ObservationState> group = new ArrayList<>();
+                while (i < states.size() && states.get(i).maxLastModified.equals(t)) {
+                    group.add(states.get(i++));
+                }
+                if (start == null || !t.before(start)) {
+                    Collections.shuffle(group, rnd);
+                    for (ObservationState os : group) {
+                        if (ret.size() < maxRec) {
+                            ret.add(os);
+                        }
+                    }
+                }
+            }
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.repo.client;
+
+import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.ObservationResponse;
+import ca.nrc.cadc.caom2.ObservationState;
+import ca.nrc.cadc.caom2.ObservationURI;
+import ca.nrc.cadc.caom2.SimpleObservation;
+import ca.nrc.cadc.caom2.binary.BinaryObservationWriter;
+import ca.nrc.cadc.caom2.xml.ObservationWriter;
+import ca.nrc.cadc.util.Log4jInit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class WorkerTest {
+    private static final Logger log = Logger.getLogger(WorkerTest.class);
+
+    static {
+        Log4jInit.setLevel("ca.nrc.cadc.caom2.repo.client", Level.INFO);
+    }
+
+    private static final URI CURRENT = URI.create("md5:0123456789abcdef0123456789abcdef");
+
+    private HttpServer server;
+    private String baseURL;
+    private final List<String> requests = new ArrayList<String>();
+    private final List<String> accepts = new ArrayList<String>();
+
+    // repo service stand-in: 503 for collection FAIL, 429 for BUSY, 304 if If-None-Match matches CURRENT,
+    // observation document for collection DOC (binary if accepted, except DOC/xml), otherwise 404
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange he) throws IOException {
+                String ifNoneMatch = he.getRequestHeaders().getFirst("If-None-Match");
+                synchronized (requests) {
+                    requests.add(he.getRequestURI().getPath() + " " + ifNoneMatch);
+                    accepts.add(he.getRequestHeaders().getFirst("Accept"));
+                }
+                if (he.getRequestURI().getPath().startsWith("/DOC/")) {
+                    sendDocument(he);
+                    return;
+                }
+                int code = 404;
+                if (he.getRequestURI().getPath().startsWith("/FAIL/")) {
+                    code = 503;
+                } else if (he.getRequestURI().getPath().startsWith("/BUSY/")) {
+                    he.getResponseHeaders().add("Retry-After", "0");
+                    code = 429;
+                } else if (("W/\"" + CURRENT.toASCIIString() + "\"").equals(ifNoneMatch)) {
+                    code = 304;
+                }
+                he.sendResponseHeaders(code, -1);
+                he.close();
+            }
+        });
+        server.start();
+        baseURL = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void sendDocument(HttpExchange he) throws IOException {
+        String id = he.getRequestURI().getPath().substring("/DOC/".length());
+        Observation obs = new SimpleObservation("DOC", id);
+        String accept = he.getRequestHeaders().getFirst("Accept");
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        String contentType = Worker.CAOM_MIMETYPE;
+        if (accept != null && accept.contains(Worker.CAOM_BINARY_MIMETYPE) && !"xml".equals(id)) {
+            new BinaryObservationWriter().write(obs, bos);
+            contentType = Worker.CAOM_BINARY_MIMETYPE;
+        } else {
+            new ObservationWriter().write(obs, bos);
+        }
+        he.getResponseHeaders().add("Content-Type", contentType);
+        he.sendResponseHeaders(200, bos.size());
+        bos.writeTo(he.getResponseBody());
+        he.close();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        // failures in one test must not open the circuit for the next
+        CircuitBreaker.forHost("localhost").success();
+    }
+
+    @Test
+    public void testNotModified() {
+        try {
+            ObservationState state = new ObservationState(new ObservationURI("FOO", "bar"));
+            Worker w = new Worker(state, null, baseURL);
+            w.setIfNoneMatch(CURRENT);
+            ObservationResponse wr = w.getObservation();
+            Assert.assertNotNull(wr);
+            Assert.assertNull("not modified: no observation", wr.observation);
+            Assert.assertNull("not modified: no error", wr.error);
+            Assert.assertFalse(w.isNotFound());
+            Assert.assertEquals(CURRENT, state.accMetaChecksum);
+            Assert.assertEquals(1, requests.size());
+            Assert.assertEquals("/FOO/bar W/\"" + CURRENT.toASCIIString() + "\"", requests.get(0));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testDocumentFormats() {
+        try {
+            // binary document if the service supports it
+            ObservationState state = new ObservationState(new ObservationURI("DOC", "binary"));
+            ObservationResponse wr = new Worker(state, null, baseURL).getObservation();
+            Assert.assertNull(wr.error);
+            Assert.assertNotNull(wr.observation);
+            Assert.assertEquals(state.getURI(), wr.observation.getURI());
+            Assert.assertTrue(accepts.get(0).startsWith(Worker.CAOM_BINARY_MIMETYPE));
+
+            // older service: XML
+            state = new ObservationState(new ObservationURI("DOC", "xml"));
+            wr = new Worker(state, null, baseURL).getObservation();
+            Assert.assertNull(wr.error);
+            Assert.assertNotNull(wr.observation);
+            Assert.assertEquals(state.getURI(), wr.observation.getURI());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testModified() {
+        try {
+            // no match: the service responds as if there was no condition
+            ObservationState state = new ObservationState(new ObservationURI("FOO", "bar"));
+            Worker w = new Worker(state, null, baseURL);
+            w.setIfNoneMatch(URI.create("md5:ffffffffffffffffffffffffffffffff"));
+            ObservationResponse wr = w.getObservation();
+            Assert.assertNull(wr.observation);
+            Assert.assertNotNull(wr.error);
+            Assert.assertTrue(w.isNotFound());
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testBulkNotModified() {
+        try {
+            // local copy matches the observation list: no request
+            ObservationState state = new ObservationState(new ObservationURI("FOO", "bar"));
+            state.accMetaChecksum = CURRENT;
+            List<ObservationState> states = new ArrayList<ObservationState>();
+            states.add(state);
+            Map<ObservationURI, URI> local = new HashMap<ObservationURI, URI>();
+            local.put(state.getURI(), CURRENT);
+
+            RepoClient client = new RepoClient(URI.create("ivo://example.net/caom2repo"), 1);
+            BulkWorker bw = new BulkWorker(states, null, baseURL, client, local);
+            List<ObservationResponse> ret = bw.call();
+            Assert.assertEquals(1, ret.size());
+            Assert.assertNull(ret.get(0).observation);
+            Assert.assertNull(ret.get(0).error);
+            Assert.assertEquals(CURRENT, ret.get(0).observationState.accMetaChecksum);
+            Assert.assertTrue(requests.isEmpty());
+
+            // no checksum in the observation list: conditional request, not a bulk request
+            state.accMetaChecksum = null;
+            bw = new BulkWorker(states, null, baseURL, client, local);
+            ret = bw.call();
+            Assert.assertEquals(1, ret.size());
+            Assert.assertNull(ret.get(0).observation);
+            Assert.assertNull(ret.get(0).error);
+            Assert.assertEquals(CURRENT, ret.get(0).observationState.accMetaChecksum);
+            Assert.assertEquals(1, requests.size());
+            Assert.assertEquals("/FOO/bar W/\"" + CURRENT.toASCIIString() + "\"", requests.get(0));
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testServiceUnavailable() {
+        try {
+            final int[] invalidated = new int[1];
+            RepoClient client = new RepoClient(URI.create("ivo://example.net/caom2repo"), 1) {
+                @Override
+                void invalidateServiceURL() {
+                    invalidated[0]++;
+                }
+            };
+            ObservationState state = new ObservationState(new ObservationURI("FAIL", "bar"));
+            Worker w = new Worker(state, null, baseURL);
+            w.setClient(client);
+            ObservationResponse wr = w.getObservation();
+            Assert.assertNull(wr.observation);
+            Assert.assertNotNull(wr.error);
+            Assert.assertFalse(w.isNotFound());
+            Assert.assertEquals(Worker.MAX_RETRIES + 1, requests.size());
+            Assert.assertEquals("service URL invalidated once", 1, invalidated[0]);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testRetryAfter() {
+        try {
+            ObservationState state = new ObservationState(new ObservationURI("BUSY", "bar"));
+            Worker w = new Worker(state, null, baseURL);
+            long t1 = System.currentTimeMillis();
+            ObservationResponse wr = w.getObservation();
+            long dt = System.currentTimeMillis() - t1;
+            Assert.assertNotNull(wr.error);
+            Assert.assertEquals(Worker.MAX_RETRIES + 1, requests.size());
+            // Retry-After: 0 instead of exponential backoff (at least 500 + 1000 + 2000 ms)
+            Assert.assertTrue("retried without backoff: " + dt, dt < Worker.RETRY_DELAY);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testRetryAfterValues() {
+        try {
+            Assert.assertEquals(2000L, Worker.getRetryDelay(0, "2"));
+            Assert.assertEquals(2000L, Worker.getRetryDelay(3, " 2 "));
+            Assert.assertEquals(Worker.MAX_RETRY_DELAY, Worker.getRetryDelay(0, "3600"));
+            Assert.assertEquals(0L, Worker.getRetryDelay(0, "Wed, 21 Oct 2015 07:28:00 GMT"));
+            Assert.assertEquals(Worker.MAX_RETRY_DELAY, Worker.getRetryDelay(0, "Fri, 31 Dec 9999 23:59:59 GMT"));
+
+            // missing or invalid: exponential backoff
+            long dt = Worker.getRetryDelay(0, null);
+            Assert.assertTrue(dt >= Worker.RETRY_DELAY / 2 && dt < Worker.RETRY_DELAY);
+            dt = Worker.getRetryDelay(1, "soon");
+            Assert.assertTrue(dt >= Worker.RETRY_DELAY && dt < 2 * Worker.RETRY_DELAY);
+        } catch (Exception unexpected) {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+}
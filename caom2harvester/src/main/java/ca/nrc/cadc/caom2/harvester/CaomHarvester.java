@@ -81,6 +81,7 @@ import ca.nrc.cadc.caom2.version.InitDatabase;
 import ca.nrc.cadc.db.ConnectionConfig;
 import ca.nrc.cadc.db.DBConfig;
 import ca.nrc.cadc.db.DBUtil;
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.Date;
@@ -206,6 +207,16 @@ public class CaomHarvester implements Runnable {
         log.info("destination: " + dest.getIdentifier());
     }
 
+    /**
+     * Keep downloaded observation documents in a local cache.
+     *
+     * @param dir cache directory
+     * @param maxBytes maximum size of the cache in bytes
+     */
+    public void setDocumentCache(File dir, long maxBytes) {
+        obsHarvester.setDocumentCache(dir, maxBytes);
+    }
+
     /**
      * run
      */
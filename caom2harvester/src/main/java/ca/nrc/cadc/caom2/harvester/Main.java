@@ -77,6 +77,7 @@ import ca.nrc.cadc.date.DateUtil;
 import ca.nrc.cadc.net.NetrcAuthenticator;
 import ca.nrc.cadc.util.ArgumentMap;
 import ca.nrc.cadc.util.Log4jInit;
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -97,6 +98,9 @@ public class Main {
 
     private static final Integer DEFAULT_BATCH_SIZE = new Integer(100);
     private static final Integer DEFAULT_BATCH_FACTOR = new Integer(2500);
+    private static final String HTTP_MAX_CONNECTIONS = "http.maxConnections";
+    private static final int DEFAULT_MAX_CONNECTIONS = 5;
+    private static final long DEFAULT_CACHE_SIZE_MB = 1024L;
     private static int exitValue = 0;
 
     public static void main(String[] args) {
@@ -192,6 +196,12 @@ public class Main {
                     if (am.isSet("threads")) {
                         nthreads = Integer.parseInt(am.getValue("threads"));
                     }
+                    // HttpURLConnection keeps idle persistent connections (default: 5 per host);
+                    // allow one per worker thread so connections (and TLS sessions) are reused;
+                    // only effective if set before the first connection is made
+                    if (System.getProperty(HTTP_MAX_CONNECTIONS) == null && nthreads > DEFAULT_MAX_CONNECTIONS) {
+                        System.setProperty(HTTP_MAX_CONNECTIONS, Integer.toString(nthreads));
+                    }
                 } catch (URISyntaxException ex) {
                     log.warn("invalid value for --resourceID parameter: " + resourceID + " reason: " + ex.toString());
                     usage();
@@ -260,11 +270,38 @@ public class Main {
                 }
             }
 
+            File cacheDir = null;
+            long cacheSize = DEFAULT_CACHE_SIZE_MB;
+            String cacheStr = am.getValue("cache");
+            if (cacheStr != null && cacheStr.trim().length() > 0) {
+                if (resourceID == null) {
+                    log.warn("--cache is only used with --resourceID");
+                }
+                cacheDir = new File(cacheStr.trim());
+                String cacheSizeStr = am.getValue("cacheSize");
+                if (cacheSizeStr != null) {
+                    try {
+                        cacheSize = Long.parseLong(cacheSizeStr);
+                    } catch (NumberFormatException ex) {
+                        cacheSize = 0L;
+                    }
+                    if (cacheSize <= 0) {
+                        log.error("value for --cacheSize must be a positive integer, found: " + cacheSizeStr);
+                        usage();
+                        System.exit(1);
+                    }
+                }
+            }
+
             Runnable action = null;
             if (!validate) {
 
                 try {
-                    action = new CaomHarvester(dryrun, noChecksum, compute, src, dest, batchSize, batchFactor, full, skip, maxDate, nthreads);
+                    CaomHarvester harvester = new CaomHarvester(dryrun, noChecksum, compute, src, dest, batchSize, batchFactor, full, skip, maxDate, nthreads);
+                    if (cacheDir != null) {
+                        harvester.setDocumentCache(cacheDir, cacheSize * 1024L * 1024L);
+                    }
+                    action = harvester;
                 } catch (IOException ioex) {
 
                     log.error("failed to init: " + ioex.getMessage());
@@ -320,9 +357,12 @@ public class Main {
         sb.append("\n         --collection=<name> : name of collection to retrieve> (e.g. IRIS)");
         sb.append("\n         --destination=<server.database.schema> : persist output directly to a databsee server");
 
-        sb.append("\n\nSource selection: --resourceID=<URI> [--threads=<num threads>] | --source=<server.database.schema>");
+        sb.append("\n\nSource selection: --resourceID=<URI> [--threads=<num threads>] [--cache=<dir> [--cacheSize=<MB>]] | --source=<server.database.schema>");
         sb.append("\n         --resourceID : harvest from a caom2 repository service (e.g. ivo://cadc.nrc.ca/caom2repo)");
         sb.append("\n         --threads : number  of threads used to read observation documents (default: 1)");
+        sb.append("\n         --cache=<dir> : keep downloaded observation documents in a local cache directory");
+        sb.append("\n         --cacheSize=<MB> : maximum size of the document cache (default: ");
+        sb.append(DEFAULT_CACHE_SIZE_MB).append(")");
         sb.append("\n         --source : harvest directly from a database server");
 
         sb.append("\n\nOptional modes: [--validate|--skip|--full] (default: incremental harvest)");
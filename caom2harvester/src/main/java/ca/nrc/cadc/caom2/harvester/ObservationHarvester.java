@@ -75,15 +75,15 @@ import ca.nrc.cadc.caom2.ObservationResponse;
 import ca.nrc.cadc.caom2.ObservationState;
 import ca.nrc.cadc.caom2.ObservationURI;
 import ca.nrc.cadc.caom2.Plane;
-import ca.nrc.cadc.caom2.compute.CaomWCSValidator;
-import ca.nrc.cadc.caom2.compute.ComputeUtil;
 import ca.nrc.cadc.caom2.harvester.state.HarvestSkipURI;
 import ca.nrc.cadc.caom2.harvester.state.HarvestSkipURIDAO;
 import ca.nrc.cadc.caom2.harvester.state.HarvestState;
+import ca.nrc.cadc.caom2.persistence.MetaChecksumCache;
 import ca.nrc.cadc.caom2.persistence.ObservationDAO;
+import ca.nrc.cadc.caom2.persistence.PlaneMetadataComputer;
 import ca.nrc.cadc.caom2.repo.client.RepoClient;
-import ca.nrc.cadc.caom2.util.CaomValidator;
 import ca.nrc.cadc.net.TransientException;
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -92,6 +92,7 @@ import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
@@ -122,6 +123,7 @@ public class ObservationHarvester extends Harvester {
     private Date maxDate;
     private boolean doCollisionCheck = false;
     private boolean computePlaneMetadata = false;
+    private PlaneMetadataComputer planeComputer;
     private boolean nochecksum = false;
 
     HarvestSkipURIDAO harvestSkip = null;
@@ -154,6 +156,20 @@ public class ObservationHarvester extends Harvester {
         return computePlaneMetadata;
     }
 
+    /**
+     * Keep downloaded observation documents in a local cache so observations
+     * that did not change are not downloaded again in the next harvest (e.g.
+     * after a --full restart). Only used when harvesting from a service.
+     *
+     * @param dir cache directory
+     * @param maxBytes maximum size of the cache in bytes
+     */
+    public void setDocumentCache(File dir, long maxBytes) {
+        if (srcObservationService != null) {
+            srcObservationService.setCache(dir, maxBytes);
+        }
+    }
+
     private void init(int nthreads) throws IOException, URISyntaxException {
         if (src.getDatabaseServer() != null) {
             Map<String, Object> config1 = getConfigDAO(src);
@@ -203,6 +219,10 @@ public class ObservationHarvester extends Harvester {
             }
         }
 
+        if (planeComputer != null) {
+            planeComputer.shutdown();
+            planeComputer = null;
+        }
         log.info("DONE: " + entityClass.getSimpleName() + "\n");
     }
 
@@ -288,7 +308,8 @@ public class ObservationHarvester extends Harvester {
                 if (srcObservationDAO != null) {
                     obsList = srcObservationDAO.getList(src.getCollection(), startDate, end, batchSize + 1);
                 } else {
-                    obsList = srcObservationService.getList(src.getCollection(), startDate, end, batchSize + 1);
+                    obsList = srcObservationService.getList(src.getCollection(), startDate, end, batchSize + 1,
+                        getLocalChecksums(startDate, end, batchSize + 1));
                 }
                 entityList = wrap(obsList);
                 //entityListState = wrapState(stateList);
@@ -307,7 +328,8 @@ public class ObservationHarvester extends Harvester {
                         if (srcObservationDAO != null) {
                             obsList = srcObservationDAO.getList(src.getCollection(), startDate, end, tmpBatchSize);
                         } else {
-                            obsList = srcObservationService.getList(src.getCollection(), startDate, end, tmpBatchSize);
+                            obsList = srcObservationService.getList(src.getCollection(), startDate, end, tmpBatchSize,
+                                getLocalChecksums(startDate, end, tmpBatchSize));
                         }
 
                         entityList = wrap(obsList);
@@ -342,6 +364,11 @@ public class ObservationHarvester extends Harvester {
             timeQuery = System.currentTimeMillis() - t;
             t = System.currentTimeMillis();
 
+            Map<UUID, Throwable> computeFailures = null;
+            if (computePlaneMetadata && !dryrun) {
+                computeFailures = computePlaneMetadata(entityList);
+            }
+
             ListIterator<SkippedWrapperURI<ObservationResponse>> iter1 = entityList.listIterator();
             //int i = 0;
             while (iter1.hasNext()) {
@@ -416,23 +443,20 @@ public class ObservationHarvester extends Harvester {
                                 startDate = hs.lastModified;
                             }
 
-                            CaomValidator.validate(o);
-                            
-                            for (Plane p : o.getPlanes()) {
-                                for (Artifact a : p.getArtifacts()) {
-                                    CaomWCSValidator.validate(a);
-                                }
-                            }
-
-                            if (computePlaneMetadata) {
-                                log.debug("computePlaneMetadata: " + o.getObservationID());
-                                for (Plane p : o.getPlanes()) {
-                                    ComputeUtil.computeTransientState(o, p);
+                            if (computeFailures != null) {
+                                // validated and computed in parallel before the loop
+                                Throwable fail = computeFailures.get(o.getID());
+                                if (fail != null) {
+                                    throw fail;
                                 }
+                            } else {
+                                PlaneMetadataComputer.validate(o);
                             }
 
-                            if (nochecksum || checkChecksumsAlt(o)) {
-                                destObservationDAO.put(o);
+                            // checksums computed during verification are reused by put
+                            MetaChecksumCache checksums = getPlaneComputer().newMetaChecksumCache();
+                            if (nochecksum || checkChecksumsAlt(o, checksums)) {
+                                destObservationDAO.put(o, checksums);
                             } else {
                                 throw new ChecksumError("mismatching checksums");
                             }
@@ -446,6 +470,17 @@ public class ObservationHarvester extends Harvester {
                         } else if (skipped && ow.entity == null) {
                             log.info("delete: " + hs + " " + format(hs.lastModified));
                             harvestSkip.delete(hs);
+                        } else if (ow.entity.error == null) {
+                            // not modified: the destination copy is current
+                            log.info("not modified: " + ow.entity.observationState.getURI());
+                            if (hs != null) {
+                                log.info("delete: " + hs + " " + format(hs.lastModified));
+                                harvestSkip.delete(hs);
+                            } else if (state != null && ow.entity.observationState.maxLastModified != null) {
+                                state.curLastModified = ow.entity.observationState.maxLastModified;
+                                state.curID = null; // unknown
+                                harvestState.put(state);
+                            }
                         } else if (ow.entity.error != null) {
                             // try to make progress on failures
                             if (state != null && ow.entity.observationState.maxLastModified != null) {
@@ -626,18 +661,37 @@ public class ObservationHarvester extends Harvester {
         }
     }
 
-    private boolean checkChecksumsAlt(Observation o) throws ChecksumError {
-        try {
-            URI calculatedChecksum = o.computeAccMetaChecksum(MessageDigest.getInstance("MD5"));
+    // created on first use; shut down when the harvest is done
+    private PlaneMetadataComputer getPlaneComputer() {
+        if (planeComputer == null) {
+            planeComputer = new PlaneMetadataComputer();
+        }
+        return planeComputer;
+    }
 
-            log.debug("checkChecksumsAlt: " + o.getURI() + " -- " + o.getAccMetaChecksum() + " vs " + calculatedChecksum);
-            if (o.getAccMetaChecksum() != null && o.getAccMetaChecksum().equals(calculatedChecksum)) {
-                return true;
+    private Map<UUID, Throwable> computePlaneMetadata(List<SkippedWrapperURI<ObservationResponse>> entityList) {
+        getPlaneComputer();
+        List<Observation> obs = new ArrayList<Observation>(entityList.size());
+        for (SkippedWrapperURI<ObservationResponse> ow : entityList) {
+            if (ow.entity != null && ow.entity.observation != null) {
+                obs.add(ow.entity.observation);
             }
-            return false;
-        } catch (NoSuchAlgorithmException e) {
-            throw new ChecksumError("no MD5 digest algorithm available");
         }
+        long t = System.currentTimeMillis();
+        Map<UUID, Throwable> ret = planeComputer.compute(obs);
+        log.debug("computePlaneMetadata: " + obs.size() + " observations in " + (System.currentTimeMillis() - t) + "ms");
+        return ret;
+    }
+
+    private boolean checkChecksumsAlt(Observation o, MetaChecksumCache checksums) {
+        URI expectedChecksum = o.getAccMetaChecksum();
+        URI calculatedChecksum = checksums.assignAll(o);
+
+        log.debug("checkChecksumsAlt: " + o.getURI() + " -- " + expectedChecksum + " vs " + calculatedChecksum);
+        if (expectedChecksum != null && expectedChecksum.equals(calculatedChecksum)) {
+            return true;
+        }
+        return false;
     }
 
     private String computeTreeSize(Observation o) {
@@ -692,6 +746,18 @@ public class ObservationHarvester extends Harvester {
         }
     }
 
+    // accMetaChecksum of the destination copies in the harvest window: observations
+    // that were already harvested are requested conditionally
+    private Map<ObservationURI, URI> getLocalChecksums(Date start, Date end, Integer num) {
+        Map<ObservationURI, URI> ret = new HashMap<ObservationURI, URI>();
+        for (ObservationState os : destObservationDAO.getObservationList(src.getCollection(), start, end, num)) {
+            if (os.accMetaChecksum != null) {
+                ret.put(os.getURI(), os.accMetaChecksum);
+            }
+        }
+        return ret;
+    }
+
     private List<SkippedWrapperURI<ObservationResponse>> wrap(List<ObservationResponse> obsList) {
         List<SkippedWrapperURI<ObservationResponse>> ret = new ArrayList<SkippedWrapperURI<ObservationResponse>>(obsList.size());
         for (ObservationResponse wr : obsList) {
@@ -725,7 +791,9 @@ public class ObservationHarvester extends Harvester {
             if (srcObservationDAO != null) {
                 wr = srcObservationDAO.getAlt(ouri);
             } else {
-                wr = srcObservationService.get(ouri);
+                // only download if the destination copy (if any) is not current
+                ObservationState cur = destObservationDAO.getState(ouri);
+                wr = srcObservationService.get(ouri, (cur == null ? null : cur.accMetaChecksum));
             }
             log.debug("response: " + wr);
 
@@ -70,6 +70,7 @@
 package ca.nrc.cadc.caom2.harvester;
 
 import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.ObservationResponse;
 import ca.nrc.cadc.caom2.ObservationState;
 import ca.nrc.cadc.caom2.harvester.state.HarvestSkipURI;
 import ca.nrc.cadc.caom2.harvester.state.HarvestSkipURIDAO;
@@ -102,6 +103,8 @@ public class ObservationValidator extends Harvester {
 
     private static Logger log = Logger.getLogger(ObservationValidator.class);
 
+    private static final String CHECKSUM_MISMATCH = "computation or serialization bug";
+
     private RepoClient srcObservationService;
     private ObservationDAO srcObservationDAO;
     private ObservationDAO destObservationDAO;
@@ -201,22 +204,25 @@ public class ObservationValidator extends Harvester {
 
             log.info("harvest window: " + format(startDate) + " :: " + format(end));
 
-            List<ObservationState> tmpSrcState = null;
             List<ObservationState> tmpDstState = null;
 
             tmpDstState = destObservationDAO.getObservationList(src.getCollection(), null, null, null);
 
+            Set<ObservationState> srcState = new TreeSet<>(compStateUri);
             if (srcObservationDAO != null) {
-                tmpSrcState = srcObservationDAO.getObservationList(src.getCollection(), null, null, null);
+                List<ObservationState> tmpSrcState = srcObservationDAO.getObservationList(src.getCollection(), null, null, null);
+                srcState.addAll(tmpSrcState);
+                tmpSrcState.clear();
             } else if (srcObservationService != null) {
-                tmpSrcState = srcObservationService.getObservationList(src.getCollection(), null, null, null);
+                // consume pages as they arrive instead of holding the whole listing twice
+                Iterator<ObservationState> iterState = srcObservationService.getObservationIterator(src.getCollection(), null, null, null);
+                while (iterState.hasNext()) {
+                    srcState.add(iterState.next());
+                }
             } else {
                 throw new RuntimeException("BUG: both srcObservationDAO and srcObservationService are null");
             }
 
-            Set<ObservationState> srcState = new TreeSet<>(compStateUri);
-            srcState.addAll(tmpSrcState);
-            tmpSrcState.clear();
             Set<ObservationState> dstState = new TreeSet<>(compStateUri);
             dstState.addAll(tmpDstState);
             tmpDstState.clear();
@@ -242,6 +248,13 @@ public class ObservationValidator extends Harvester {
                 String skipMsg = null;
 
                 try {
+                    if (o != null && isCurrent(o)) {
+                        // source listing was out of date: the source copy matches the destination
+                        log.info("not modified: " + o.getObs().getURI());
+                        ret.validated++;
+                        continue;
+                    }
+
                     // o could be null in skip mode cleanup
                     if (!dryrun) {
                         if (o != null) {
@@ -330,6 +343,16 @@ public class ObservationValidator extends Harvester {
         return ret;
     }
 
+    // check a checksum mismatch with a conditional request for the observation
+    private boolean isCurrent(ObservationStateError ose) {
+        ObservationState os = ose.getObs();
+        if (srcObservationService == null || os.accMetaChecksum == null || !CHECKSUM_MISMATCH.equals(ose.getError())) {
+            return false;
+        }
+        ObservationResponse wr = srcObservationService.get(os.getURI(), os.accMetaChecksum);
+        return wr != null && wr.observation == null && wr.error == null;
+    }
+
     private Set<ObservationStateError> calculateErroneousObservationStates(Set<ObservationState> srcState, Set<ObservationState> dstState) {
         Set<ObservationStateError> listErroneous = new TreeSet<ObservationStateError>(compError);
         Set<ObservationState> listCorrect = new TreeSet<ObservationState>(compStateSum);
@@ -354,7 +377,7 @@ public class ObservationValidator extends Harvester {
                     listErroneous.add(ose);
                 }
             } else if (!nochecksum && !listCorrect.contains(os)) {
-                ObservationStateError ose = new ObservationStateError(os, "computation or serialization bug");
+                ObservationStateError ose = new ObservationStateError(os, CHECKSUM_MISMATCH);
                 log.info("************************ adding computation or serialization bug: " + os.getURI());
                 if (!listErroneous.contains(ose)) {
                     listErroneous.add(ose);
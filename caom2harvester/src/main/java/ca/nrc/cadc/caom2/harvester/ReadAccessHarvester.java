@@ -82,6 +82,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.UUID;
 import org.apache.log4j.Logger;
 import org.springframework.dao.DataIntegrityViolationException;
 
@@ -279,6 +280,11 @@ public class ReadAccessHarvester extends Harvester {
             ret.found = entityList.size();
             log.info("found: " + entityList.size());
 
+            if (!skipped && !dryrun && entityList.size() > 1 && putBatch(entityList, state)) {
+                ret.ingested = entityList.size();
+                entityList.clear();
+            }
+
             ListIterator<SkippedWrapper<ReadAccess>> iter = entityList.listIterator();
             while (iter.hasNext()) {
                 SkippedWrapper<ReadAccess> sra = iter.next();
@@ -392,6 +398,53 @@ public class ReadAccessHarvester extends Harvester {
         return ret;
     }
 
+    /**
+     * Put the whole batch in a single transaction. If this fails, the caller
+     * falls back to putting one tuple at a time so that individual failures can
+     * be tracked in the HarvestSkip table.
+     *
+     * @param entityList
+     * @param state
+     * @return true if the batch was committed
+     */
+    private boolean putBatch(List<SkippedWrapper<ReadAccess>> entityList, HarvestState state) {
+        List<ReadAccess> batch = new ArrayList<ReadAccess>(entityList.size());
+        for (SkippedWrapper<ReadAccess> sra : entityList) {
+            batch.add(sra.entity);
+        }
+        ReadAccess first = batch.get(0);
+        ReadAccess last = batch.get(batch.size() - 1);
+
+        Date prevLastModified = state.curLastModified;
+        UUID prevID = state.curID;
+        boolean ok = false;
+        destAccessDAO.getTransactionManager().startTransaction();
+        try {
+            log.info("put batch: " + batch.size() + " " + entityClass.getSimpleName()
+                    + " " + format(first.getLastModified()) + " to " + format(last.getLastModified()));
+            destAccessDAO.put(batch);
+
+            state.curLastModified = last.getLastModified();
+            state.curID = last.getID();
+            harvestState.put(state);
+
+            log.debug("committing transaction");
+            destAccessDAO.getTransactionManager().commitTransaction();
+            log.debug("commit: OK");
+            ok = true;
+        } catch (Throwable t) {
+            log.warn("failed to put batch: " + t + " -- retrying one tuple at a time");
+        } finally {
+            if (!ok) {
+                destAccessDAO.getTransactionManager().rollbackTransaction();
+                log.warn("rollback: OK");
+                state.curLastModified = prevLastModified;
+                state.curID = prevID;
+            }
+        }
+        return ok;
+    }
+
     private void detectLoop(List<SkippedWrapper<ReadAccess>> entityList) {
         if (entityList.size() < 2) {
             return;
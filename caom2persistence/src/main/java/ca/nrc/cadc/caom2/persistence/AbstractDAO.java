@@ -131,6 +131,7 @@ public class AbstractDAO {
 
     public Map<String, Class> getParams() {
         Map<String, Class> ret = new TreeMap<String, Class>();
+        ret.put("dataSource", DataSource.class); // shared DataSource instead of jndiDataSourceName
         ret.put("jndiDataSourceName", String.class);
         ret.put("server", String.class); // fallback if no jndiDataSourceName
         ret.put("database", String.class);
@@ -148,12 +149,16 @@ public class AbstractDAO {
 
         String schema = (String) config.get("schema");
 
-        Class<?> genClass = (Class<?>) config.get(SQLGenerator.class.getName());
-        if (genClass == null) {
+        // the generator can be an instance shared with other DAOs or a class
+        Object genConfig = config.get(SQLGenerator.class.getName());
+        if (genConfig == null) {
             throw new IllegalArgumentException(SQLGenerator.class.getName() + " must be specified in config");
         }
         try {
-            if (jndiDataSourceName != null) {
+            DataSource ds = (DataSource) config.get("dataSource");
+            if (ds != null) {
+                this.dataSource = ds;
+            } else if (jndiDataSourceName != null) {
                 this.dataSource = new DataSourceWrapper(database, DBUtil.findJNDIDataSource(jndiDataSourceName));
             } else {
                 DBConfig dbrc = new DBConfig();
@@ -180,9 +185,26 @@ public class AbstractDAO {
             this.forceUpdate = force.booleanValue();
         }
 
+        if (genConfig instanceof SQLGenerator) {
+            this.gen = (SQLGenerator) genConfig;
+        } else {
+            this.gen = createSQLGenerator((Class<?>) genConfig, database, schema);
+        }
+    }
+
+    /**
+     * Create an SQLGenerator. Generators are thread-safe so applications that create
+     * many DAOs can create a generator once and pass it in the config.
+     *
+     * @param genClass SQLGenerator implementation
+     * @param database database name
+     * @param schema schema name
+     * @return new SQLGenerator
+     */
+    public static SQLGenerator createSQLGenerator(Class<?> genClass, String database, String schema) {
         try {
             Constructor<?> ctor = genClass.getConstructor(String.class, String.class);
-            this.gen = (SQLGenerator) ctor.newInstance(database, schema);
+            return (SQLGenerator) ctor.newInstance(database, schema);
         } catch (Exception ex) {
             throw new RuntimeException("failed to instantiate SQLGenerator: " + genClass.getName(), ex);
         }
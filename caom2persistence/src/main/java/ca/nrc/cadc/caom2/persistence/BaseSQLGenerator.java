@@ -163,16 +163,19 @@ import java.sql.Types;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
 import org.apache.log4j.Logger;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.ResultSetExtractor;
@@ -207,7 +210,14 @@ public class BaseSQLGenerator implements SQLGenerator {
     static final String SIMPLE_TYPE = "S";
     static final String COMPOSITE_TYPE = "C";
 
-    private final Calendar utcCalendar = Calendar.getInstance(DateUtil.UTC);
+    // JDBC drivers may modify the Calendar passed to timestamp get/set methods
+    // so each thread gets its own: generators can be shared by concurrent DAOs
+    private final ThreadLocal<Calendar> utcCalendar = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return Calendar.getInstance(DateUtil.UTC);
+        }
+    };
 
     protected String database;
     protected String schema;
@@ -583,6 +593,84 @@ public class BaseSQLGenerator implements SQLGenerator {
         return sb.toString();
     }
 
+    @Override
+    public String getSelectForUpdateSQL(ObservationURI uri, int depth) {
+        String sql = getSelectSQL(uri, depth, true);
+        String lock = getLockConstraint(getAlias(ObservationSkeleton.class));
+        if (lock == null) {
+            return sql;
+        }
+        return sql + " " + lock;
+    }
+
+    private Calendar getUTCCalendar() {
+        return utcCalendar.get();
+    }
+
+    @Override
+    public String getObservationStateSQL(ObservationURI uri) {
+        StringBuilder sb = new StringBuilder();
+        String alias = getAlias(ObservationState.class);
+        sb.append("SELECT ");
+        sb.append(getColumns(ObservationState.class));
+        sb.append(" FROM ");
+        sb.append(getFrom(ObservationState.class));
+        sb.append(" WHERE ");
+        sb.append(alias).append(".").append("collection").append(" = ");
+        sb.append(literal(uri.getCollection()));
+        sb.append(" AND ");
+        sb.append(alias).append(".").append("observationID").append(" = ");
+        sb.append(literal(uri.getObservationID()));
+        return sb.toString();
+    }
+
+    @Override
+    public String getSelectSQL(List<ObservationURI> uris, int depth) {
+        // group observationID values by collection
+        Map<String, List<String>> ids = new TreeMap<String, List<String>>();
+        for (ObservationURI uri : uris) {
+            List<String> cids = ids.get(uri.getCollection());
+            if (cids == null) {
+                cids = new ArrayList<String>();
+                ids.put(uri.getCollection(), cids);
+            }
+            cids.add(uri.getObservationID());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        String alias = getAlias(Observation.class);
+        sb.append("SELECT ");
+        sb.append(getObservationSelect(depth, false));
+        sb.append(" WHERE ");
+        boolean first = true;
+        for (Map.Entry<String, List<String>> me : ids.entrySet()) {
+            if (!first) {
+                sb.append(" OR ");
+            }
+            sb.append("(");
+            sb.append(alias).append(".").append("collection").append(" = ");
+            sb.append(literal(me.getKey()));
+            sb.append(" AND ");
+            sb.append(alias).append(".").append("observationID").append(" IN (");
+            boolean firstID = true;
+            for (String id : me.getValue()) {
+                if (!firstID) {
+                    sb.append(",");
+                }
+                sb.append(literal(id));
+                firstID = false;
+            }
+            sb.append("))");
+            first = false;
+        }
+        String orderBy = getOrderColumns(depth);
+        if (orderBy != null) {
+            sb.append(" ORDER BY ");
+            sb.append(orderBy);
+        }
+        return sb.toString();
+    }
+
     @Override
     public String getSelectSQL(UUID id, int depth, boolean skeleton) {
         StringBuilder sb = new StringBuilder();
@@ -711,6 +799,57 @@ public class BaseSQLGenerator implements SQLGenerator {
         return sb.toString();
     }
 
+    @Override
+    public String getSelectSQL(Class clz, List<UUID> ids) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SELECT ");
+        String[] cols = columnMap.get(clz);
+        for (int c = 0; c < cols.length; c++) {
+            if (c > 0) {
+                sb.append(",");
+            }
+            sb.append(cols[c]);
+        }
+        sb.append(" FROM ");
+        sb.append(getTable(clz));
+        sb.append(" WHERE ");
+        sb.append(getPrimaryKeyColumn(clz));
+        sb.append(" IN (");
+        appendLiteralList(sb, ids);
+        sb.append(")");
+        return sb.toString();
+    }
+
+    // select all ReadAccess tuples for a set of assets
+    String getReadAccessSelectSQL(Class<? extends ReadAccess> clz, Collection<UUID> assetIDs) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SELECT ");
+        String[] cols = columnMap.get(clz);
+        for (int c = 0; c < cols.length; c++) {
+            if (c > 0) {
+                sb.append(",");
+            }
+            sb.append(cols[c]);
+        }
+        sb.append(" FROM ");
+        sb.append(getTable(clz));
+        sb.append(" WHERE assetID IN (");
+        appendLiteralList(sb, assetIDs);
+        sb.append(")");
+        return sb.toString();
+    }
+
+    private void appendLiteralList(StringBuilder sb, Collection<UUID> ids) {
+        boolean first = true;
+        for (UUID id : ids) {
+            if (!first) {
+                sb.append(",");
+            }
+            sb.append(literal(id));
+            first = false;
+        }
+    }
+
     // select Observation(s) with maxLastmodified in [minLastModified,maxLastModified]
     @Override
     public String getObservationSelectSQL(Class c, Date minLastModified, Date maxLastModified, int depth) {
@@ -795,6 +934,11 @@ public class BaseSQLGenerator implements SQLGenerator {
         return sb.toString();
     }
 
+    // row lock for the table with the specified alias, appended to a select
+    protected String getLockConstraint(String alias) {
+        return null;
+    }
+
     protected String getTopConstraint(Integer batchSize) {
         return null;
     }
@@ -925,6 +1069,30 @@ public class BaseSQLGenerator implements SQLGenerator {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Get SQL to set the complete list of read access groups in an asset table.
+     * The arguments are the group names (encoded for the column type) and the
+     * asset ID.
+     *
+     * @param asset
+     * @param ra
+     * @return
+     */
+    protected String getSetAssetSQL(Class asset, Class ra) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Get SQL to register a group name in a separate lookup table before it is
+     * used in an asset table. The argument is the group name (twice). The default
+     * is null: group names are stored in the asset tables directly.
+     *
+     * @return SQL or null if group names are not registered
+     */
+    protected String getInsertGroupSQL() {
+        return null;
+    }
+
     // test access
     String getReadAccessCol(Class raclz) {
         if (PlaneDataReadAccess.class.equals(raclz)) {
@@ -962,6 +1130,15 @@ public class BaseSQLGenerator implements SQLGenerator {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public EntityBatchPut getEntityBatchPut(Class<? extends CaomEntity> c) {
+        if (ReadAccess.class.isAssignableFrom(c)) {
+            return new ReadAccessBatchPut((Class<? extends ReadAccess>) c);
+        }
+
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public EntityDelete getEntityDelete(Class<? extends CaomEntity> c, boolean primaryKey) {
         if (ReadAccess.class.isAssignableFrom(c)) {
@@ -1136,7 +1313,7 @@ public class BaseSQLGenerator implements SQLGenerator {
             }
             safeSetInteger(sb, ps, col++, obs.sequenceNumber);
 
-            safeSetDate(sb, ps, col++, Util.truncate(obs.metaRelease), utcCalendar);
+            safeSetDate(sb, ps, col++, Util.truncate(obs.metaRelease), getUTCCalendar());
             if (obs.proposal != null) {
                 safeSetString(sb, ps, col++, obs.proposal.getID());
                 safeSetString(sb, ps, col++, obs.proposal.pi);
@@ -1235,8 +1412,8 @@ public class BaseSQLGenerator implements SQLGenerator {
                 safeSetString(sb, ps, col++, obs.getURI().getURI().toString());
             }
 
-            safeSetDate(sb, ps, col++, obs.getLastModified(), utcCalendar);
-            safeSetDate(sb, ps, col++, obs.getMaxLastModified(), utcCalendar);
+            safeSetDate(sb, ps, col++, obs.getLastModified(), getUTCCalendar());
+            safeSetDate(sb, ps, col++, obs.getMaxLastModified(), getUTCCalendar());
             safeSetInteger(sb, ps, col++, obs.getStateCode());
             safeSetURI(sb, ps, col++, obs.getMetaChecksum());
             safeSetURI(sb, ps, col++, obs.getAccMetaChecksum());
@@ -1334,8 +1511,8 @@ public class BaseSQLGenerator implements SQLGenerator {
             }
             safeSetString(sb, ps, col++, plane.getProductID());
             safeSetURI(sb, ps, col++, plane.creatorID);
-            safeSetDate(sb, ps, col++, Util.truncate(plane.metaRelease), utcCalendar);
-            safeSetDate(sb, ps, col++, Util.truncate(plane.dataRelease), utcCalendar);
+            safeSetDate(sb, ps, col++, Util.truncate(plane.metaRelease), getUTCCalendar());
+            safeSetDate(sb, ps, col++, Util.truncate(plane.dataRelease), getUTCCalendar());
             if (plane.dataProductType != null) {
                 safeSetString(sb, ps, col++, plane.dataProductType.getValue());
             } else {
@@ -1358,7 +1535,7 @@ public class BaseSQLGenerator implements SQLGenerator {
                 safeSetString(sb, ps, col++, plane.provenance.project);
                 safeSetString(sb, ps, col++, plane.provenance.producer);
                 safeSetString(sb, ps, col++, plane.provenance.runID);
-                safeSetDate(sb, ps, col++, Util.truncate(plane.provenance.lastExecuted), utcCalendar);
+                safeSetDate(sb, ps, col++, Util.truncate(plane.provenance.lastExecuted), getUTCCalendar());
                 safeSetString(sb, ps, col++, Util.encodePlaneURIs(plane.provenance.getInputs()));
                 safeSetKeywords(sb, ps, col++, plane.provenance.getKeywords());
             } else {
@@ -1368,7 +1545,7 @@ public class BaseSQLGenerator implements SQLGenerator {
                 safeSetString(sb, ps, col++, null);
                 safeSetString(sb, ps, col++, null);
                 safeSetString(sb, ps, col++, null);
-                safeSetDate(sb, ps, col++, null, utcCalendar);
+                safeSetDate(sb, ps, col++, null, getUTCCalendar());
                 safeSetString(sb, ps, col++, null);
                 safeSetKeywords(sb, ps, col++, null);
             }
@@ -1518,8 +1695,8 @@ public class BaseSQLGenerator implements SQLGenerator {
                 safeSetLong(sb, ps, col++, pol.dimension);
             }
 
-            safeSetDate(sb, ps, col++, plane.getLastModified(), utcCalendar);
-            safeSetDate(sb, ps, col++, plane.getMaxLastModified(), utcCalendar);
+            safeSetDate(sb, ps, col++, plane.getLastModified(), getUTCCalendar());
+            safeSetDate(sb, ps, col++, plane.getMaxLastModified(), getUTCCalendar());
             safeSetInteger(sb, ps, col++, plane.getStateCode());
             safeSetURI(sb, ps, col++, plane.getMetaChecksum());
             safeSetURI(sb, ps, col++, plane.getAccMetaChecksum());
@@ -1543,7 +1720,7 @@ public class BaseSQLGenerator implements SQLGenerator {
             }
 
             int col = 1;
-            safeSetDate(sb, ps, col++, Util.truncate(plane.metaRelease), utcCalendar);
+            safeSetDate(sb, ps, col++, Util.truncate(plane.metaRelease), getUTCCalendar());
             if (useLongForUUID) {
                 safeSetLongUUID(sb, ps, col++, plane.getID());
             } else {
@@ -1626,8 +1803,8 @@ public class BaseSQLGenerator implements SQLGenerator {
                 //safeSetDate(sb, ps, col++, Util.truncate(plane.metaRelease), UTC_CAL);
             }
 
-            safeSetDate(sb, ps, col++, artifact.getLastModified(), utcCalendar);
-            safeSetDate(sb, ps, col++, artifact.getMaxLastModified(), utcCalendar);
+            safeSetDate(sb, ps, col++, artifact.getLastModified(), getUTCCalendar());
+            safeSetDate(sb, ps, col++, artifact.getMaxLastModified(), getUTCCalendar());
             safeSetInteger(sb, ps, col++, artifact.getStateCode());
             safeSetURI(sb, ps, col++, artifact.getMetaChecksum());
             safeSetURI(sb, ps, col++, artifact.getAccMetaChecksum());
@@ -1717,8 +1894,8 @@ public class BaseSQLGenerator implements SQLGenerator {
                 //safeSetDate(sb, ps, col++, Util.truncate(plane.metaRelease), UTC_CAL);
             }
 
-            safeSetDate(sb, ps, col++, part.getLastModified(), utcCalendar);
-            safeSetDate(sb, ps, col++, part.getMaxLastModified(), utcCalendar);
+            safeSetDate(sb, ps, col++, part.getLastModified(), getUTCCalendar());
+            safeSetDate(sb, ps, col++, part.getMaxLastModified(), getUTCCalendar());
             safeSetInteger(sb, ps, col++, part.getStateCode());
 
             safeSetURI(sb, ps, col++, part.getMetaChecksum());
@@ -2035,8 +2212,8 @@ public class BaseSQLGenerator implements SQLGenerator {
                 //safeSetDate(sb, ps, col++, Util.truncate(plane.metaRelease), UTC_CAL);
             }
 
-            safeSetDate(sb, ps, col++, chunk.getLastModified(), utcCalendar);
-            safeSetDate(sb, ps, col++, chunk.getMaxLastModified(), utcCalendar);
+            safeSetDate(sb, ps, col++, chunk.getLastModified(), getUTCCalendar());
+            safeSetDate(sb, ps, col++, chunk.getMaxLastModified(), getUTCCalendar());
             safeSetInteger(sb, ps, col++, chunk.getStateCode());
             safeSetURI(sb, ps, col++, chunk.getMetaChecksum());
             safeSetURI(sb, ps, col++, chunk.getAccMetaChecksum());
@@ -2158,6 +2335,12 @@ public class BaseSQLGenerator implements SQLGenerator {
 
             putCount++;
 
+            String gsql = getInsertGroupSQL();
+            if (gsql != null) {
+                log.debug(gsql);
+                jdbc.update(gsql, new Object[] {ra.getGroupName(), ra.getGroupName()});
+            }
+
             if (ObservationMetaReadAccess.class.equals(ra.getClass())) {
                 this.assetClass = Observation.class;
                 int num = jdbc.update(this);
@@ -2240,7 +2423,7 @@ public class BaseSQLGenerator implements SQLGenerator {
                     safeSetUUID(sb, ps, col++, ra.getAssetID());
                 }
                 safeSetString(sb, ps, col++, ra.getGroupID().toASCIIString());
-                safeSetDate(sb, ps, col++, ra.getLastModified(), utcCalendar);
+                safeSetDate(sb, ps, col++, ra.getLastModified(), getUTCCalendar());
                 safeSetInteger(sb, ps, col++, ra.getStateCode());
                 safeSetURI(sb, ps, col++, ra.getMetaChecksum());
                 safeSetUUID(sb, ps, col++, ra.getID());
@@ -2259,6 +2442,202 @@ public class BaseSQLGenerator implements SQLGenerator {
         }
     }
 
+    // batch insert and update of tuples followed by a single set-based update of the
+    // asset table(s) for each affected asset
+    private class ReadAccessBatchPut implements EntityBatchPut<ReadAccess> {
+
+        private Class<? extends ReadAccess> raClass;
+        private List<ReadAccess> inserts;
+        private List<ReadAccess> updates;
+
+        ReadAccessBatchPut(Class<? extends ReadAccess> raClass) {
+            this.raClass = raClass;
+        }
+
+        @Override
+        public void setValues(List<ReadAccess> inserts, List<ReadAccess> updates) {
+            this.inserts = inserts;
+            this.updates = updates;
+        }
+
+        @Override
+        public void execute(JdbcTemplate jdbc) {
+            // insert and update statements have the same argument number and order
+            if (inserts != null && !inserts.isEmpty()) {
+                String sql = getInsertSQL(raClass);
+                log.debug(sql);
+                jdbc.batchUpdate(sql, new TupleSetter(inserts));
+            }
+            if (updates != null && !updates.isEmpty()) {
+                String sql = getUpdateSQL(raClass);
+                log.debug(sql);
+                jdbc.batchUpdate(sql, new TupleSetter(updates));
+            }
+
+            if (!persistReadAccessWithAsset) {
+                return;
+            }
+
+            Set<UUID> assetIDs = new TreeSet<UUID>();
+            addAssetIDs(assetIDs, inserts);
+            addAssetIDs(assetIDs, updates);
+            if (assetIDs.isEmpty()) {
+                return;
+            }
+
+            // aggregate the current tuples by asset so each asset is updated once
+            String sql = getReadAccessSelectSQL(raClass, assetIDs);
+            log.debug(sql);
+            List<ReadAccess> tuples = jdbc.query(sql, new ReadAccessMapper(raClass));
+            Map<UUID, Set<String>> groups = new TreeMap<UUID, Set<String>>();
+            for (UUID id : assetIDs) {
+                groups.put(id, new TreeSet<String>());
+            }
+            for (ReadAccess ra : tuples) {
+                groups.get(ra.getAssetID()).add(ra.getGroupName());
+            }
+            List<Map.Entry<UUID, Set<String>>> assets = new ArrayList<Map.Entry<UUID, Set<String>>>(groups.entrySet());
+
+            String gsql = getInsertGroupSQL();
+            if (gsql != null) {
+                Set<String> names = new TreeSet<String>();
+                for (Set<String> gn : groups.values()) {
+                    names.addAll(gn);
+                }
+                final List<String> nameList = new ArrayList<String>(names);
+                log.debug(gsql);
+                jdbc.batchUpdate(gsql, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, nameList.get(i));
+                        ps.setString(2, nameList.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return nameList.size();
+                    }
+                });
+            }
+
+            if (ObservationMetaReadAccess.class.equals(raClass)) {
+                updateAssets(jdbc, Observation.class, assets, true);
+            } else if (PlaneDataReadAccess.class.equals(raClass)) {
+                updateAssets(jdbc, Plane.class, assets, true);
+            } else if (PlaneMetaReadAccess.class.equals(raClass)) {
+                updateAssets(jdbc, Plane.class, assets, true);
+
+                // see ReadAccessPut: number of child assets is unknown so cannot verify
+                updateAssets(jdbc, Artifact.class, assets, false);
+                updateAssets(jdbc, Part.class, assets, false);
+                updateAssets(jdbc, Chunk.class, assets, false);
+            }
+        }
+
+        private void addAssetIDs(Set<UUID> assetIDs, List<ReadAccess> tuples) {
+            if (tuples != null) {
+                for (ReadAccess ra : tuples) {
+                    assetIDs.add(ra.getAssetID());
+                }
+            }
+        }
+
+        private void updateAssets(JdbcTemplate jdbc, Class assetClass, final List<Map.Entry<UUID, Set<String>>> assets, boolean verify) {
+            String sql = getSetAssetSQL(assetClass, raClass);
+            log.debug(sql);
+            int[] num = jdbc.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    Map.Entry<UUID, Set<String>> me = assets.get(i);
+                    StringBuilder sb = null;
+                    if (log.isDebugEnabled()) {
+                        sb = new StringBuilder();
+                    }
+                    int col = 1;
+                    safeSetString(sb, ps, col++, encodeGroupNames(me.getValue()));
+                    if (useLongForUUID) {
+                        safeSetLongUUID(sb, ps, col++, me.getKey());
+                    } else {
+                        safeSetUUID(sb, ps, col++, me.getKey());
+                    }
+                    if (sb != null) {
+                        log.debug(sb.toString());
+                    }
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return assets.size();
+                }
+            });
+            log.debug("update asset batch " + assetClass.getSimpleName() + " : " + num.length);
+            if (verify) {
+                for (int i = 0; i < num.length; i++) {
+                    // drivers may report SUCCESS_NO_INFO (-2) instead of a count
+                    if (num[i] == 0) {
+                        throw new DataIntegrityViolationException("failed to update "
+                                + assetClass.getSimpleName() + " " + assets.get(i).getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Encode a set of group names for storage in a read access column of an
+     * asset table. The default is a space-separated list of names.
+     *
+     * @param groupNames
+     * @return
+     */
+    protected String encodeGroupNames(Set<String> groupNames) {
+        StringBuilder sb = new StringBuilder();
+        for (String gn : groupNames) {
+            if (sb.length() > 0) {
+                sb.append(" ");
+            }
+            sb.append(gn);
+        }
+        return sb.toString();
+    }
+
+    private class TupleSetter implements BatchPreparedStatementSetter {
+
+        private List<ReadAccess> tuples;
+
+        TupleSetter(List<ReadAccess> tuples) {
+            this.tuples = tuples;
+        }
+
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+            ReadAccess ra = tuples.get(i);
+            StringBuilder sb = null;
+            if (log.isDebugEnabled()) {
+                sb = new StringBuilder();
+            }
+            int col = 1;
+            if (useLongForUUID) {
+                safeSetLongUUID(sb, ps, col++, ra.getAssetID());
+            } else {
+                safeSetUUID(sb, ps, col++, ra.getAssetID());
+            }
+            safeSetString(sb, ps, col++, ra.getGroupID().toASCIIString());
+            safeSetDate(sb, ps, col++, ra.getLastModified(), getUTCCalendar());
+            safeSetInteger(sb, ps, col++, ra.getStateCode());
+            safeSetURI(sb, ps, col++, ra.getMetaChecksum());
+            safeSetUUID(sb, ps, col++, ra.getID());
+            if (sb != null) {
+                log.debug(sb.toString());
+            }
+        }
+
+        @Override
+        public int getBatchSize() {
+            return tuples.size();
+        }
+    }
+
     protected void safeSetDate(StringBuilder sb, PreparedStatement ps, int col, Date val, Calendar cal)
             throws SQLException {
         if (val != null) {
@@ -2927,7 +3306,7 @@ public class BaseSQLGenerator implements SQLGenerator {
     }
 
     public RowMapper getTimestampRowMapper() {
-        return new TimestampRowMapper(utcCalendar);
+        return new TimestampRowMapper(getUTCCalendar());
     }
 
     private static class ClassComp implements Comparator<Class> {
@@ -3016,7 +3395,7 @@ public class BaseSQLGenerator implements SQLGenerator {
             }
 
             o.sequenceNumber = Util.getInteger(rs, col++);
-            o.metaRelease = Util.getRoundedDate(rs, col++, utcCalendar);
+            o.metaRelease = Util.getRoundedDate(rs, col++, getUTCCalendar());
 
             String pid = rs.getString(col++);
             log.debug("found proposal.id = " + pid);
@@ -3121,8 +3500,8 @@ public class BaseSQLGenerator implements SQLGenerator {
                 col += numComputedObservationColumns;
             }
 
-            Date lastModified = Util.getDate(rs, col++, utcCalendar);
-            Date maxLastModified = Util.getDate(rs, col++, utcCalendar);
+            Date lastModified = Util.getDate(rs, col++, getUTCCalendar());
+            Date maxLastModified = Util.getDate(rs, col++, getUTCCalendar());
             Util.assignLastModified(o, lastModified, "lastModified");
             Util.assignLastModified(o, maxLastModified, "maxLastModified");
 
@@ -3189,9 +3568,9 @@ public class BaseSQLGenerator implements SQLGenerator {
             p.creatorID = Util.getURI(rs, col++);
             log.debug("found p.creatorID = " + p.creatorID);
 
-            p.metaRelease = Util.getRoundedDate(rs, col++, utcCalendar);
+            p.metaRelease = Util.getRoundedDate(rs, col++, getUTCCalendar());
             log.debug("found p.metaRelease = " + p.metaRelease);
-            p.dataRelease = Util.getRoundedDate(rs, col++, utcCalendar);
+            p.dataRelease = Util.getRoundedDate(rs, col++, getUTCCalendar());
             log.debug("found p.dataRelease = " + p.dataRelease);
 
             String dpt = rs.getString(col++);
@@ -3220,7 +3599,7 @@ public class BaseSQLGenerator implements SQLGenerator {
                 log.debug("found p.provenance.producer = " + p.provenance.producer);
                 p.provenance.runID = rs.getString(col++);
                 log.debug("found p.provenance.runID = " + p.provenance.runID);
-                p.provenance.lastExecuted = Util.getRoundedDate(rs, col++, utcCalendar);
+                p.provenance.lastExecuted = Util.getRoundedDate(rs, col++, getUTCCalendar());
                 log.debug("found p.provenance.lastExecuted = " + p.provenance.lastExecuted);
                 Util.decodePlaneURIs(rs.getString(col++), p.provenance.getInputs());
                 log.debug("found p.provenance.inpts: " + p.provenance.getInputs().size());
@@ -3348,8 +3727,8 @@ public class BaseSQLGenerator implements SQLGenerator {
                 col += numComputedPlaneColumns;
             }
 
-            Date lastModified = Util.getDate(rs, col++, utcCalendar);
-            Date maxLastModified = Util.getDate(rs, col++, utcCalendar);
+            Date lastModified = Util.getDate(rs, col++, getUTCCalendar());
+            Date maxLastModified = Util.getDate(rs, col++, getUTCCalendar());
             Util.assignLastModified(p, lastModified, "lastModified");
             Util.assignLastModified(p, maxLastModified, "maxLastModified");
 
@@ -3433,8 +3812,8 @@ public class BaseSQLGenerator implements SQLGenerator {
                 col += numComputedArtifactColumns;
             }
 
-            Date lastModified = Util.getDate(rs, col++, utcCalendar);
-            Date maxLastModified = Util.getDate(rs, col++, utcCalendar);
+            Date lastModified = Util.getDate(rs, col++, getUTCCalendar());
+            Date maxLastModified = Util.getDate(rs, col++, getUTCCalendar());
             Util.assignLastModified(a, lastModified, "lastModified");
             Util.assignLastModified(a, maxLastModified, "maxLastModified");
 
@@ -3501,8 +3880,8 @@ public class BaseSQLGenerator implements SQLGenerator {
                 col += numComputedPartColumns;
             }
 
-            Date lastModified = Util.getDate(rs, col++, utcCalendar);
-            Date maxLastModified = Util.getDate(rs, col++, utcCalendar);
+            Date lastModified = Util.getDate(rs, col++, getUTCCalendar());
+            Date maxLastModified = Util.getDate(rs, col++, getUTCCalendar());
             Util.assignLastModified(p, lastModified, "lastModified");
             Util.assignLastModified(p, maxLastModified, "maxLastModified");
 
@@ -3784,8 +4163,8 @@ public class BaseSQLGenerator implements SQLGenerator {
                 col += numComputedChunkColumns;
             }
 
-            Date lastModified = Util.getDate(rs, col++, utcCalendar);
-            Date maxLastModified = Util.getDate(rs, col++, utcCalendar);
+            Date lastModified = Util.getDate(rs, col++, getUTCCalendar());
+            Date maxLastModified = Util.getDate(rs, col++, getUTCCalendar());
             Util.assignLastModified(c, lastModified, "lastModified");
             Util.assignLastModified(c, maxLastModified, "maxLastModified");
 
@@ -3818,7 +4197,7 @@ public class BaseSQLGenerator implements SQLGenerator {
                 throws SQLException {
             try {
                 int col = 1;
-                Date lastModified = Util.getDate(rs, col++, utcCalendar);
+                Date lastModified = Util.getDate(rs, col++, getUTCCalendar());
                 UUID id = Util.getUUID(rs, col++);
 
                 Constructor<? extends DeletedEntity> ctor = entityClass.getConstructor(UUID.class, Date.class);
@@ -3849,7 +4228,7 @@ public class BaseSQLGenerator implements SQLGenerator {
                 ReadAccess ret = ctor.newInstance(assetID, groupID);
                 log.debug("found: " + ret);
 
-                Date lastModified = Util.getDate(rs, col++, utcCalendar);
+                Date lastModified = Util.getDate(rs, col++, getUTCCalendar());
                 log.debug("found: ra.lastModified = " + lastModified);
                 Integer stateCode = Util.getInteger(rs, col++);
                 log.debug("found: ra.stateCode = " + stateCode);
@@ -3883,7 +4262,7 @@ public class BaseSQLGenerator implements SQLGenerator {
             ObservationURI uri = new ObservationURI(collection, observationID);
             ObservationState ret = new ObservationState(uri);
 
-            ret.maxLastModified = Util.getDate(rs, col++, utcCalendar);
+            ret.maxLastModified = Util.getDate(rs, col++, getUTCCalendar());
             ret.accMetaChecksum = Util.getURI(rs, col++);
 
             return ret;
@@ -3910,7 +4289,7 @@ public class BaseSQLGenerator implements SQLGenerator {
             try {
                 int col = 1;
                 Skeleton ret = skelClass.newInstance();
-                ret.lastModified = Util.getDate(rs, col++, utcCalendar);
+                ret.lastModified = Util.getDate(rs, col++, getUTCCalendar());
                 ret.stateCode = Util.getInteger(rs, col++);
                 ret.metaChecksum = Util.getURI(rs, col++);
                 ret.id = Util.getUUID(rs, col++);
@@ -0,0 +1,183 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+package ca.nrc.cadc.caom2.persistence;
+
+import ca.nrc.cadc.caom2.ObservationState;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.NoSuchElementException;
+import javax.sql.DataSource;
+
+import org.apache.log4j.Logger;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Read observation states from a database cursor. The connection is used in a
+ * read-only transaction (required for the postgresql driver to fetch rows in
+ * batches) and returned to the pool on close.
+ *
+ * @author agent
+ */
+class JdbcObservationStateIterator implements ObservationStateIterator {
+
+    private static final Logger log = Logger.getLogger(JdbcObservationStateIterator.class);
+
+    private Connection con;
+    private Statement stmt;
+    private ResultSet rs;
+    private final RowMapper mapper;
+    private boolean autoCommit;
+
+    private ObservationState next;
+    private int row = 0;
+
+    JdbcObservationStateIterator(DataSource ds, String sql, RowMapper mapper, int fetchSize) {
+        this.mapper = mapper;
+        try {
+            this.con = ds.getConnection();
+            this.autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            this.stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            this.rs = stmt.executeQuery(sql);
+            advance();
+        } catch (SQLException ex) {
+            close();
+            throw new RuntimeException("failed to execute query: " + sql, ex);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public ObservationState next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        ObservationState ret = next;
+        try {
+            advance();
+        } catch (SQLException ex) {
+            close();
+            throw new RuntimeException("failed to read observation state at row " + row, ex);
+        }
+        return ret;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void advance() throws SQLException {
+        if (rs != null && rs.next()) {
+            this.next = (ObservationState) mapper.mapRow(rs, row++);
+        } else {
+            this.next = null;
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        next = null;
+        if (con == null) {
+            return;
+        }
+        log.debug("close: " + row + " rows");
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+            if (stmt != null) {
+                stmt.close();
+            }
+            con.rollback(); // nothing to commit
+            con.setAutoCommit(autoCommit);
+        } catch (SQLException ex) {
+            log.warn("failed to close cursor: " + ex);
+        } finally {
+            try {
+                con.close();
+            } catch (SQLException ex) {
+                log.warn("failed to close connection: " + ex);
+            }
+            rs = null;
+            stmt = null;
+            con = null;
+        }
+    }
+}
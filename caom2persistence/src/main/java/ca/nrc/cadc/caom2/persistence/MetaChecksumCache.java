@@ -0,0 +1,323 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+package ca.nrc.cadc.caom2.persistence;
+
+import ca.nrc.cadc.caom2.Artifact;
+import ca.nrc.cadc.caom2.CaomEntity;
+import ca.nrc.cadc.caom2.Chunk;
+import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.Part;
+import ca.nrc.cadc.caom2.Plane;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Memoized computation of metaChecksum and accMetaChecksum for one pass over
+ * an observation tree, e.g. checksum verification in a harvester followed by
+ * ObservationDAO.put. Results are kept by entity identity and are only
+ * recomputed if the entity changes (different state code) or, for the
+ * accMetaChecksum, if the accMetaChecksum of a child changes. Instances should
+ * not be kept beyond the pass they were created for.
+ * </p><p>
+ * The state code is a 32-bit hash of the entity state: if an entity is modified
+ * between two calls and the new state has the same state code, the old checksums
+ * are reused. ObservationDAO.put uses the metaChecksum to skip unchanged rows, so
+ * the modification would not be stored. This is as likely as any other hash
+ * collision but callers that modify entities after a checksum pass should use a
+ * new instance for the next pass.
+ * </p><p>
+ * Computing the whole tree (assignAll) is done bottom-up: the checksums of
+ * independent children do not depend on each other so for large observations
+ * the artifacts and planes are computed in parallel fork-join tasks in the
+ * pool provided by the owner (see PlaneMetadataComputer.newMetaChecksumCache) and
+ * each parent is computed after its children complete (the library combines the
+ * child accMetaChecksum values in the required order). Without a pool the tree
+ * is computed in the calling thread.
+ * </p>
+ *
+ * @author agent
+ */
+public class MetaChecksumCache {
+
+    private static final Logger log = Logger.getLogger(MetaChecksumCache.class);
+
+    // minimum number of artifacts in an observation to compute in parallel
+    static final int PARALLEL_THRESHOLD = 8;
+
+    private final MessageDigest digest;
+    private final ForkJoinPool pool;
+    private final Map<CaomEntity, Entry> entries = new IdentityHashMap<CaomEntity, Entry>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public MetaChecksumCache() {
+        this((ForkJoinPool) null);
+    }
+
+    /**
+     * @param pool pool for computing large observations in parallel; the owner
+     *      must shut it down (may be null)
+     */
+    public MetaChecksumCache(ForkJoinPool pool) {
+        try {
+            this.digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("FATAL: no MD5 digest algorithm available", ex);
+        }
+        this.pool = pool;
+    }
+
+    public MetaChecksumCache(MessageDigest digest) {
+        this.digest = digest;
+        this.pool = null;
+    }
+
+    /**
+     * Compute (or reuse) and assign metaChecksum and accMetaChecksum for a single
+     * entity. The accMetaChecksum of child entities must already be assigned.
+     *
+     * @param entity entity to update
+     */
+    public void assign(CaomEntity entity) {
+        assign(entity, digest);
+    }
+
+    private void assign(CaomEntity entity, MessageDigest md) {
+        int stateCode = entity.getStateCode();
+        List<URI> childChecksums = getChildChecksums(entity);
+        Entry e;
+        synchronized (entries) {
+            e = entries.get(entity);
+        }
+        if (e != null && e.stateCode == stateCode && e.childChecksums.equals(childChecksums)) {
+            hits.incrementAndGet();
+            Util.assignMetaChecksum(entity, e.metaChecksum, "metaChecksum");
+            Util.assignMetaChecksum(entity, e.accMetaChecksum, "accMetaChecksum");
+            return;
+        }
+        misses.incrementAndGet();
+        e = new Entry(stateCode, childChecksums);
+        md.reset(); // just in case
+        e.metaChecksum = entity.computeMetaChecksum(md);
+        Util.assignMetaChecksum(entity, e.metaChecksum, "metaChecksum");
+        e.accMetaChecksum = entity.computeAccMetaChecksum(md);
+        Util.assignMetaChecksum(entity, e.accMetaChecksum, "accMetaChecksum");
+        synchronized (entries) {
+            entries.put(entity, e);
+        }
+    }
+
+    /**
+     * Compute (or reuse) and assign metaChecksum and accMetaChecksum for all
+     * entities in the observation, bottom-up.
+     *
+     * @param obs observation to update
+     * @return the accMetaChecksum of the observation
+     */
+    public URI assignAll(Observation obs) {
+        int numArtifacts = 0;
+        for (Plane p : obs.getPlanes()) {
+            numArtifacts += p.getArtifacts().size();
+        }
+        if (pool == null || numArtifacts < PARALLEL_THRESHOLD) {
+            for (Plane p : obs.getPlanes()) {
+                for (Artifact a : p.getArtifacts()) {
+                    assignArtifact(a, digest);
+                }
+                assign(p, digest);
+            }
+        } else {
+            List<PlaneTask> tasks = new ArrayList<PlaneTask>(obs.getPlanes().size());
+            for (Plane p : obs.getPlanes()) {
+                tasks.add(new PlaneTask(p));
+            }
+            pool.invoke(new ParentTask(tasks));
+        }
+        assign(obs, digest);
+        log.debug("assignAll: " + obs.getURI() + " artifacts: " + numArtifacts
+            + " hits: " + hits + " misses: " + misses);
+        return obs.getAccMetaChecksum();
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    private void assignArtifact(Artifact a, MessageDigest md) {
+        for (Part pa : a.getParts()) {
+            for (Chunk c : pa.getChunks()) {
+                assign(c, md);
+            }
+            assign(pa, md);
+        }
+        assign(a, md);
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(digest.getAlgorithm());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("FATAL: no " + digest.getAlgorithm() + " digest algorithm available", ex);
+        }
+    }
+
+    private static List<URI> getChildChecksums(CaomEntity entity) {
+        Collection<? extends CaomEntity> children = null;
+        if (entity instanceof Observation) {
+            children = ((Observation) entity).getPlanes();
+        } else if (entity instanceof Plane) {
+            children = ((Plane) entity).getArtifacts();
+        } else if (entity instanceof Artifact) {
+            children = ((Artifact) entity).getParts();
+        } else if (entity instanceof Part) {
+            children = ((Part) entity).getChunks();
+        }
+        if (children == null || children.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<URI> ret = new ArrayList<URI>(children.size());
+        for (CaomEntity ce : children) {
+            ret.add(ce.getAccMetaChecksum());
+        }
+        return ret;
+    }
+
+    private static class ParentTask extends RecursiveAction {
+        private final List<? extends RecursiveAction> tasks;
+
+        ParentTask(List<? extends RecursiveAction> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(tasks);
+        }
+    }
+
+    private class PlaneTask extends RecursiveAction {
+        private final Plane plane;
+
+        PlaneTask(Plane plane) {
+            this.plane = plane;
+        }
+
+        @Override
+        protected void compute() {
+            List<ArtifactTask> tasks = new ArrayList<ArtifactTask>(plane.getArtifacts().size());
+            for (Artifact a : plane.getArtifacts()) {
+                tasks.add(new ArtifactTask(a));
+            }
+            invokeAll(tasks);
+            assign(plane, newDigest());
+        }
+    }
+
+    private class ArtifactTask extends RecursiveAction {
+        private final Artifact artifact;
+
+        ArtifactTask(Artifact artifact) {
+            this.artifact = artifact;
+        }
+
+        @Override
+        protected void compute() {
+            assignArtifact(artifact, newDigest());
+        }
+    }
+
+    private static class Entry {
+        int stateCode;
+        List<URI> childChecksums;
+        URI metaChecksum;
+        URI accMetaChecksum;
+
+        Entry(int stateCode, List<URI> childChecksums) {
+            this.stateCode = stateCode;
+            this.childChecksums = childChecksums;
+        }
+    }
+}
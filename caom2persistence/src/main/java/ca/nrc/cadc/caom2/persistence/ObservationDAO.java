@@ -85,6 +85,7 @@ import ca.nrc.cadc.caom2.persistence.skel.PartSkeleton;
 import ca.nrc.cadc.caom2.persistence.skel.PlaneSkeleton;
 import ca.nrc.cadc.caom2.persistence.skel.Skeleton;
 import ca.nrc.cadc.caom2.util.CaomValidator;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedList;
@@ -106,6 +107,9 @@ public class ObservationDAO extends AbstractCaomEntityDAO<Observation> {
 
     private PlaneDAO planeDAO;
 
+    // rows per round trip when iterating over observation states
+    static final int LIST_FETCH_SIZE = 1000;
+
     public ObservationDAO() {
     }
 
@@ -192,6 +196,68 @@ public class ObservationDAO extends AbstractCaomEntityDAO<Observation> {
         }
     }
 
+    /**
+     * Get the current state of a single observation. This is a single row read and
+     * can be used to check if a copy of the observation is current (accMetaChecksum)
+     * without reading the whole observation.
+     *
+     * @param uri
+     * @return the observation state or null if not found
+     */
+    public ObservationState getState(ObservationURI uri) {
+        checkInit();
+        if (uri == null) {
+            throw new IllegalArgumentException("uri cannot be null");
+        }
+        log.debug("getState: " + uri);
+        long t = System.currentTimeMillis();
+
+        try {
+            String sql = gen.getObservationStateSQL(uri);
+            if (log.isDebugEnabled()) {
+                log.debug("GET: " + Util.formatSQL(sql));
+            }
+
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            List result = jdbc.query(sql, gen.getObservationStateMapper());
+            if (result.isEmpty()) {
+                return null;
+            }
+            return (ObservationState) result.get(0);
+        } finally {
+            long dt = System.currentTimeMillis() - t;
+            log.debug("getState: " + uri + " " + dt + "ms");
+        }
+    }
+
+    /**
+     * Iterate over observation states in the specified timestamp order. Rows are
+     * read from a database cursor as the caller consumes the iterator so memory use
+     * does not depend on the number of observations. The iterator holds a database
+     * connection until it is exhausted or closed.
+     *
+     * @param collection
+     * @param minLastModified
+     * @param maxLastModified
+     * @param batchSize maximum number of observations, null for all
+     * @param ascendingOrder
+     * @return iterator over observation states
+     */
+    public ObservationStateIterator getObservationListIterator(String collection, Date minLastModified, Date maxLastModified,
+            Integer batchSize, boolean ascendingOrder) {
+        checkInit();
+        log.debug("getObservationListIterator: " + collection + " " + batchSize);
+
+        // input check since this is a string
+        CaomValidator.assertValidPathComponent(ObservationDAO.class, "collection", collection);
+
+        String sql = gen.getSelectSQL(ObservationState.class, minLastModified, maxLastModified, batchSize, ascendingOrder, collection);
+        if (log.isDebugEnabled()) {
+            log.debug("GET: " + Util.formatSQL(sql));
+        }
+        return new JdbcObservationStateIterator(dataSource, sql, gen.getObservationStateMapper(), LIST_FETCH_SIZE);
+    }
+
     // pdd: temporary hack for use in harvester retring skipped found in above getList impl
     public ObservationResponse getAlt(ObservationURI uri) {
         long t = System.currentTimeMillis();
@@ -276,6 +342,53 @@ public class ObservationDAO extends AbstractCaomEntityDAO<Observation> {
         return get(uri, null, SQLGenerator.MAX_DEPTH);
     }
 
+    /**
+     * Get multiple stored observations by URI with a single query. Observations
+     * that do not exist are not included in the result.
+     *
+     * @param uris
+     * @return the complete observations found, in no particular order
+     */
+    public List<Observation> getObservations(List<ObservationURI> uris) {
+        checkInit();
+        if (uris == null) {
+            throw new IllegalArgumentException("uris cannot be null");
+        }
+        if (uris.isEmpty()) {
+            return new ArrayList<Observation>(0);
+        }
+        log.debug("GET: " + uris.size() + " observations");
+        long t = System.currentTimeMillis();
+
+        try {
+            String sql = gen.getSelectSQL(uris, SQLGenerator.MAX_DEPTH);
+            if (log.isDebugEnabled()) {
+                log.debug("GET: " + Util.formatSQL(sql));
+            }
+
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            Object result = jdbc.query(sql, gen.getObservationExtractor());
+            List<Observation> ret = new ArrayList<Observation>(uris.size());
+            if (result == null) {
+                return ret;
+            }
+            if (result instanceof List) {
+                for (Object o : (List) result) {
+                    if (o instanceof Observation) {
+                        ret.add((Observation) o);
+                    } else {
+                        throw new RuntimeException("BUG: query returned an unexpected type " + o.getClass().getName());
+                    }
+                }
+                return ret;
+            }
+            throw new RuntimeException("BUG: query returned an unexpected type " + result.getClass().getName());
+        } finally {
+            long dt = System.currentTimeMillis() - t;
+            log.debug("GET: " + uris.size() + " observations " + dt + "ms");
+        }
+    }
+
     @Override
     public Observation get(UUID id) {
         if (id == null) {
@@ -338,6 +451,66 @@ public class ObservationDAO extends AbstractCaomEntityDAO<Observation> {
      * @param obs
      */
     public void put(Observation obs) {
+        put(obs, new MetaChecksumCache(digest));
+    }
+
+    /**
+     * Store an observation. Checksums already computed by the caller in the same
+     * cache (e.g. during checksum verification) are reused if the entities have
+     * not changed.
+     *
+     * @param obs
+     * @param checksums checksum cache for this observation
+     */
+    public void put(Observation obs, MetaChecksumCache checksums) {
+        putImpl(obs, checksums, false, null, null);
+    }
+
+    /**
+     * Outcome of a conditional put.
+     */
+    public enum PutResult {
+        /**
+         * The observation did not exist and was created.
+         */
+        CREATED,
+        /**
+         * The observation existed and was updated.
+         */
+        UPDATED,
+        /**
+         * Not stored: the observation must exist but does not.
+         */
+        NOT_FOUND,
+        /**
+         * Not stored: the observation must not exist, or the stored observation
+         * with the same URI has a different ID.
+         */
+        CONFLICT,
+        /**
+         * Not stored: the stored observation does not have the expected accMetaChecksum.
+         */
+        PRECONDITION_FAILED
+    }
+
+    /**
+     * Store an observation if the current state satisfies the conditions. The
+     * current state is read by URI with the same query that put uses to find
+     * existing child entities, with the observation row locked, so checking and
+     * writing take a single read.
+     *
+     * @param obs
+     * @param exists TRUE if the observation must exist, FALSE if it must not exist,
+     *      null for either
+     * @param accMetaChecksum required accMetaChecksum of the stored observation, or null
+     * @return CREATED or UPDATED if stored, otherwise the reason it was not stored
+     */
+    public PutResult put(Observation obs, Boolean exists, URI accMetaChecksum) {
+        return putImpl(obs, new MetaChecksumCache(digest), true, exists, accMetaChecksum);
+    }
+
+    private PutResult putImpl(Observation obs, MetaChecksumCache checksums, boolean conditional,
+            Boolean exists, URI accMetaChecksum) {
         if (readOnly) {
             throw new UnsupportedOperationException("put in readOnly mode");
         }
@@ -355,14 +528,33 @@ public class ObservationDAO extends AbstractCaomEntityDAO<Observation> {
             txnOpen = true;
 
             JdbcTemplate jdbc = new JdbcTemplate(dataSource);
-            // NOTE: this is by ID which means to update the caller must get(uri) then put(o)
-            //       and if they do not get(uri) they can get a duplicate observation error
-            //       if they violate unique keys... but if it was by uri, it would be the same
-            //       result as if they skipped the get(uri)
-            String sql = gen.getSelectSQL(obs.getID(), SQLGenerator.MAX_DEPTH, true);
+            String sql;
+            if (conditional) {
+                sql = gen.getSelectForUpdateSQL(obs.getURI(), SQLGenerator.MAX_DEPTH);
+            } else {
+                // NOTE: this is by ID which means to update the caller must get(uri) then put(o)
+                //       and if they do not get(uri) they can get a duplicate observation error
+                //       if they violate unique keys... but if it was by uri, it would be the same
+                //       result as if they skipped the get(uri)
+                sql = gen.getSelectSQL(obs.getID(), SQLGenerator.MAX_DEPTH, true);
+            }
             log.debug("PUT: " + sql);
             ObservationSkeleton cur = (ObservationSkeleton) jdbc.query(sql, new ObservationSkeletonExtractor());
 
+            if (conditional) {
+                PutResult fail = checkCondition(obs, cur, exists, accMetaChecksum);
+                if (fail != null) {
+                    log.debug("PUT: " + obs.getURI() + " " + fail);
+                    getTransactionManager().rollbackTransaction();
+                    txnOpen = false;
+                    return fail;
+                }
+            }
+
+            // compute metadata checksums bottom-up (in parallel for large observations);
+            // updateEntity only compares the assigned values
+            checksums.assignAll(obs);
+
             // update metadata checksums, maybe modified timestamps
             boolean updateMax = updateEntity(obs, cur);
 
@@ -401,6 +593,11 @@ public class ObservationDAO extends AbstractCaomEntityDAO<Observation> {
             getTransactionManager().commitTransaction();
             log.debug("commit: OK");
             txnOpen = false;
+
+            if (cur == null) {
+                return PutResult.CREATED;
+            }
+            return PutResult.UPDATED;
         } catch (DataAccessException e) {
             log.debug("failed to insert " + obs + ": ", e);
             getTransactionManager().rollbackTransaction();
@@ -418,6 +615,23 @@ public class ObservationDAO extends AbstractCaomEntityDAO<Observation> {
         }
     }
 
+    // null if the current state satisfies the conditions
+    private PutResult checkCondition(Observation obs, ObservationSkeleton cur, Boolean exists, URI accMetaChecksum) {
+        if (cur == null) {
+            if (Boolean.TRUE.equals(exists) || accMetaChecksum != null) {
+                return PutResult.NOT_FOUND;
+            }
+            return null;
+        }
+        if (Boolean.FALSE.equals(exists) || !cur.id.equals(obs.getID())) {
+            return PutResult.CONFLICT;
+        }
+        if (accMetaChecksum != null && !accMetaChecksum.equals(cur.accMetaChecksum)) {
+            return PutResult.PRECONDITION_FAILED;
+        }
+        return null;
+    }
+
     /**
      * Delete a stored observation by URI.
      *
@@ -509,8 +723,7 @@ public class ObservationDAO extends AbstractCaomEntityDAO<Observation> {
         }
     }
 
-    // update CaomEntity state: 
-    // always compute and assign: metaChecksum, accMetaChecksum
+    // update CaomEntity state (metaChecksum and accMetaChecksum already assigned):
     // assign if metaChecksum changes: lastModified
     // assign if lastModified changed or a child's maxLastModified changes
     private boolean updateEntity(Observation entity, ObservationSkeleton s) {
@@ -545,19 +758,14 @@ public class ObservationDAO extends AbstractCaomEntityDAO<Observation> {
             }
         }
 
-        // new or changed
-        int nsc = entity.getStateCode();
-        digest.reset(); // just in case
-        Util.assignMetaChecksum(entity, entity.computeMetaChecksum(digest), "metaChecksum");
-        Util.assignMetaChecksum(entity, entity.computeAccMetaChecksum(digest), "accMetaChecksum");
-
+        // new or changed: checksums were assigned by MetaChecksumCache.assignAll
         boolean delta = false;
         if (s == null) {
             delta = true;
         } else if (s.metaChecksum != null) {
             delta = !entity.getMetaChecksum().equals(s.metaChecksum);
         } else {
-            delta = (s.stateCode != nsc); // fallback for null checksum in database
+            delta = (s.stateCode != entity.getStateCode()); // fallback for null checksum in database
         }
         if (computeLastModified && delta) {
             Util.assignLastModified(entity, now, "lastModified");
@@ -599,19 +807,14 @@ public class ObservationDAO extends AbstractCaomEntityDAO<Observation> {
             }
         }
 
-        // new or changed
-        int nsc = entity.getStateCode();
-        digest.reset(); // just in case
-        Util.assignMetaChecksum(entity, entity.computeMetaChecksum(digest), "metaChecksum");
-        Util.assignMetaChecksum(entity, entity.computeAccMetaChecksum(digest), "accMetaChecksum");
-
+        // new or changed: checksums were assigned by MetaChecksumCache.assignAll
         boolean delta = false;
         if (s == null) {
             delta = true;
         } else if (s.metaChecksum != null) {
             delta = !entity.getMetaChecksum().equals(s.metaChecksum);
         } else {
-            delta = (s.stateCode != nsc); // fallback
+            delta = (s.stateCode != entity.getStateCode()); // fallback
         }
         if (computeLastModified && delta) {
             Util.assignLastModified(entity, now, "lastModified");
@@ -653,19 +856,14 @@ public class ObservationDAO extends AbstractCaomEntityDAO<Observation> {
             }
         }
 
-        // new or changed
-        int nsc = entity.getStateCode();
-        digest.reset(); // just in case
-        Util.assignMetaChecksum(entity, entity.computeMetaChecksum(digest), "metaChecksum");
-        Util.assignMetaChecksum(entity, entity.computeAccMetaChecksum(digest), "accMetaChecksum");
-
+        // new or changed: checksums were assigned by MetaChecksumCache.assignAll
         boolean delta = false;
         if (s == null) {
             delta = true;
         } else if (s.metaChecksum != null) {
             delta = !entity.getMetaChecksum().equals(s.metaChecksum);
         } else {
-            delta = (s.stateCode != nsc); // fallback
+            delta = (s.stateCode != entity.getStateCode()); // fallback
         }
         if (computeLastModified && delta) {
             Util.assignLastModified(entity, now, "lastModified");
@@ -707,19 +905,14 @@ public class ObservationDAO extends AbstractCaomEntityDAO<Observation> {
             }
         }
 
-        // new or changed
-        int nsc = entity.getStateCode();
-        digest.reset(); // just in case
-        Util.assignMetaChecksum(entity, entity.computeMetaChecksum(digest), "metaChecksum");
-        Util.assignMetaChecksum(entity, entity.computeAccMetaChecksum(digest), "accMetaChecksum");
-
+        // new or changed: checksums were assigned by MetaChecksumCache.assignAll
         boolean delta = false;
         if (s == null) {
             delta = true;
         } else if (s.metaChecksum != null) {
             delta = !entity.getMetaChecksum().equals(s.metaChecksum);
         } else {
-            delta = (s.stateCode != nsc); // fallback
+            delta = (s.stateCode != entity.getStateCode()); // fallback
         }
         if (computeLastModified && delta) {
             Util.assignLastModified(entity, now, "lastModified");
@@ -741,19 +934,14 @@ public class ObservationDAO extends AbstractCaomEntityDAO<Observation> {
 
         boolean updateMax = false;
 
-        // new or changed
-        int nsc = entity.getStateCode();
-        digest.reset(); // just in case
-        Util.assignMetaChecksum(entity, entity.computeMetaChecksum(digest), "metaChecksum");
-        Util.assignMetaChecksum(entity, entity.computeAccMetaChecksum(digest), "accMetaChecksum");
-
+        // new or changed: checksums were assigned by MetaChecksumCache.assignAll
         boolean delta = false;
         if (s == null) {
             delta = true;
         } else if (s.metaChecksum != null) {
             delta = !entity.getMetaChecksum().equals(s.metaChecksum);
         } else {
-            delta = (s.stateCode != nsc); // fallback
+            delta = (s.stateCode != entity.getStateCode()); // fallback
         }
         if (computeLastModified && delta) {
             Util.assignLastModified(entity, now, "lastModified");
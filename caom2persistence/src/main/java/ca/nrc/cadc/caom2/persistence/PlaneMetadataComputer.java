@@ -0,0 +1,282 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 5 $
+ *
+ ************************************************************************
+ */
+
+package ca.nrc.cadc.caom2.persistence;
+
+import ca.nrc.cadc.caom2.Artifact;
+import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.Plane;
+import ca.nrc.cadc.caom2.compute.CaomWCSValidator;
+import ca.nrc.cadc.caom2.compute.ComputeUtil;
+import ca.nrc.cadc.caom2.util.CaomValidator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import org.apache.log4j.Logger;
+
+/**
+ * Validate observations and compute plane metadata in a bounded fork-join pool.
+ * The planes of an observation are independent so they are computed as concurrent
+ * sub-tasks; for a batch of observations (compute) the observations are also
+ * processed concurrently. The pool size defaults to the number of available
+ * processors since the work is CPU bound (WCSLib via JNI). The owner must call
+ * shutdown when the instance is no longer needed.
+ *
+ * @author agent
+ */
+public class PlaneMetadataComputer {
+
+    private static final Logger log = Logger.getLogger(PlaneMetadataComputer.class);
+
+    private final ForkJoinPool pool;
+
+    public PlaneMetadataComputer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public PlaneMetadataComputer(int nthreads) {
+        this.pool = new ForkJoinPool(Math.max(1, nthreads));
+        log.debug("compute pool: " + pool.getParallelism());
+    }
+
+    /**
+     * Validate and compute plane metadata for all observations. Failures do
+     * not stop other observations; they are returned so the caller can handle
+     * them in the same place as other per-observation failures.
+     *
+     * @param observations observations to validate and compute
+     * @return map of observation ID to the first failure for that observation
+     */
+    public Map<UUID, Throwable> compute(List<Observation> observations) {
+        List<ObservationTask> tasks = new ArrayList<ObservationTask>(observations.size());
+        for (Observation o : observations) {
+            tasks.add(new ObservationTask(o));
+        }
+        pool.invoke(new BatchTask(tasks));
+
+        Map<UUID, Throwable> ret = new HashMap<UUID, Throwable>();
+        for (ObservationTask t : tasks) {
+            if (t.fail != null) {
+                ret.put(t.obs.getID(), t.fail);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Compute metadata for all planes of one observation (no validation). Any
+     * previously computed metadata is cleared first.
+     *
+     * @param obs the observation
+     * @throws PlaneFailure for the first plane (in plane order) that failed
+     */
+    public void computePlanes(Observation obs) throws PlaneFailure {
+        List<PlaneTask> tasks = new ArrayList<PlaneTask>(obs.getPlanes().size());
+        for (Plane p : obs.getPlanes()) {
+            tasks.add(new PlaneTask(obs, p));
+        }
+        if (tasks.size() == 1) {
+            tasks.get(0).compute();
+        } else if (!tasks.isEmpty()) {
+            pool.invoke(new BatchTask(tasks));
+        }
+        checkPlanes(tasks);
+    }
+
+    /**
+     * Validate an observation: the model constraints and the WCS of all artifacts.
+     * This is the validation done by compute before plane metadata is computed.
+     *
+     * @param obs the observation
+     * @throws IllegalArgumentException if the observation is not valid
+     */
+    public static void validate(Observation obs) {
+        CaomValidator.validate(obs);
+
+        for (Plane p : obs.getPlanes()) {
+            for (Artifact a : p.getArtifacts()) {
+                CaomWCSValidator.validate(a);
+            }
+        }
+    }
+
+    /**
+     * Run a task in the pool; the caller must join the task.
+     *
+     * @param task the task
+     */
+    public void execute(ForkJoinTask<?> task) {
+        pool.execute(task);
+    }
+
+    /**
+     * Create a checksum cache that computes large observations in this pool.
+     *
+     * @return a new checksum cache
+     */
+    public MetaChecksumCache newMetaChecksumCache() {
+        return new MetaChecksumCache(pool);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static void checkPlanes(List<PlaneTask> tasks) throws PlaneFailure {
+        for (PlaneTask pt : tasks) {
+            if (pt.fail != null) {
+                throw new PlaneFailure(pt.plane, pt.fail);
+            }
+        }
+    }
+
+    /**
+     * Failure to compute metadata for a plane; the cause is the original failure.
+     */
+    public static class PlaneFailure extends Exception {
+        private final Plane plane;
+
+        PlaneFailure(Plane plane, Throwable cause) {
+            super("failed to compute metadata for plane " + plane.getProductID(), cause);
+            this.plane = plane;
+        }
+
+        public Plane getPlane() {
+            return plane;
+        }
+    }
+
+    private static class BatchTask extends RecursiveAction {
+        private final List<? extends RecursiveAction> tasks;
+
+        BatchTask(List<? extends RecursiveAction> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(tasks);
+        }
+    }
+
+    private static class ObservationTask extends RecursiveAction {
+        private final Observation obs;
+        private Throwable fail;
+
+        ObservationTask(Observation obs) {
+            this.obs = obs;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                validate(obs);
+
+                log.debug("computePlaneMetadata: " + obs.getObservationID());
+                List<PlaneTask> planeTasks = new ArrayList<PlaneTask>(obs.getPlanes().size());
+                for (Plane p : obs.getPlanes()) {
+                    planeTasks.add(new PlaneTask(obs, p));
+                }
+                invokeAll(planeTasks);
+                checkPlanes(planeTasks);
+            } catch (PlaneFailure ex) {
+                // original failure so callers classify it as before
+                this.fail = ex.getCause();
+            } catch (Throwable t) {
+                this.fail = t;
+            }
+        }
+    }
+
+    private static class PlaneTask extends RecursiveAction {
+        private final Observation obs;
+        private final Plane plane;
+        private Throwable fail;
+
+        PlaneTask(Observation obs, Plane plane) {
+            this.obs = obs;
+            this.plane = plane;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                ComputeUtil.clearTransientState(plane);
+                ComputeUtil.computeTransientState(obs, plane);
+            } catch (Throwable t) {
+                this.fail = t;
+            }
+        }
+    }
+}
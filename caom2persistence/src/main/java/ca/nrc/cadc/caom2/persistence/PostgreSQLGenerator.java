@@ -119,6 +119,12 @@ public class PostgreSQLGenerator extends BaseSQLGenerator {
         return "LIMIT " + batchSize;
     }
 
+    @Override
+    protected String getLockConstraint(String alias) {
+        // only lock the observation row: not allowed on the nullable side of outer joins
+        return "FOR UPDATE OF " + alias;
+    }
+
     @Override
     protected String getUpdateAssetSQL(Class asset, Class ra, boolean add) {
         StringBuilder sb = new StringBuilder();
@@ -135,16 +141,35 @@ public class PostgreSQLGenerator extends BaseSQLGenerator {
             sb.append(", $$''$$, '', 'g')::tsvector"); // remove all tick marks before cast
         }
         sb.append(" WHERE ");
-        if (PlaneMetaReadAccess.class.equals(ra) && !Plane.class.equals(asset)) {
-            sb.append(getPrimaryKeyColumn(Plane.class)); // HACK: only works because column name is the same in all tables
-        } else {
-            sb.append(getPrimaryKeyColumn(asset));
-        }
+        sb.append(getAssetKeyColumn(asset, ra));
+        sb.append(" = ?");
+
+        return sb.toString();
+    }
+
+    @Override
+    protected String getSetAssetSQL(Class asset, Class ra) {
+        StringBuilder sb = new StringBuilder();
+        String col = getReadAccessCol(ra);
+
+        sb.append("UPDATE ");
+        sb.append(getTable(asset));
+        sb.append(" SET ").append(col).append(" = ?::tsvector");
+        sb.append(" WHERE ");
+        sb.append(getAssetKeyColumn(asset, ra));
         sb.append(" = ?");
 
         return sb.toString();
     }
 
+    // column used to find the asset(s) for a read access tuple
+    protected String getAssetKeyColumn(Class asset, Class ra) {
+        if (PlaneMetaReadAccess.class.equals(ra) && !Plane.class.equals(asset)) {
+            return getPrimaryKeyColumn(Plane.class); // HACK: only works because column name is the same in all tables
+        }
+        return getPrimaryKeyColumn(asset);
+    }
+
     @Override
     protected String literal(UUID value) {
         // uuid datatype accepts a string with the standard hex string format
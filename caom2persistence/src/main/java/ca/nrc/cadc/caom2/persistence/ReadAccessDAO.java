@@ -72,8 +72,12 @@ package ca.nrc.cadc.caom2.persistence;
 import ca.nrc.cadc.caom2.access.ReadAccess;
 import ca.nrc.cadc.caom2.persistence.skel.Skeleton;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import org.apache.log4j.Logger;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -218,6 +222,98 @@ public class ReadAccessDAO extends AbstractCaomEntityDAO<ReadAccess> {
         }
     }
 
+    /**
+     * Put a batch of ReadAccess tuples. Tuples are inserted or updated with
+     * JDBC batch statements and, if the asset tables store read access groups,
+     * each affected asset is updated once from the complete set of tuples
+     * rather than once per tuple. The caller is responsible for transaction
+     * management; the batch should normally be put inside a single transaction.
+     *
+     * @param batch
+     * @throws DuplicateEntityException
+     */
+    public void put(List<ReadAccess> batch)
+            throws DuplicateEntityException {
+        checkInit();
+        if (batch == null) {
+            throw new IllegalArgumentException("arg cannot be null");
+        }
+        if (readOnly) {
+            throw new UnsupportedOperationException("put in readOnly mode");
+        }
+        log.debug("PUT: " + batch.size() + " tuples");
+        long t = System.currentTimeMillis();
+
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+            // each type of tuple is stored in a separate table
+            Map<Class, List<ReadAccess>> byClass = new LinkedHashMap<Class, List<ReadAccess>>();
+            for (ReadAccess ra : batch) {
+                List<ReadAccess> tuples = byClass.get(ra.getClass());
+                if (tuples == null) {
+                    tuples = new ArrayList<ReadAccess>();
+                    byClass.put(ra.getClass(), tuples);
+                }
+                tuples.add(ra);
+            }
+
+            for (Map.Entry<Class, List<ReadAccess>> me : byClass.entrySet()) {
+                Class<? extends ReadAccess> c = me.getKey();
+                List<ReadAccess> tuples = me.getValue();
+
+                List<UUID> ids = new ArrayList<UUID>(tuples.size());
+                for (ReadAccess ra : tuples) {
+                    ids.add(ra.getID());
+                }
+                String sql = gen.getSelectSQL(c, ids);
+                log.debug("PUT: " + sql);
+                List<ReadAccess> curList = jdbc.query(sql, gen.getReadAccessMapper(c));
+                Map<UUID, ReadAccess> cur = new HashMap<UUID, ReadAccess>();
+                for (ReadAccess ra : curList) {
+                    cur.put(ra.getID(), ra);
+                }
+
+                List<ReadAccess> inserts = new ArrayList<ReadAccess>();
+                List<ReadAccess> updates = new ArrayList<ReadAccess>();
+                for (ReadAccess ra : tuples) {
+                    ReadAccess cra = cur.get(ra.getID());
+                    URI curMetaChecksum = null;
+                    if (cra != null) {
+                        curMetaChecksum = cra.getMetaChecksum();
+                    }
+                    updateEntity(ra, cra != null, curMetaChecksum, null);
+                    if (cra == null) {
+                        inserts.add(ra);
+                    } else if (forceUpdate || !ra.getMetaChecksum().equals(curMetaChecksum)) {
+                        updates.add(ra);
+                    } else {
+                        log.debug("PUT skip: " + ra.getClass().getSimpleName() + " " + ra.getID());
+                    }
+                }
+                log.debug("PUT: " + c.getSimpleName() + " insert: " + inserts.size() + " update: " + updates.size());
+
+                EntityBatchPut op = gen.getEntityBatchPut(c);
+                op.setValues(inserts, updates);
+                op.execute(jdbc);
+            }
+        } catch (DataIntegrityViolationException ex) {
+            if (ex.toString().contains("duplicate key")) {
+                throw new DuplicateEntityException("batch of " + batch.size() + " tuples", ex);
+            }
+            throw ex;
+        } catch (TransientDataAccessResourceException ex) {
+            // found this with jTDS driver
+            if (ex.toString().contains("duplicate key")) {
+                throw new DuplicateEntityException("batch of " + batch.size() + " tuples", ex);
+            }
+            throw ex;
+        } finally {
+            long dt = System.currentTimeMillis() - t;
+            log.debug("PUT: " + batch.size() + " tuples " + dt + "ms");
+        }
+    }
+
     public void delete(Class<? extends ReadAccess> c, UUID id) {
         checkInit();
         if (c == null || id == null) {
@@ -243,6 +339,14 @@ public class ReadAccessDAO extends AbstractCaomEntityDAO<ReadAccess> {
     }
 
     private void updateEntity(ReadAccess ra, Skeleton s) {
+        if (s == null) {
+            updateEntity(ra, false, null, null);
+        } else {
+            updateEntity(ra, true, s.metaChecksum, s.stateCode);
+        }
+    }
+
+    private void updateEntity(ReadAccess ra, boolean exists, URI curMetaChecksum, Integer curStateCode) {
         int nsc = ra.getStateCode();
 
         digest.reset();
@@ -253,12 +357,12 @@ public class ReadAccessDAO extends AbstractCaomEntityDAO<ReadAccess> {
         }
 
         boolean delta = false;
-        if (s == null) {
+        if (!exists) {
             delta = true;
-        } else if (s.metaChecksum != null) {
-            delta = !ra.getMetaChecksum().equals(s.metaChecksum);
+        } else if (curMetaChecksum != null) {
+            delta = !ra.getMetaChecksum().equals(curMetaChecksum);
         } else {
-            delta = (s.stateCode != nsc); // fallback
+            delta = (curStateCode == null || curStateCode != nsc); // fallback
         }
         if (delta) {
             Util.assignLastModified(ra, new Date(), "lastModified");
@@ -76,6 +76,7 @@ import ca.nrc.cadc.caom2.access.ReadAccess;
 import ca.nrc.cadc.caom2.persistence.skel.Skeleton;
 import java.net.URI;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
@@ -108,6 +109,34 @@ public interface SQLGenerator {
      */
     String getSelectSQL(ObservationURI uri, int depth, boolean skeleton);
 
+    /**
+     * Get SQL to select the ObservationState (maxLastModified and accMetaChecksum)
+     * of a single observation.
+     *
+     * @param uri
+     * @return
+     */
+    String getObservationStateSQL(ObservationURI uri);
+
+    /**
+     * Get SQL to select an ObservationSkeleton from a URI and lock the observation
+     * row until the end of the current transaction (if supported by the database).
+     *
+     * @param uri
+     * @param depth
+     * @return
+     */
+    String getSelectForUpdateSQL(ObservationURI uri, int depth);
+
+    /**
+     * Get SQL to select multiple observations from URIs.
+     *
+     * @param uris
+     * @param depth
+     * @return
+     */
+    String getSelectSQL(List<ObservationURI> uris, int depth);
+
     /**
      * Get SQL to select an Observation or ObservationSkeleton from the internal
      * ID.
@@ -136,6 +165,15 @@ public interface SQLGenerator {
      */
     String getSelectSQL(Class<? extends ReadAccess> c, UUID assetID, URI groupID);
 
+    /**
+     * Get SQL to select multiple entities by primary key.
+     *
+     * @param c
+     * @param ids
+     * @return
+     */
+    String getSelectSQL(Class c, List<UUID> ids);
+
     String getSelectSQL(Class c, Date minLastModified, Date maxLastModified, Integer batchSize);
 
     String getSelectSQL(Class c, Date minLastModified, Date maxLastModified, Integer batchSize, boolean ascending, String collection);
@@ -162,6 +200,8 @@ public interface SQLGenerator {
 
     EntityPut getEntityPut(Class<? extends CaomEntity> c, boolean isUpdate);
 
+    EntityBatchPut getEntityBatchPut(Class<? extends CaomEntity> c);
+
     EntityDelete getEntityDelete(Class<? extends CaomEntity> c, boolean primaryKey);
 
     //String getDeleteSQL(Class c, UUID id, boolean primaryKey);
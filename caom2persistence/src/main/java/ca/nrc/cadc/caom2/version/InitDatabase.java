@@ -118,6 +118,17 @@ public class InitDatabase {
         "caom2.SIAv1.sql"
     };
 
+    // optional alternate encoding of read access groups in asset tables
+    public static final String INT_GROUPS_MODEL_NAME = "CAOM-groups";
+    public static final String INT_GROUPS_VERSION = "int[]";
+
+    static String[] INT_GROUPS_SQL = new String[]{
+        "caom2.upgrade-intgroups.sql",
+        "caom2.ObsCore.sql",
+        "caom2.ObsCore-x.sql",
+        "caom2.SIAv1.sql"
+    };
+
     private final DataSource dataSource;
     private final String database;
     private final String schema;
@@ -129,7 +140,9 @@ public class InitDatabase {
     }
 
     /**
-     * Create or upgrade the configured database with CAOM tables and indices.
+     * Create or upgrade the configured database with CAOM tables and indices. If
+     * the read access groups were migrated to int[] (see doInitIntArrayGroups) the
+     * views are recreated with group names (see toGroupNamesView).
      *
      * @return true if tables were created/upgraded; false for no-op
      */
@@ -161,6 +174,7 @@ public class InitDatabase {
             } else if (cur.version != null) {
                 throw new UnsupportedOperationException("doInit: version upgrade not supported: " + cur.version + " -> " + MODEL_VERSION);
             }
+            boolean intGroups = upgrade && INT_GROUPS_VERSION.equals(vdao.get(INT_GROUPS_MODEL_NAME).version);
 
             // start transaction
             txn.startTransaction();
@@ -170,6 +184,9 @@ public class InitDatabase {
                 log.info("process file: " + fname);
                 List<String> statements = parseDDL(fname, schema);
                 for (String sql : statements) {
+                    if (intGroups) {
+                        sql = toGroupNamesView(sql, schema);
+                    }
                     if (upgrade) {
                         log.info("execute:\n" + sql);
                     } else {
@@ -212,6 +229,100 @@ public class InitDatabase {
         }
     }
     
+    /**
+     * Create or upgrade the configured database (see doInit) and then migrate
+     * the read access group columns of the asset tables from tsvector (group
+     * names) to int[] (ReadAccessGroup IDs) with GIN indices. This is required
+     * for use with PostgreSQLIntArrayGenerator. The migration is tracked in the
+     * ModelVersion table so it is only performed once. The ObsCore and SIAv1 views
+     * are recreated with metaReadAccessGroups still exposed as a tsvector of
+     * group names (see toGroupNamesView), here and whenever doInit recreates them.
+     *
+     * @return true if tables were created/upgraded/migrated; false for no-op
+     */
+    public boolean doInitIntArrayGroups() {
+        boolean ret = doInit();
+
+        log.debug("doInitIntArrayGroups: " + INT_GROUPS_MODEL_NAME + " " + INT_GROUPS_VERSION);
+        long t = System.currentTimeMillis();
+
+        TransactionManager txn = new DatabaseTransactionManager(dataSource);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+        try {
+            ModelVersionDAO vdao = new ModelVersionDAO(dataSource, database, schema);
+            ModelVersion cur = vdao.get(INT_GROUPS_MODEL_NAME);
+            log.debug("found: " + cur);
+            if (cur.version != null && INT_GROUPS_VERSION.equals(cur.version)) {
+                log.debug("doInitIntArrayGroups: already up to date - nothing to do");
+                return ret;
+            }
+            if (cur.version != null) {
+                throw new UnsupportedOperationException("doInitIntArrayGroups: version upgrade not supported: "
+                        + cur.version + " -> " + INT_GROUPS_VERSION);
+            }
+
+            txn.startTransaction();
+
+            for (String fname : INT_GROUPS_SQL) {
+                log.info("process file: " + fname);
+                List<String> statements = parseDDL(fname, schema);
+                for (String sql : statements) {
+                    sql = toGroupNamesView(sql, schema);
+                    log.info("execute:\n" + sql);
+                    jdbc.execute(sql);
+                }
+            }
+            cur.version = INT_GROUPS_VERSION;
+            vdao.put(cur);
+
+            txn.commitTransaction();
+            return true;
+        } catch (Exception ex) {
+            log.debug("epic fail", ex);
+
+            if (txn.isOpen()) {
+                try {
+                    txn.rollbackTransaction();
+                } catch (Exception oops) {
+                    log.error("failed to rollback transaction", oops);
+                }
+            }
+            throw new RuntimeException("failed to migrate read access groups", ex);
+        } finally {
+            if (txn.isOpen()) {
+                log.error("BUG: open transaction in finally");
+                try {
+                    txn.rollbackTransaction();
+                } catch (Exception ex) {
+                    log.error("failed to rollback transaction in finally", ex);
+                }
+            }
+
+            long dt = System.currentTimeMillis() - t;
+            log.debug("doInitIntArrayGroups: " + INT_GROUPS_MODEL_NAME + " " + INT_GROUPS_VERSION + " " + dt + "ms");
+        }
+    }
+
+    /**
+     * Rewrite a view definition so the int[] read access group columns are exposed
+     * as the tsvector of group names (via the readAccessGroupNames function created
+     * in caom2.upgrade-intgroups.sql). This keeps the view columns compatible with
+     * existing access control predicates that use tsvector operators. Statements that
+     * do not create a view are returned unchanged.
+     *
+     * @param sql statement from parseDDL
+     * @param schema schema name
+     * @return statement to execute
+     */
+    static String toGroupNamesView(String sql, String schema) {
+        if (!sql.toLowerCase().startsWith("create or replace view")) {
+            return sql;
+        }
+        return sql.replaceAll("(\\w+)\\.metaReadAccessGroups\\b",
+                schema + ".readAccessGroupNames($1.metaReadAccessGroups)");
+    }
+
     static List<String> parseDDL(String fname, String schema) throws IOException {
         List<String> ret = new ArrayList<>();
 
@@ -0,0 +1,164 @@
+
+-- optional alternate encoding of read access groups in the asset tables:
+-- int[] of ReadAccessGroup.gid instead of tsvector of group names
+-- see PostgreSQLIntArrayGenerator and InitDatabase.doInitIntArrayGroups
+
+drop view if exists <schema>.ObsPart;
+drop view if exists <schema>.ObsFile;
+drop view if exists <schema>.ObsCore;
+drop view if exists <schema>.SIAv1;
+
+create table <schema>.ReadAccessGroup
+(
+    groupName varchar(128) not null,
+    gid serial primary key
+)
+;
+
+create unique index i_rag_groupName
+    on <schema>.ReadAccessGroup (groupName)
+;
+
+-- all group names currently in use (child asset groups are the same as the plane)
+insert into <schema>.ReadAccessGroup (groupName)
+select distinct g from
+(
+    select regexp_split_to_table(replace(metaReadAccessGroups::text, $$'$$, ''), ' ') as g from <schema>.Observation
+    union
+    select regexp_split_to_table(replace(metaReadAccessGroups::text, $$'$$, ''), ' ') as g from <schema>.Plane
+    union
+    select regexp_split_to_table(replace(dataReadAccessGroups::text, $$'$$, ''), ' ') as g from <schema>.Plane
+) as names
+where g != ''
+;
+
+-- tsvector of group names for the int[] group columns: the ObsCore and SIAv1 views
+-- project metaReadAccessGroups through this function so existing access control
+-- predicates on the views (tsvector operators on group names) keep working; queries
+-- that need the GIN index should use the int[] columns of the asset tables directly
+create or replace function <schema>.readAccessGroupNames(int[]) returns tsvector as
+$$ select array_to_tsvector(array(select r.groupName from <schema>.ReadAccessGroup r where r.gid = any($1))) $$
+language sql stable
+;
+
+-- Observation --
+alter table <schema>.Observation
+    add column metaReadAccessGroups_int int[] default '{}'
+;
+
+update <schema>.Observation set
+    metaReadAccessGroups_int = array(select r.gid from <schema>.ReadAccessGroup r
+        where r.groupName = any(string_to_array(replace(metaReadAccessGroups::text, $$'$$, ''), ' ')) order by r.gid)
+;
+
+alter table <schema>.Observation
+    drop column metaReadAccessGroups
+;
+
+alter table <schema>.Observation
+    rename column metaReadAccessGroups_int to metaReadAccessGroups
+;
+
+create index Observation_i_metaReadAccessGroups
+    on <schema>.Observation using gin (metaReadAccessGroups)
+;
+
+-- Plane --
+alter table <schema>.Plane
+    add column metaReadAccessGroups_int int[] default '{}',
+    add column dataReadAccessGroups_int int[] default '{}'
+;
+
+update <schema>.Plane set
+    metaReadAccessGroups_int = array(select r.gid from <schema>.ReadAccessGroup r
+        where r.groupName = any(string_to_array(replace(metaReadAccessGroups::text, $$'$$, ''), ' ')) order by r.gid),
+    dataReadAccessGroups_int = array(select r.gid from <schema>.ReadAccessGroup r
+        where r.groupName = any(string_to_array(replace(dataReadAccessGroups::text, $$'$$, ''), ' ')) order by r.gid)
+;
+
+alter table <schema>.Plane
+    drop column metaReadAccessGroups,
+    drop column dataReadAccessGroups
+;
+
+alter table <schema>.Plane
+    rename column metaReadAccessGroups_int to metaReadAccessGroups
+;
+
+alter table <schema>.Plane
+    rename column dataReadAccessGroups_int to dataReadAccessGroups
+;
+
+create index Plane_i_metaReadAccessGroups
+    on <schema>.Plane using gin (metaReadAccessGroups)
+;
+
+create index Plane_i_dataReadAccessGroups
+    on <schema>.Plane using gin (dataReadAccessGroups)
+;
+
+-- Artifact --
+alter table <schema>.Artifact
+    add column metaReadAccessGroups_int int[] default '{}'
+;
+
+update <schema>.Artifact set
+    metaReadAccessGroups_int = array(select r.gid from <schema>.ReadAccessGroup r
+        where r.groupName = any(string_to_array(replace(metaReadAccessGroups::text, $$'$$, ''), ' ')) order by r.gid)
+;
+
+alter table <schema>.Artifact
+    drop column metaReadAccessGroups
+;
+
+alter table <schema>.Artifact
+    rename column metaReadAccessGroups_int to metaReadAccessGroups
+;
+
+create index Artifact_i_metaReadAccessGroups
+    on <schema>.Artifact using gin (metaReadAccessGroups)
+;
+
+-- Part --
+alter table <schema>.Part
+    add column metaReadAccessGroups_int int[] default '{}'
+;
+
+update <schema>.Part set
+    metaReadAccessGroups_int = array(select r.gid from <schema>.ReadAccessGroup r
+        where r.groupName = any(string_to_array(replace(metaReadAccessGroups::text, $$'$$, ''), ' ')) order by r.gid)
+;
+
+alter table <schema>.Part
+    drop column metaReadAccessGroups
+;
+
+alter table <schema>.Part
+    rename column metaReadAccessGroups_int to metaReadAccessGroups
+;
+
+create index Part_i_metaReadAccessGroups
+    on <schema>.Part using gin (metaReadAccessGroups)
+;
+
+-- Chunk --
+alter table <schema>.Chunk
+    add column metaReadAccessGroups_int int[] default '{}'
+;
+
+update <schema>.Chunk set
+    metaReadAccessGroups_int = array(select r.gid from <schema>.ReadAccessGroup r
+        where r.groupName = any(string_to_array(replace(metaReadAccessGroups::text, $$'$$, ''), ' ')) order by r.gid)
+;
+
+alter table <schema>.Chunk
+    drop column metaReadAccessGroups
+;
+
+alter table <schema>.Chunk
+    rename column metaReadAccessGroups_int to metaReadAccessGroups
+;
+
+create index Chunk_i_metaReadAccessGroups
+    on <schema>.Chunk using gin (metaReadAccessGroups)
+;
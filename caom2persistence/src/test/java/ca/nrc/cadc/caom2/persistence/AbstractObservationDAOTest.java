@@ -599,6 +599,57 @@ public abstract class AbstractObservationDAOTest
         }
     }
 
+    @Test
+    public void testConditionalPut()
+    {
+        try
+        {
+            Observation orig = new SimpleObservation("FOO", "bar");
+            Plane pl = new Plane("bar1");
+            orig.getPlanes().add(pl);
+
+            // must exist
+            Assert.assertEquals(ObservationDAO.PutResult.NOT_FOUND, dao.put(orig, Boolean.TRUE, null));
+            Assert.assertFalse(dao.exists(orig.getURI()));
+
+            // must not exist
+            Assert.assertEquals(ObservationDAO.PutResult.CREATED, dao.put(orig, Boolean.FALSE, null));
+            Assert.assertTrue(dao.exists(orig.getURI()));
+            Assert.assertEquals(ObservationDAO.PutResult.CONFLICT, dao.put(orig, Boolean.FALSE, null));
+
+            // same URI, different ID
+            Observation dupe = new SimpleObservation("FOO", "bar");
+            Assert.assertEquals(ObservationDAO.PutResult.CONFLICT, dao.put(dupe, null, null));
+            Assert.assertEquals(orig.getID(), dao.getID(orig.getURI()));
+
+            // stored observation was modified
+            ObservationState cur = dao.getState(orig.getURI());
+            Assert.assertNotNull(cur.accMetaChecksum);
+            URI other = URI.create("md5:0123456789abcdef0123456789abcdef");
+            pl.dataRelease = new Date();
+            Assert.assertEquals(ObservationDAO.PutResult.PRECONDITION_FAILED, dao.put(orig, Boolean.TRUE, other));
+            Assert.assertEquals(cur.accMetaChecksum, dao.getState(orig.getURI()).accMetaChecksum);
+
+            // expected accMetaChecksum
+            Assert.assertEquals(ObservationDAO.PutResult.UPDATED, dao.put(orig, Boolean.TRUE, cur.accMetaChecksum));
+            Assert.assertFalse(cur.accMetaChecksum.equals(dao.getState(orig.getURI()).accMetaChecksum));
+
+            // either
+            Assert.assertEquals(ObservationDAO.PutResult.UPDATED, dao.put(orig, null, null));
+
+            dao.delete(orig.getID());
+            Assert.assertEquals(ObservationDAO.PutResult.CREATED, dao.put(orig, null, null));
+            dao.delete(orig.getID());
+
+            Assert.assertFalse("open transaction", txnManager.isOpen());
+        }
+        catch(Exception unexpected)
+        {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
     @Test
     public void testPutSimpleObservation()
     {
@@ -82,6 +82,7 @@ import ca.nrc.cadc.caom2.access.ObservationMetaReadAccess;
 import ca.nrc.cadc.caom2.access.ReadAccess;
 import java.lang.reflect.Constructor;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -285,6 +286,62 @@ public abstract class AbstractReadAccessDAOTest
         }
     }
     
+    @Test
+    public void testPutBatch()
+    {
+        UUID assetID = genID();
+        Observation obs = new SimpleObservation("FOO", "bar-" + UUID.randomUUID());
+        Util.assignID(obs, assetID);
+        Plane pl = new Plane("bar1");
+        Util.assignID(pl, assetID);
+        obs.getPlanes().add(pl);
+
+        try
+        {
+            // cleanup previous test run
+            obsDAO.delete(assetID);
+
+            obsDAO.put(obs);
+
+            for (Class c : entityClasses)
+            {
+                String s = c.getSimpleName();
+                Constructor ctor = c.getConstructor(UUID.class, URI.class);
+                List<ReadAccess> batch = new ArrayList<ReadAccess>();
+                batch.add((ReadAccess) ctor.newInstance(assetID, new URI("ivo://cadc.nrc.ca/gms?FOO-777")));
+                batch.add((ReadAccess) ctor.newInstance(assetID, new URI("ivo://cadc.nrc.ca/gms?FOO-888")));
+                batch.add((ReadAccess) ctor.newInstance(assetID, new URI("ivo://cadc.nrc.ca/gms?FOO-999")));
+
+                dao.put(batch);
+                for (ReadAccess expected : batch)
+                {
+                    ReadAccess actual = dao.get(expected.getClass(), expected.getID());
+                    checkPut(s, expected, actual);
+                }
+
+                // idempotent batch put
+                dao.put(batch);
+                for (ReadAccess expected : batch)
+                {
+                    ReadAccess actual = dao.get(expected.getClass(), expected.getID());
+                    checkPut(s, expected, actual);
+                }
+
+                for (ReadAccess expected : batch)
+                {
+                    dao.delete(expected.getClass(), expected.getID());
+                    ReadAccess actual = dao.get(expected.getClass(), expected.getID());
+                    checkDelete(s, expected, actual);
+                }
+            }
+        }
+        catch(Exception unexpected)
+        {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
     @Test
     public void testRejectDuplicate()
     {
@@ -85,7 +85,9 @@ import ca.nrc.cadc.caom2.access.PlaneMetaReadAccess;
 import ca.nrc.cadc.date.DateUtil;
 import ca.nrc.cadc.util.Log4jInit;
 import java.text.DateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -206,6 +208,32 @@ public class BaseSQLGeneratorTest
         }
     }
 
+    @Test
+    public void testSelectMultipleObservationSQL()
+    {
+        try
+        {
+            List<ObservationURI> uris = new ArrayList<ObservationURI>();
+            uris.add(new ObservationURI("FOO", "obs1"));
+            uris.add(new ObservationURI("FOO", "obs2"));
+            uris.add(new ObservationURI("BAR", "obs1"));
+            String sql = gen.getSelectSQL(uris, 5);
+            Assert.assertNotNull(sql);
+            log.debug("SQL [" + sql.length() + "] " + sql);
+
+            for (int t=0; t<5; t++)
+                Assert.assertTrue(tables[t], sql.contains(tables[t]));
+            Assert.assertTrue(sql.contains("IN ('obs1','obs2')"));
+            Assert.assertTrue(sql.contains("'BAR'"));
+            Assert.assertTrue(sql.contains(" OR "));
+        }
+        catch(Exception unexpected)
+        {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
     @Test
     public void testSelectReadAccessSQL()
     {
@@ -0,0 +1,283 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+package ca.nrc.cadc.caom2.persistence;
+
+import ca.nrc.cadc.caom2.Artifact;
+import ca.nrc.cadc.caom2.Chunk;
+import ca.nrc.cadc.caom2.DataProductType;
+import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.Part;
+import ca.nrc.cadc.caom2.Plane;
+import ca.nrc.cadc.caom2.ProductType;
+import ca.nrc.cadc.caom2.ReleaseType;
+import ca.nrc.cadc.caom2.SimpleObservation;
+import ca.nrc.cadc.util.Log4jInit;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class MetaChecksumCacheTest
+{
+    private static final Logger log = Logger.getLogger(MetaChecksumCacheTest.class);
+
+    static
+    {
+        Log4jInit.setLevel("ca.nrc.cadc.caom2.persistence", Level.INFO);
+    }
+
+    private Observation getTestObservation()
+    {
+        Observation obs = new SimpleObservation("FOO", "bar");
+        Plane p = new Plane("baz");
+        Artifact a = new Artifact(URI.create("cadc:FOO/bar.fits"), ProductType.SCIENCE, ReleaseType.DATA);
+        Part pa = new Part("0");
+        pa.getChunks().add(new Chunk());
+        a.getParts().add(pa);
+        p.getArtifacts().add(a);
+        obs.getPlanes().add(p);
+        return obs;
+    }
+
+    @Test
+    public void testAssignAll()
+    {
+        try
+        {
+            Observation obs = getTestObservation();
+            MetaChecksumCache checksums = new MetaChecksumCache();
+            URI acc = checksums.assignAll(obs);
+            Assert.assertNotNull(acc);
+            Assert.assertEquals(acc, obs.getAccMetaChecksum());
+            Assert.assertEquals(0, checksums.getHits());
+            Assert.assertEquals(5, checksums.getMisses());
+
+            // same as computing directly
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            Assert.assertEquals(obs.computeMetaChecksum(md5), obs.getMetaChecksum());
+            Assert.assertEquals(obs.computeAccMetaChecksum(md5), acc);
+
+            // unchanged: all hits
+            URI acc2 = checksums.assignAll(obs);
+            Assert.assertEquals(acc, acc2);
+            Assert.assertEquals(5, checksums.getHits());
+            Assert.assertEquals(5, checksums.getMisses());
+        }
+        catch(Exception unexpected)
+        {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testAssignAllParallel()
+    {
+        try
+        {
+            Observation obs = getTestObservation();
+            Plane p2 = new Plane("baz2");
+            obs.getPlanes().add(p2);
+            for (int i = 0; i < MetaChecksumCache.PARALLEL_THRESHOLD; i++)
+            {
+                Artifact a = new Artifact(URI.create("cadc:FOO/bar" + i + ".fits"), ProductType.SCIENCE, ReleaseType.DATA);
+                Part pa = new Part(Integer.toString(i));
+                pa.getChunks().add(new Chunk());
+                a.getParts().add(pa);
+                p2.getArtifacts().add(a);
+            }
+            PlaneMetadataComputer pool = new PlaneMetadataComputer(2);
+            MetaChecksumCache checksums = pool.newMetaChecksumCache();
+            URI acc = checksums.assignAll(obs);
+            pool.shutdown();
+            Assert.assertEquals(0, checksums.getHits());
+            Assert.assertEquals(5 + 1 + 3 * MetaChecksumCache.PARALLEL_THRESHOLD, checksums.getMisses());
+
+            // every entity matches the sequential computation
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            for (Plane p : obs.getPlanes())
+            {
+                for (Artifact a : p.getArtifacts())
+                {
+                    for (Part pa : a.getParts())
+                    {
+                        for (Chunk c : pa.getChunks())
+                        {
+                            Assert.assertEquals(c.computeAccMetaChecksum(md5), c.getAccMetaChecksum());
+                        }
+                        Assert.assertEquals(pa.computeAccMetaChecksum(md5), pa.getAccMetaChecksum());
+                    }
+                    Assert.assertEquals(a.computeAccMetaChecksum(md5), a.getAccMetaChecksum());
+                }
+                Assert.assertEquals(p.computeAccMetaChecksum(md5), p.getAccMetaChecksum());
+            }
+            Assert.assertEquals(obs.computeAccMetaChecksum(md5), acc);
+        }
+        catch(Exception unexpected)
+        {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testAssignAllParallelReference()
+    {
+        try
+        {
+            // several planes, each with enough artifacts to be computed in parallel
+            Observation obs = new SimpleObservation("FOO", "bar");
+            for (int n = 0; n < 3; n++)
+            {
+                Plane p = new Plane("baz" + n);
+                for (int i = 0; i < MetaChecksumCache.PARALLEL_THRESHOLD; i++)
+                {
+                    Artifact a = new Artifact(URI.create("cadc:FOO/bar" + n + "_" + i + ".fits"), ProductType.SCIENCE, ReleaseType.DATA);
+                    for (int j = 0; j < 2; j++)
+                    {
+                        Part pa = new Part(Integer.toString(j));
+                        pa.getChunks().add(new Chunk());
+                        pa.getChunks().add(new Chunk());
+                        a.getParts().add(pa);
+                    }
+                    p.getArtifacts().add(a);
+                }
+                obs.getPlanes().add(p);
+            }
+
+            // reference values computed by the library before anything is assigned
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            Map<UUID, URI> expected = new HashMap<UUID, URI>();
+            for (Plane p : obs.getPlanes())
+            {
+                for (Artifact a : p.getArtifacts())
+                {
+                    expected.put(a.getID(), a.computeAccMetaChecksum(md5));
+                }
+                expected.put(p.getID(), p.computeAccMetaChecksum(md5));
+            }
+            URI expectedAcc = obs.computeAccMetaChecksum(md5);
+            Assert.assertNull(obs.getAccMetaChecksum());
+
+            MetaChecksumCache checksums = new MetaChecksumCache();
+            URI acc = checksums.assignAll(obs);
+            Assert.assertEquals(expectedAcc, acc);
+            Assert.assertEquals(expectedAcc, obs.getAccMetaChecksum());
+            for (Plane p : obs.getPlanes())
+            {
+                Assert.assertEquals(expected.get(p.getID()), p.getAccMetaChecksum());
+                for (Artifact a : p.getArtifacts())
+                {
+                    Assert.assertEquals(expected.get(a.getID()), a.getAccMetaChecksum());
+                }
+            }
+        }
+        catch(Exception unexpected)
+        {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testInvalidate()
+    {
+        try
+        {
+            Observation obs = getTestObservation();
+            MetaChecksumCache checksums = new MetaChecksumCache();
+            URI acc = checksums.assignAll(obs);
+            Plane p = obs.getPlanes().iterator().next();
+            URI pacc = p.getAccMetaChecksum();
+
+            // change the plane: plane and observation recomputed
+            p.dataProductType = DataProductType.IMAGE;
+            URI acc2 = checksums.assignAll(obs);
+            Assert.assertFalse(acc.equals(acc2));
+            Assert.assertFalse(pacc.equals(p.getAccMetaChecksum()));
+            Assert.assertEquals(3, checksums.getHits());
+            Assert.assertEquals(7, checksums.getMisses());
+        }
+        catch(Exception unexpected)
+        {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+}
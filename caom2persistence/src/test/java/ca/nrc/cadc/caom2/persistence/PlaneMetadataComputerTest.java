@@ -0,0 +1,201 @@
+/*
+************************************************************************
+*******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+**************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+*
+*  (c) 2026.                            (c) 2026.
+*  Government of Canada                 Gouvernement du Canada
+*  National Research Council            Conseil national de recherches
+*  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+*  All rights reserved                  Tous droits réservés
+*
+*  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+*  expressed, implied, or               énoncée, implicite ou légale,
+*  statutory, of any kind with          de quelque nature que ce
+*  respect to the software,             soit, concernant le logiciel,
+*  including without limitation         y compris sans restriction
+*  any warranty of merchantability      toute garantie de valeur
+*  or fitness for a particular          marchande ou de pertinence
+*  purpose. NRC shall not be            pour un usage particulier.
+*  liable in any event for any          Le CNRC ne pourra en aucun cas
+*  damages, whether direct or           être tenu responsable de tout
+*  indirect, special or general,        dommage, direct ou indirect,
+*  consequential or incidental,         particulier ou général,
+*  arising from the use of the          accessoire ou fortuit, résultant
+*  software.  Neither the name          de l'utilisation du logiciel. Ni
+*  of the National Research             le nom du Conseil National de
+*  Council of Canada nor the            Recherches du Canada ni les noms
+*  names of its contributors may        de ses  participants ne peuvent
+*  be used to endorse or promote        être utilisés pour approuver ou
+*  products derived from this           promouvoir les produits dérivés
+*  software without specific prior      de ce logiciel sans autorisation
+*  written permission.                  préalable et particulière
+*                                       par écrit.
+*
+*  This file is part of the             Ce fichier fait partie du projet
+*  OpenCADC project.                    OpenCADC.
+*
+*  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+*  you can redistribute it and/or       vous pouvez le redistribuer ou le
+*  modify it under the terms of         modifier suivant les termes de
+*  the GNU Affero General Public        la “GNU Affero General Public
+*  License as published by the          License” telle que publiée
+*  Free Software Foundation,            par la Free Software Foundation
+*  either version 3 of the              : soit la version 3 de cette
+*  License, or (at your option)         licence, soit (à votre gré)
+*  any later version.                   toute version ultérieure.
+*
+*  OpenCADC is distributed in the       OpenCADC est distribué
+*  hope that it will be useful,         dans l’espoir qu’il vous
+*  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+*  without even the implied             GARANTIE : sans même la garantie
+*  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+*  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+*  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+*  General Public License for           Générale Publique GNU Affero
+*  more details.                        pour plus de détails.
+*
+*  You should have received             Vous devriez avoir reçu une
+*  a copy of the GNU Affero             copie de la Licence Générale
+*  General Public License along         Publique GNU Affero avec
+*  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+*  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+*                                       <http://www.gnu.org/licenses/>.
+*
+*  $Revision: 5 $
+*
+************************************************************************
+*/
+
+
+package ca.nrc.cadc.caom2.persistence;
+
+import ca.nrc.cadc.caom2.Artifact;
+import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.Plane;
+import ca.nrc.cadc.caom2.SimpleObservation;
+import ca.nrc.cadc.util.Log4jInit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author agent
+ */
+public class PlaneMetadataComputerTest
+{
+    private static final Logger log = Logger.getLogger(PlaneMetadataComputerTest.class);
+
+    static
+    {
+        Log4jInit.setLevel("ca.nrc.cadc.caom2.persistence", Level.INFO);
+    }
+
+    private final PlaneMetadataComputer computer = new PlaneMetadataComputer(2);
+
+    @After
+    public void shutdown()
+    {
+        computer.shutdown();
+    }
+
+    @Test
+    public void testComputePlanes()
+    {
+        try
+        {
+            Observation obs = new SimpleObservation("FOO", "bar");
+            obs.getPlanes().add(new Plane("baz1"));
+            obs.getPlanes().add(new Plane("baz2"));
+            computer.computePlanes(obs);
+        }
+        catch(Exception unexpected)
+        {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testComputePlanesFailure()
+    {
+        try
+        {
+            Observation obs = new SimpleObservation("FOO", "bar");
+            obs.getPlanes().add(new Plane("baz1"));
+            Plane fail = new FailingPlane("baz2");
+            obs.getPlanes().add(fail);
+            try
+            {
+                computer.computePlanes(obs);
+                Assert.fail("expected PlaneFailure");
+            }
+            catch(PlaneMetadataComputer.PlaneFailure expected)
+            {
+                log.debug("caught expected: " + expected);
+                Assert.assertSame(fail, expected.getPlane());
+                Assert.assertEquals(FailingPlane.MESSAGE, expected.getCause().getMessage());
+            }
+        }
+        catch(Exception unexpected)
+        {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testCompute()
+    {
+        try
+        {
+            Observation ok = new SimpleObservation("FOO", "ok");
+            ok.getPlanes().add(new Plane("baz"));
+            Observation bad = new SimpleObservation("FOO", "bad");
+            bad.getPlanes().add(new Plane("baz1"));
+            bad.getPlanes().add(new FailingPlane("baz2"));
+
+            List<Observation> batch = new ArrayList<Observation>();
+            batch.add(ok);
+            batch.add(bad);
+            Map<UUID, Throwable> failures = computer.compute(batch);
+
+            // only the failed observation, with the original failure
+            Assert.assertEquals(1, failures.size());
+            Throwable t = failures.get(bad.getID());
+            Assert.assertNotNull(t);
+            Assert.assertFalse(t instanceof PlaneMetadataComputer.PlaneFailure);
+            Assert.assertEquals(FailingPlane.MESSAGE, t.getMessage());
+        }
+        catch(Exception unexpected)
+        {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    // validation and computation of this plane fail
+    private static class FailingPlane extends Plane
+    {
+        static final String MESSAGE = "failing plane";
+
+        FailingPlane(String productID)
+        {
+            super(productID);
+        }
+
+        @Override
+        public Set<Artifact> getArtifacts()
+        {
+            throw new IllegalStateException(MESSAGE);
+        }
+    }
+}
@@ -70,6 +70,7 @@
 package ca.nrc.cadc.caom2.persistence;
 
 import ca.nrc.cadc.caom2.Observation;
+import ca.nrc.cadc.caom2.ObservationURI;
 import ca.nrc.cadc.caom2.access.ObservationMetaReadAccess;
 import ca.nrc.cadc.date.DateUtil;
 import ca.nrc.cadc.util.Log4jInit;
@@ -173,4 +174,27 @@ public class PostgreSQLGeneratorTest
         }
     }
 
+    @Test
+    public void testSelectForUpdateSQL()
+    {
+        try
+        {
+            ObservationURI uri = new ObservationURI("FOO", "bar");
+            String sql = gen.getSelectForUpdateSQL(uri, SQLGenerator.MAX_DEPTH);
+            log.debug("SQL: " + sql);
+            sql = sql.toLowerCase();
+            Assert.assertTrue(sql.startsWith("select "));
+            Assert.assertTrue(sql.contains("'foo'"));
+            Assert.assertTrue(sql.contains("'bar'"));
+            int i = sql.indexOf(" for update of ");
+            Assert.assertTrue("lock clause", i > 0);
+            Assert.assertTrue("lock clause after order by", i > sql.indexOf(" order by "));
+        }
+        catch(Exception unexpected)
+        {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
 }
@@ -221,4 +221,60 @@ public class InitDatabaseTest
             Assert.fail("unexpected exception: " + unexpected);
         }
     }
+
+    @Test
+    public void testParseIntGroupsDDL()
+    {
+        try
+        {
+            int[] numStatementsPerFile = new int[]
+            {
+                35, 1, 2, 1
+            };
+            Assert.assertEquals("BUG: testParseIntGroupsDDL setup", numStatementsPerFile.length, InitDatabase.INT_GROUPS_SQL.length);
+
+            for (int i = 0; i<numStatementsPerFile.length; i++)
+            {
+                String fname = InitDatabase.INT_GROUPS_SQL[i];
+                log.info("process file: " + fname);
+                List<String> statements = InitDatabase.parseDDL(fname, schema);
+                Assert.assertEquals(fname + " statements", numStatementsPerFile[i], statements.size());
+            }
+        }
+        catch(Exception unexpected)
+        {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
+
+    @Test
+    public void testGroupNamesView()
+    {
+        try
+        {
+            for (String fname : new String[] { "caom2.ObsCore.sql", "caom2.ObsCore-x.sql", "caom2.SIAv1.sql" })
+            {
+                List<String> statements = InitDatabase.parseDDL(fname, schema);
+                for (String sql : statements)
+                {
+                    String view = InitDatabase.toGroupNamesView(sql, schema);
+                    log.debug("view: " + view);
+                    Assert.assertFalse(fname, view.matches(".*[a-z]\\.metaReadAccessGroups[, ].*"));
+                    Assert.assertTrue(fname, view.contains(schema + ".readAccessGroupNames("));
+                }
+            }
+
+            List<String> upgrade = InitDatabase.parseDDL("caom2.upgrade-intgroups.sql", schema);
+            for (String sql : upgrade)
+            {
+                Assert.assertEquals(sql, InitDatabase.toGroupNamesView(sql, schema));
+            }
+        }
+        catch(Exception unexpected)
+        {
+            log.error("unexpected exception", unexpected);
+            Assert.fail("unexpected exception: " + unexpected);
+        }
+    }
 }